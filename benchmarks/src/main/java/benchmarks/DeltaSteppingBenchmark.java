@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.CsrGraph;
+import models.DeltaStepping;
+import models.SearchWorkspace;
+
+/**
+ * Single source shortest paths to every node: sequential dijkstra on the compact graph against
+ * delta-stepping with a pool of the given size. The delta is a multiple of the mean edge weight,
+ * so one setting fits every shape. Thread counts above the core count only show the overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class DeltaSteppingBenchmark {
+  private static final int SOURCES = 16;
+
+  @Param({Networks.GRID, Networks.GEOMETRIC, Networks.SCALE_FREE})
+  public String shape;
+
+  @Param({"100000", "1000000"})
+  public int size;
+
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  @Param({"1.0"})
+  public double deltaFactor;
+
+  private CsrGraph graph;
+  private int[] sources;
+  private SearchWorkspace workspace;
+  private ForkJoinPool pool;
+  private DeltaStepping engine;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    graph = CsrGraph.fromGraph(Networks.build(shape, size, 42).graph);
+    Random random = new Random(7);
+    sources = new int[SOURCES];
+    for (int i = 0; i < SOURCES; i++) {
+      sources[i] = random.nextInt(graph.nodeCount());
+    }
+    workspace = new SearchWorkspace(graph.nodeCount());
+    pool = new ForkJoinPool(threads);
+    engine = new DeltaStepping(graph, deltaFactor * DeltaStepping.suggestDelta(graph), pool);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  /**
+   * The baseline ignores the thread count; compare it at threads=1.
+   */
+  @Benchmark
+  public int dijkstra() {
+    workspace.start(graph, sources[next++ & (SOURCES - 1)]);
+    while (!workspace.isEmpty()) {
+      workspace.settleNext(graph, null);
+    }
+    return workspace.getSettledCount();
+  }
+
+  @Benchmark
+  public double deltaStepping() {
+    int source = sources[next++ & (SOURCES - 1)];
+    engine.run(source);
+    return engine.getDistance(source);
+  }
+}
@@ -0,0 +1,171 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import models.Edge;
+import models.Graph;
+import models.Node;
+
+/**
+ * Networks builds the synthetic graphs the benchmarks run on. Every generator is seeded, so a
+ * shape and size always give the same graph. Edges are added in both directions.
+ */
+public final class Networks {
+  public static final String GRID = "grid";
+  public static final String GEOMETRIC = "geometric";
+  public static final String SCALE_FREE = "scale-free";
+
+  /**
+   * The graph plus the node set and edge list the DijkstraAppsService methods take.
+   */
+  public static final class Network {
+    public final Graph graph;
+    public final Node[] nodes;
+    public final Set<Node> nodeSet;
+    public final List<Edge> edges;
+
+    Network(Node[] nodes, List<Edge> edges) {
+      this.nodes = nodes;
+      this.edges = edges;
+      this.nodeSet = new HashSet<>(nodes.length * 2);
+      for (Node node : nodes) {
+        nodeSet.add(node);
+      }
+      this.graph = new Graph(true);
+      graph.addNodes(nodes);
+      graph.addEdges(edges.toArray(new Edge[0]));
+    }
+  }
+
+  private Networks() {
+  }
+
+  /**
+   * @param shape GRID, GEOMETRIC or SCALE_FREE
+   * @param size  the number of nodes, rounded down to a square for grids
+   */
+  public static Network build(String shape, int size, long seed) {
+    switch (shape) {
+      case GRID:
+        return grid(size, seed);
+      case GEOMETRIC:
+        return geometric(size, seed);
+      case SCALE_FREE:
+        return scaleFree(size, 3, seed);
+      default:
+        throw new IllegalArgumentException("Unknown shape: " + shape);
+    }
+  }
+
+  /**
+   * A square grid with 4-neighbour links of weight 1 to 10. Nodes carry their grid coordinates.
+   */
+  public static Network grid(int size, long seed) {
+    Random random = new Random(seed);
+    int side = Math.max(2, (int) Math.sqrt(size));
+    Node[] nodes = new Node[side * side];
+    for (int y = 0; y < side; y++) {
+      for (int x = 0; x < side; x++) {
+        nodes[y * side + x] = new Node(String.valueOf(y * side + x), x, y);
+      }
+    }
+    List<Edge> edges = new ArrayList<>();
+    for (int y = 0; y < side; y++) {
+      for (int x = 0; x < side; x++) {
+        int u = y * side + x;
+        if (x + 1 < side) {
+          link(edges, nodes[u], nodes[u + 1], 1 + random.nextInt(10));
+        }
+        if (y + 1 < side) {
+          link(edges, nodes[u], nodes[u + side], 1 + random.nextInt(10));
+        }
+      }
+    }
+    return new Network(nodes, edges);
+  }
+
+  /**
+   * Random points in the unit square, linked when closer than a radius that gives about eight
+   * neighbours per node. Weights are the euclidean distances, so Heuristic.euclidean(1) is exact.
+   */
+  public static Network geometric(int size, long seed) {
+    Random random = new Random(seed);
+    Node[] nodes = new Node[size];
+    for (int i = 0; i < size; i++) {
+      nodes[i] = new Node(String.valueOf(i), random.nextDouble(), random.nextDouble());
+    }
+    double radius = Math.sqrt(8.0 / (Math.PI * size));
+
+    // bucket the points into radius sized cells so only neighbouring cells are compared
+    int cells = Math.max(1, (int) (1 / radius));
+    List<List<Integer>> grid = new ArrayList<>(cells * cells);
+    for (int c = 0; c < cells * cells; c++) {
+      grid.add(new ArrayList<>());
+    }
+    for (int i = 0; i < size; i++) {
+      grid.get(cell(nodes[i].getY(), cells) * cells + cell(nodes[i].getX(), cells)).add(i);
+    }
+    List<Edge> edges = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      int cx = cell(nodes[i].getX(), cells);
+      int cy = cell(nodes[i].getY(), cells);
+      for (int y = Math.max(0, cy - 1); y <= Math.min(cells - 1, cy + 1); y++) {
+        for (int x = Math.max(0, cx - 1); x <= Math.min(cells - 1, cx + 1); x++) {
+          for (int j : grid.get(y * cells + x)) {
+            if (j <= i) {
+              continue;
+            }
+            double dx = nodes[i].getX() - nodes[j].getX();
+            double dy = nodes[i].getY() - nodes[j].getY();
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance <= radius) {
+              link(edges, nodes[i], nodes[j], distance);
+            }
+          }
+        }
+      }
+    }
+    return new Network(nodes, edges);
+  }
+
+  /**
+   * A Barabasi-Albert graph: every new node links to m existing nodes picked with probability
+   * proportional to their degree, which gives a few very large hubs. Weights are 1 to 100.
+   */
+  public static Network scaleFree(int size, int m, long seed) {
+    Random random = new Random(seed);
+    Node[] nodes = new Node[size];
+    for (int i = 0; i < size; i++) {
+      nodes[i] = new Node(String.valueOf(i));
+    }
+    // every link adds both ends here, so a uniform pick is a pick by degree
+    int[] ends = new int[2 * m * size];
+    int endCount = 0;
+    List<Edge> edges = new ArrayList<>();
+    for (int u = 1; u < size; u++) {
+      Set<Integer> targets = new HashSet<>();
+      while (targets.size() < Math.min(m, u)) {
+        targets.add(endCount == 0 ? 0 : ends[random.nextInt(endCount)]);
+      }
+      for (int v : targets) {
+        link(edges, nodes[u], nodes[v], 1 + random.nextInt(100));
+        ends[endCount++] = u;
+        ends[endCount++] = v;
+      }
+    }
+    return new Network(nodes, edges);
+  }
+
+  private static int cell(double coordinate, int cells) {
+    return Math.min(cells - 1, (int) (coordinate * cells));
+  }
+
+  private static void link(List<Edge> edges, Node a, Node b, double weight) {
+    edges.add(new Edge(a, b, weight));
+    edges.add(new Edge(b, a, weight));
+  }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Graph;
+import models.Node;
+import models.SmartGraph;
+
+/**
+ * One query of every ProblemType, the way the menu runs it, on each network shape and size.
+ * Throughput gives queries per second; SampleTime gives the latency percentiles. Each invocation
+ * takes the next of a fixed set of random query pairs, so no single pair dominates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ProblemTypeBenchmark {
+  private static final int QUERIES = 64;
+  private static final int MAX_STOPS = 5;
+
+  @Param({"DIJKSTRA_BASE", "MUST_GO", "BYPASSING", "CHEAPEST_FLIGHTS", "NETWORK_DELAY", "WIDEST_PATH"})
+  public String problem;
+
+  @Param({Networks.GRID, Networks.GEOMETRIC, Networks.SCALE_FREE})
+  public String shape;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int size;
+
+  private Networks.Network network;
+  private Node[] starts;
+  private Node[] ends;
+  private List<List<Node>> via;
+  private MethodHandle handle;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    network = Networks.build(shape, size, 42);
+    Random random = new Random(7);
+    Node[] nodes = network.nodes;
+    starts = new Node[QUERIES];
+    ends = new Node[QUERIES];
+    via = new ArrayList<>(QUERIES);
+    for (int i = 0; i < QUERIES; i++) {
+      starts[i] = nodes[random.nextInt(nodes.length)];
+      ends[i] = nodes[random.nextInt(nodes.length)];
+      via.add(Arrays.asList(nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)]));
+    }
+
+    switch (problem) {
+      case "DIJKSTRA_BASE":
+        handle = Services.bind("DijkstraService", "dijkstraBase", Graph.class, Node.class, Node.class);
+        break;
+      case "MUST_GO":
+        handle = Services.bind("DijkstraService", "dijkstraMustGo", Graph.class, Node.class, Node.class, List.class);
+        break;
+      case "BYPASSING":
+        handle = Services.bind("DijkstraService", "dijkstraBypass", Graph.class, Node.class, Node.class, List.class);
+        break;
+      case "CHEAPEST_FLIGHTS":
+        handle = Services.bind("DijkstraAppsService", "findCheapestPrice",
+                Set.class, List.class, Node.class, Node.class, int.class);
+        break;
+      case "NETWORK_DELAY":
+        handle = Services.bind("DijkstraAppsService", "networkDelayTime", Set.class, List.class, Node.class);
+        break;
+      case "WIDEST_PATH":
+        handle = Services.bind("DijkstraAppsService", "widestPath", Set.class, List.class, Node.class, Node.class);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown problem: " + problem);
+    }
+  }
+
+  @Benchmark
+  public SmartGraph query() {
+    int i = next++ & (QUERIES - 1);
+    switch (problem) {
+      case "DIJKSTRA_BASE":
+        return Services.call(handle, network.graph, starts[i], ends[i]);
+      case "MUST_GO":
+      case "BYPASSING":
+        return Services.call(handle, network.graph, starts[i], ends[i], via.get(i));
+      case "CHEAPEST_FLIGHTS":
+        return Services.call(handle, network.nodeSet, network.edges, starts[i], ends[i], MAX_STOPS);
+      case "NETWORK_DELAY":
+        return Services.call(handle, network.nodeSet, network.edges, starts[i]);
+      default:
+        return Services.call(handle, network.nodeSet, network.edges, starts[i], ends[i]);
+    }
+  }
+}
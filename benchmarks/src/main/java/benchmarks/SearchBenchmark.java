@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Graph;
+import models.Heuristic;
+import models.Node;
+import models.SearchWorkspace;
+import models.SmartGraph;
+
+/**
+ * Base dijkstra against bidirectional dijkstra and A* on the same point to point queries. Besides
+ * the time, the settled counter reports how many nodes each search expanded over the iteration;
+ * divide by the operation count for a per query figure. A* uses the euclidean bound, so it runs on
+ * the shapes that have coordinates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SearchBenchmark {
+  private static final int QUERIES = 64;
+
+  @Param({Networks.GRID, Networks.GEOMETRIC})
+  public String shape;
+
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  private Graph graph;
+  private Node[] starts;
+  private Node[] ends;
+  private SearchWorkspace forward;
+  private SearchWorkspace backward;
+  private Heuristic heuristic;
+  private MethodHandle base;
+  private MethodHandle bidirectional;
+  private MethodHandle aStar;
+  private int next;
+
+  /**
+   * Nodes settled, summed over both sides for the bidirectional search.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Settled {
+    public long settled;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Networks.Network network = Networks.build(shape, size, 42);
+    graph = network.graph;
+    Random random = new Random(7);
+    starts = new Node[QUERIES];
+    ends = new Node[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      starts[i] = network.nodes[random.nextInt(network.nodes.length)];
+      ends[i] = network.nodes[random.nextInt(network.nodes.length)];
+    }
+    forward = new SearchWorkspace(graph.nodeCount());
+    backward = new SearchWorkspace(graph.nodeCount());
+    // grid links weigh at least 1 per unit step; geometric links weigh exactly their length
+    heuristic = Heuristic.euclidean(1);
+
+    base = Services.bind("DijkstraService", "dijkstraBase",
+            Graph.class, Node.class, Node.class, SearchWorkspace.class);
+    bidirectional = Services.bind("DijkstraService", "dijkstraBidirectional",
+            Graph.class, Node.class, Node.class, SearchWorkspace.class, SearchWorkspace.class);
+    aStar = Services.bind("DijkstraService", "dijkstraAStar",
+            Graph.class, Node.class, Node.class, Heuristic.class, SearchWorkspace.class);
+  }
+
+  @Benchmark
+  public SmartGraph base(Settled counter) {
+    int i = next++ & (QUERIES - 1);
+    SmartGraph result = Services.call(base, graph, starts[i], ends[i], forward);
+    counter.settled += forward.getSettledCount();
+    return result;
+  }
+
+  @Benchmark
+  public SmartGraph bidirectional(Settled counter) {
+    int i = next++ & (QUERIES - 1);
+    SmartGraph result = Services.call(bidirectional, graph, starts[i], ends[i], forward, backward);
+    counter.settled += forward.getSettledCount() + backward.getSettledCount();
+    return result;
+  }
+
+  @Benchmark
+  public SmartGraph aStar(Settled counter) {
+    int i = next++ & (QUERIES - 1);
+    SmartGraph result = Services.call(aStar, graph, starts[i], ends[i], heuristic, forward);
+    counter.settled += forward.getSettledCount();
+    return result;
+  }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import models.SmartGraph;
+
+/**
+ * Services reaches DijkstraService and DijkstraAppsService. They live in the default package,
+ * which code in a named package cannot import, so their methods are looked up once as method
+ * handles; calling a handle costs about as much as a direct call.
+ */
+final class Services {
+  private Services() {
+  }
+
+  /**
+   * @param className  DijkstraService or DijkstraAppsService
+   * @param methodName the method
+   * @param parameters the parameter types of the overload
+   * @return a handle bound to a new service instance
+   */
+  static MethodHandle bind(String className, String methodName, Class<?>... parameters) {
+    try {
+      Class<?> type = Class.forName(className);
+      Object service = type.getConstructor().newInstance();
+      return MethodHandles.publicLookup()
+              .findVirtual(type, methodName, MethodType.methodType(SmartGraph.class, parameters))
+              .bindTo(service);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static SmartGraph call(MethodHandle handle, Object... arguments) {
+    try {
+      return (SmartGraph) handle.invokeWithArguments(arguments);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -1,17 +1,19 @@
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import models.BottleneckTree;
+import models.CsrGraph;
 import models.Edge;
 import models.Graph;
+import models.IndexedMinHeap;
 import models.Node;
+import models.SearchCounts;
 import models.SmartGraph;
 
 /**
@@ -19,8 +21,25 @@ import models.SmartGraph;
  * - The Widest Path Between Two Hosts
  * - The Cheapest Flight Within X Stops
  * - Network Delay Time
+ *
+ * <p>Like DijkstraService, the service prints nothing; answers and the search work of every query
+ * go to the QueryListeners added with addListener. Queries on a CsrGraph return the path only;
+ * the queries on node sets and edge lists attach a Graph of them that is built if it is asked for.
  */
 public class DijkstraAppsService {
+  private final List<QueryListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param listener told about every query from now on
+   */
+  public void addListener(QueryListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(QueryListener listener) {
+    listeners.remove(listener);
+  }
+
   /**
    * Find the largest bottleneck of the given network and its path.
    * @param routers the given network of routers
@@ -30,52 +49,14 @@ public class DijkstraAppsService {
    */
   public SmartGraph widestPath(Set<Node> routers, List<Edge> bandwidths, Node start, Node end) {
     if (!routers.contains(start) || !routers.contains(end)) {
-      System.out.println("Please designate a starting router and an ending router.");
+      QueryProbe.reject(listeners, ProblemType.WIDEST_PATH,
+              "Please designate a starting router and an ending router.");
       return null;
     }
 
-    Graph graph = new Graph(routers, bandwidths, true);
-    Map<List<Node>, Double> paths = new HashMap<>();
-    Map<Double, List<Node>> sortedPaths = new LinkedHashMap<>();
-
-    findWidestPath(start, end, Double.MAX_VALUE, new ArrayList<Node>(), paths);
-    paths.entrySet()
-            .stream()
-            .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-            .forEachOrdered(x -> sortedPaths.put(x.getValue(), x.getKey()));
-
-    for (Map.Entry<Double, List<Node>> entry: sortedPaths.entrySet()) {
-      double cost = entry.getKey();
-      List<Node> path = entry.getValue();
-      path.add(0, start);
-
-      System.out.println("The largest bandwidth is:" + cost);
-      System.out.print("It is path is: ");
-      for (Node node : path) {
-        System.out.print(node.getName() + " ");
-      }
-
-      return new SmartGraph(graph, path);
-    }
-    return new SmartGraph(graph, null);
-  }
-
-  private static void findWidestPath(Node start, Node end, double bandwidth, List<Node> path, Map<List<Node>, Double> paths) {
-    if (start.equals(end)) {
-      paths.put(new ArrayList<>(path), bandwidth);
-      return;
-    }
-    List<Edge> edges = start.getEdges();
-    for (Edge edge: edges) {
-      Node dest = edge.getDestNode();
-      double weight = edge.getWeight();
-      bandwidth = weight < bandwidth ? weight : bandwidth;
-      path.add(dest);
-      start = dest;
-      findWidestPath(start, end, bandwidth, path, paths);
-      path.remove(path.size() - 1);
-      bandwidth = Double.MAX_VALUE;
-    }
+    CsrGraph network = CsrGraph.fromEdges(routers, bandwidths);
+    return widestPath(network, network.indexOf(start), network.indexOf(end))
+            .withGraph(() -> new Graph(routers, bandwidths, true));
   }
 
   /**
@@ -84,185 +65,327 @@ public class DijkstraAppsService {
    * receive a signal sent by a certain node.
    */
   public SmartGraph networkDelayTime(Set<Node> nodes, List<Edge> times, Node src) {
-
-    int M = nodes.size();
-    double[][] network = new double[M][M];
-    for (double[] arr : network) {
-      Arrays.fill(arr, Double.MAX_VALUE);
+    if (!nodes.contains(src)) {
+      QueryProbe.reject(listeners, ProblemType.NETWORK_DELAY, "Please designate a source node.");
+      return null;
     }
 
-    for (Edge e: times) {
-      network[Integer.valueOf(e.getSourceNode().getName())][Integer.valueOf(e.getDestNode().getName())] = e.getWeight();
-    }
+    CsrGraph network = CsrGraph.fromEdges(nodes, times);
+    return networkDelayTime(network, network.indexOf(src))
+            .withGraph(() -> new Graph(nodes, times, true));
+  }
 
-    double[] dis = new double[M];
-    Arrays.fill(dis, Double.MAX_VALUE);
-    int start = Integer.valueOf(src.getName());
-    dis[start] = 0;
+  /**
+   * Given a travel map with N cities connected by M flights. Each flight departs from one city and
+   * arrives at another city with a price P. We can find the cheapest flight route from a departure
+   * city to the destination city with up to X stops.
+   */
+  public SmartGraph findCheapestPrice(Set<Node> cities, List<Edge> flights, Node src, Node dst, int X) {
+    if (!cities.contains(src) || !cities.contains(dst)) {
+      QueryProbe.reject(listeners, ProblemType.CHEAPEST_FLIGHTS,
+              "Please designate a departure city and a destination city.");
+      return null;
+    }
 
-    boolean[] visited = new boolean[M];
-    PriorityQueue<Route> queue = new PriorityQueue<>();
-    queue.offer(new Route(src, Arrays.asList(src), 0));
+    CsrGraph map = CsrGraph.fromEdges(cities, flights);
+    return findCheapestPrice(map, map.indexOf(src), map.indexOf(dst), X)
+            .withGraph(() -> new Graph(cities, flights, true));
+  }
 
-    List<Node> path = new ArrayList<>();
-    double totalTime = 0;
-    while (!queue.isEmpty()) {
-      Route r = queue.poll();
-      int u = Integer.valueOf(r.node.getName());
-      if (!visited[u]) {
-        visited[u] = true;
-        for (int i = 0; i < M; i++) {
-          if (network[u][i] < Double.MAX_VALUE) {
-            if (!visited[i] && dis[u] < Double.MAX_VALUE && dis[i] > dis[u] + network[u][i]) {
-              dis[i] = dis[u] + network[u][i];
-              Node n = new Node(String.valueOf(i));
-              List<Node> newPath = new ArrayList<>(r.path);
-              newPath.add(n);
-              queue.offer(new Route(n, newPath, dis[i]));
-            }
-          }
-        }
-      }
-      if(queue.isEmpty()) {
-        path = r.path;
-        totalTime = r.cost;
+  /**
+   * Find the largest bottleneck between two routers of a compact network. This is dijkstra on a max
+   * heap where a path is as wide as its narrowest edge.
+   * @param routers the given network of routers, weighted by bandwidth
+   * @param start the id of the starting router
+   * @param end the id of the ending router
+   */
+  public SmartGraph widestPath(CsrGraph routers, int start, int end) {
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.WIDEST_PATH);
+    int n = routers.nodeCount();
+    double[] widths = new double[n];
+    int[] parents = new int[n];
+    Arrays.fill(widths, -1);
+    widths[start] = Double.MAX_VALUE;
+    parents[start] = -1;
+
+    // the heap is a min heap, so widths are pushed negated
+    IndexedMinHeap heap = new IndexedMinHeap(n);
+    heap.push(start, -Double.MAX_VALUE);
+    long settled = 0;
+    long relaxations = 0;
+    while (!heap.isEmpty()) {
+      int u = heap.pop();
+      settled++;
+      if (u == end) {
         break;
       }
-    }
-
-    //generate graph from nodes and times for visualization
-    Graph graph = new Graph(nodes, times, true);
-
-    for (int i = 0; i < M; i++) {
-      if (dis[i] == Double.MAX_VALUE) {
-        System.out.println("Could not reach all nodes from the source node.");
-        return new SmartGraph(graph, null);
+      for (int e = routers.firstEdge(u); e < routers.endEdge(u); e++) {
+        relaxations++;
+        int v = routers.target(e);
+        double width = Math.min(widths[u], routers.weight(e));
+        if (width > widths[v]) {
+          widths[v] = width;
+          parents[v] = u;
+          heap.push(v, -width);
+        }
       }
     }
 
-    System.out.println("Longest Path in the Network:");
-    for (Node n : path) {
-      System.out.print(n.getName() + " ");
+    if (probe != null) {
+      probe.add(SearchCounts.of(settled, relaxations, heap));
     }
-    System.out.println();
-
-    System.out.println("Total Delay Time: " + Math.round(totalTime));
-
-    return new SmartGraph(graph, path);
+    if (widths[end] < 0) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+    return QueryProbe.finish(probe, new SmartGraph(null, toPath(routers, parents, end), widths[end]));
   }
 
-  private class Route implements Comparable<Route> {
-
-    double cost;
-    Node node;
-    List<Node> path;
-
-    Route(Node node, List<Node> path, double cost) {
-      this.node = node;
-      this.path = path;
-      this.cost = cost;
+  /**
+   * Find the largest bottleneck between two routers with a prebuilt maximum spanning forest. Use
+   * this for many queries on a network whose links are symmetric.
+   * @param routers the spanning forest of the network
+   * @param start the id of the starting router
+   * @param end the id of the ending router
+   */
+  public SmartGraph widestPath(BottleneckTree routers, int start, int end) {
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.WIDEST_PATH);
+    CsrGraph network = routers.getGraph();
+    int[] path = routers.path(start, end);
+    if (path == null) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
     }
+    return QueryProbe.finish(probe,
+            new SmartGraph(null, network.toNodes(path), routers.width(start, end)));
+  }
 
-    @Override
-    public int compareTo(Route r) {
-      return (int) (this.cost - r.cost);
+  /**
+   * Find the minimum time for a signal sent from src to reach every node of a compact network, and
+   * the path to the node that receives it last.
+   * @param nodes the given network, weighted by travel time
+   * @param src the id of the source node
+   */
+  public SmartGraph networkDelayTime(CsrGraph nodes, int src) {
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.NETWORK_DELAY);
+    int n = nodes.nodeCount();
+    double[] dis = new double[n];
+    int[] parents = new int[n];
+    Arrays.fill(dis, Double.MAX_VALUE);
+    dis[src] = 0;
+    parents[src] = -1;
+
+    IndexedMinHeap heap = new IndexedMinHeap(n);
+    heap.push(src, 0);
+    int reached = 0;
+    long relaxations = 0;
+    int last = src;
+    while (!heap.isEmpty()) {
+      int u = heap.pop();
+      reached++;
+      last = u;
+      for (int e = nodes.firstEdge(u); e < nodes.endEdge(u); e++) {
+        relaxations++;
+        int v = nodes.target(e);
+        double time = dis[u] + nodes.weight(e);
+        if (time < dis[v]) {
+          dis[v] = time;
+          parents[v] = u;
+          heap.push(v, time);
+        }
+      }
     }
 
+    if (probe != null) {
+      probe.add(SearchCounts.of(reached, relaxations, heap));
+    }
+    if (reached < n) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+    return QueryProbe.finish(probe, new SmartGraph(null, toPath(nodes, parents, last), dis[last]));
   }
 
-
   /**
-   * Given a travel map with N cities connected by M flights. Each flight departs from one city and
-   * arrives at another city with a price P. We can find the cheapest flight route from a departure
-   * city to the destination city with up to X stops.
+   * Find the cheapest route from src to dst of a compact flight map with up to X stops. This is
+   * dijkstra over (city, flights taken) states, so a city can be settled again later by a pricier
+   * route that took fewer flights. A state is dominated, and skipped, when the same city was already settled
+   * with no more flights: it costs at least as much and can go no further. Every state keeps its
+   * parent state, so the real route is recovered, and the search stops as soon as dst is settled,
+   * which pays off when dst is only a few cheap flights away.
+   * @param cities the given flight map, weighted by price
+   * @param src the id of the departure city
+   * @param dst the id of the destination city
+   * @param X the maximum number of stops; more than n - 1 allow nothing more
    */
-  public SmartGraph findCheapestPrice(Set<Node> cities, List<Edge> flights, Node src, Node dst, int X) {
-
-    //generate graph for visualization
-    Graph graph = new Graph(cities, flights, true);
-
-    int numOfCities = cities.size();
-    double[][] srcToDst = new double[numOfCities][numOfCities];
-    List<Node> path = new ArrayList<>();
-
-    for (Edge edge : flights) {
-      Node sourceNode = edge.getSourceNode();
-      Node destNode = edge.getDestNode();
-      srcToDst[Integer.valueOf(sourceNode.getName())][Integer.valueOf(destNode.getName())] = edge.getWeight();
+  public SmartGraph findCheapestPriceByStates(CsrGraph cities, int src, int dst, int X) {
+    X = checkStops(cities, X);
+    if (X < 0) {
+      return new SmartGraph(null, null);
     }
-
-    PriorityQueue<City> minHeap = new PriorityQueue<>();
-    minHeap.offer(new City(src, 0, 0));
-
-    double[] cost = new double[numOfCities];
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.CHEAPEST_FLIGHTS);
+    int n = cities.nodeCount();
+    int layers = X + 2;
+    double[] cost = new double[n * layers];
+    int[] parents = new int[n * layers];
+    int[] fewestFlights = new int[n];
     Arrays.fill(cost, Double.MAX_VALUE);
-    cost[Integer.valueOf(src.getName())] = 0;
-
-    int[] stop = new int[numOfCities];
-    Arrays.fill(stop, Integer.MAX_VALUE);
-    stop[Integer.valueOf(src.getName())] = 0;
-
-    while (!minHeap.isEmpty()) {
-      City currCity = minHeap.poll();
-      if (!path.contains(currCity.id)) {
-        path.add(currCity.id);
+    Arrays.fill(fewestFlights, Integer.MAX_VALUE);
+
+    // state id = city * layers + flights taken
+    IndexedMinHeap heap = new IndexedMinHeap(n * layers);
+    int first = src * layers;
+    cost[first] = 0;
+    parents[first] = -1;
+    heap.push(first, 0);
+    int found = -1;
+    long settled = 0;
+    long relaxations = 0;
+    while (!heap.isEmpty()) {
+      int state = heap.pop();
+      int u = state / layers;
+      int flights = state % layers;
+      if (flights >= fewestFlights[u]) {
+        continue;
       }
-
-      if (currCity.id.getName().equals(dst.getName())) {
-        System.out.println("The cheapest price is: " + currCity.costFromSrc);
-        System.out.print("The path is: ");
-        path.forEach(e -> System.out.print(e.getName() + " "));
-        System.out.println();
-
-        return new SmartGraph(graph, path);
+      fewestFlights[u] = flights;
+      settled++;
+      if (u == dst) {
+        found = state;
+        break;
       }
-
-      if (currCity.disFromSrc == X + 1) {
-        path.remove(currCity.id);
+      if (flights == X + 1) {
         continue;
       }
+      for (int e = cities.firstEdge(u); e < cities.endEdge(u); e++) {
+        relaxations++;
+        int v = cities.target(e);
+        int next = v * layers + flights + 1;
+        double price = cost[state] + cities.weight(e);
+        if (flights + 1 < fewestFlights[v] && price < cost[next]) {
+          cost[next] = price;
+          parents[next] = state;
+          heap.push(next, price);
+        }
+      }
+    }
 
-      double[] nexts = srcToDst[Integer.valueOf(currCity.id.getName())];
-      for (int i = 0; i < numOfCities; i++) {
-        if (nexts[i] != 0) {
-          double newCost = currCity.costFromSrc + nexts[i];
-          int newStop = currCity.disFromSrc + 1;
-          if (newCost < cost[i]) {
-            minHeap.offer(new City(new Node(String.valueOf(i)), newCost, newStop));
-            cost[i] = newCost;
-          } else if (newStop < stop[i]) {
-            minHeap.offer(new City(new Node(String.valueOf(i)), newCost, newStop));
-            stop[i] = newStop;
-            path.remove(path.size() - 1);
+    if (probe != null) {
+      probe.add(SearchCounts.of(settled, relaxations, heap));
+    }
+    if (found < 0) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+    List<Node> path = new ArrayList<>();
+    for (int state = found; state >= 0; state = parents[state]) {
+      path.add(cities.getNode(state / layers));
+    }
+    Collections.reverse(path);
+    return QueryProbe.finish(probe, new SmartGraph(null, path, cost[found]));
+  }
+
+  /**
+   * Find the cheapest route from src to dst of a compact flight map with up to X stops. This is
+   * Bellman-Ford limited to X + 1 rounds over two rolling distance arrays; the parent of every node
+   * in every round is kept so the real route can be recovered. It makes at most X + 1 sequential
+   * passes over the edges and needs no heap, which is the fastest choice for small X.
+   * @param cities the given flight map, weighted by price
+   * @param src the id of the departure city
+   * @param dst the id of the destination city
+   * @param X the maximum number of stops; more than n - 1 allow nothing more
+   */
+  public SmartGraph findCheapestPrice(CsrGraph cities, int src, int dst, int X) {
+    X = checkStops(cities, X);
+    if (X < 0) {
+      return new SmartGraph(null, null);
+    }
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.CHEAPEST_FLIGHTS);
+    int n = cities.nodeCount();
+    double[] prev = new double[n];
+    double[] cost = new double[n];
+    Arrays.fill(prev, Double.MAX_VALUE);
+    prev[src] = 0;
+    int[][] parents = new int[X + 2][];
+
+    int rounds = 0;
+    long relaxations = 0;
+    for (int k = 1; k <= X + 1; k++) {
+      System.arraycopy(prev, 0, cost, 0, n);
+      int[] parent = new int[n];
+      Arrays.fill(parent, -1);
+      boolean changed = false;
+      for (int u = 0; u < n; u++) {
+        if (prev[u] == Double.MAX_VALUE) {
+          continue;
+        }
+        for (int e = cities.firstEdge(u); e < cities.endEdge(u); e++) {
+          relaxations++;
+          int v = cities.target(e);
+          double price = prev[u] + cities.weight(e);
+          if (price < cost[v]) {
+            cost[v] = price;
+            parent[v] = u;
+            changed = true;
           }
         }
       }
+      if (!changed) {
+        break;
+      }
+      parents[k] = parent;
+      rounds = k;
+      double[] temp = prev;
+      prev = cost;
+      cost = temp;
     }
 
-    if (cost[Integer.valueOf(dst.getName())] == Double.MAX_VALUE) {
-      System.out.println("Could not find cheapest price between source city and destination city.");
-      return new SmartGraph(graph, null);
+    // no heap, and no node is ever settled for good
+    if (probe != null) {
+      probe.add(new SearchCounts(0, relaxations, 0, 0, 0));
+    }
+    if (prev[dst] == Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
     }
 
-    System.out.println("The cheapest price is: " + cost[Integer.valueOf(dst.getName())]);
-
-    return new SmartGraph(graph, null);
+    // a parent of -1 means the node kept its price from the round before
+    List<Node> path = new ArrayList<>();
+    int city = dst;
+    for (int k = rounds; k > 0; k--) {
+      int parent = parents[k][city];
+      if (parent >= 0) {
+        path.add(cities.getNode(city));
+        city = parent;
+      }
+    }
+    path.add(cities.getNode(city));
+    Collections.reverse(path);
+    return QueryProbe.finish(probe, new SmartGraph(null, path, prev[dst]));
   }
 
-  private class City implements Comparable<City> {
-    Node id;
-    double costFromSrc;
-    int disFromSrc;
-
-    City(Node id, double costFromSrc, int disFromSrc) {
-      this.id = id;
-      this.costFromSrc = costFromSrc;
-      this.disFromSrc = disFromSrc;
+  /**
+   * A route never needs more stops than there are cities, so X is capped at n - 1 before anything
+   * is sized by it. Negative X, and state spaces of n * (X + 2) that do not fit in an int, are
+   * rejected.
+   * @return the capped number of stops, or -1 if the query was rejected
+   */
+  private int checkStops(CsrGraph cities, int X) {
+    if (X < 0) {
+      QueryProbe.reject(listeners, ProblemType.CHEAPEST_FLIGHTS, "The number of stops cannot be negative.");
+      return -1;
     }
+    int n = cities.nodeCount();
+    int stops = Math.min(X, Math.max(0, n - 1));
+    if ((long) n * (stops + 2) > Integer.MAX_VALUE - 8) {
+      QueryProbe.reject(listeners, ProblemType.CHEAPEST_FLIGHTS,
+              String.format("%d stops over %d cities are too many to search.", stops, n));
+      return -1;
+    }
+    return stops;
+  }
 
-    @Override
-    public int compareTo(City o) {
-      return (int) (this.costFromSrc - o.costFromSrc);
+  private static List<Node> toPath(CsrGraph graph, int[] parents, int end) {
+    List<Node> path = new ArrayList<>();
+    for (int node = end; node >= 0; node = parents[node]) {
+      path.add(graph.getNode(node));
     }
+    Collections.reverse(path);
+    return path;
   }
 }
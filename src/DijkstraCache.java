@@ -0,0 +1,167 @@
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.Graph;
+import models.Node;
+import models.SmartGraph;
+
+/**
+ * DijkstraCache sits in front of a DijkstraService and remembers the results of repeated queries.
+ * Entries are keyed on the query shape (graph, start, end, bypass set, must go set) and on the
+ * graph version, which every change to the graph bumps, so a stale result is never served. At
+ * most maxEntries results are kept, and the least recently used one is evicted first.
+ *
+ * <p>Results are immutable SmartGraphs, so a hit returns the cached object as is. Only misses run
+ * the service, and only they reach its QueryListeners.
+ */
+public class DijkstraCache {
+  private final DijkstraService service;
+  private final Map<Key, SmartGraph> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * @param service    the service answering misses
+   * @param maxEntries the largest number of cached results
+   */
+  public DijkstraCache(DijkstraService service, int maxEntries) {
+    this.service = service;
+    this.entries = new LinkedHashMap<Key, SmartGraph>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, SmartGraph> eldest) {
+        if (size() > maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Cached DijkstraService.dijkstraBase.
+   */
+  public SmartGraph dijkstraBase(Graph graph, Node start, Node end) {
+    Key key = new Key(graph, start, end, Collections.emptySet(), Collections.emptySet());
+    SmartGraph result = lookup(key);
+    if (result == null) {
+      result = store(key, service.dijkstraBase(graph, start, end));
+    }
+    return result;
+  }
+
+  /**
+   * Cached DijkstraService.dijkstraBypass. The order of the bypassed nodes does not matter.
+   */
+  public SmartGraph dijkstraBypass(Graph graph, Node start, Node end, List<Node> bypasses) {
+    Key key = new Key(graph, start, end, toSet(bypasses), Collections.emptySet());
+    SmartGraph result = lookup(key);
+    if (result == null) {
+      result = store(key, service.dijkstraBypass(graph, start, end, bypasses));
+    }
+    return result;
+  }
+
+  /**
+   * Cached DijkstraService.dijkstraMustGo. The service picks the visiting order itself, so the
+   * order of the must go nodes does not matter.
+   */
+  public SmartGraph dijkstraMustGo(Graph graph, Node start, Node end, List<Node> mustGo) {
+    Key key = new Key(graph, start, end, Collections.emptySet(), toSet(mustGo));
+    SmartGraph result = lookup(key);
+    if (result == null) {
+      result = store(key, service.dijkstraMustGo(graph, start, end, mustGo));
+    }
+    return result;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private synchronized SmartGraph lookup(Key key) {
+    SmartGraph result = entries.get(key);
+    if (result == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * The search runs outside the lock, so two threads missing on the same key may both search; the
+   * second result simply replaces the first.
+   */
+  private synchronized SmartGraph store(Key key, SmartGraph result) {
+    if (result != null) {
+      entries.put(key, result);
+    }
+    return result;
+  }
+
+  private static Set<Node> toSet(List<Node> nodes) {
+    return nodes == null ? Collections.emptySet() : new HashSet<>(nodes);
+  }
+
+  /**
+   * The shape of a query at one graph version. Graphs and nodes compare by identity.
+   */
+  private static final class Key {
+    private final Graph graph;
+    private final long version;
+    private final Node start;
+    private final Node end;
+    private final Set<Node> bypasses;
+    private final Set<Node> mustGo;
+    private final int hash;
+
+    Key(Graph graph, Node start, Node end, Set<Node> bypasses, Set<Node> mustGo) {
+      this.graph = graph;
+      this.version = graph.getVersion();
+      this.start = start;
+      this.end = end;
+      this.bypasses = bypasses;
+      this.mustGo = mustGo;
+      this.hash = Objects.hash(System.identityHashCode(graph), version, start, end, bypasses, mustGo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return graph == that.graph && version == that.version && start == that.start && end == that.end
+              && bypasses.equals(that.bypasses) && mustGo.equals(that.mustGo);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
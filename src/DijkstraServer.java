@@ -0,0 +1,585 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+
+import models.CsrGraph;
+import models.GraphImporter;
+import models.Node;
+import models.SmartGraph;
+
+/**
+ * DijkstraServer answers batches of queries against one graph that is loaded once, over HTTP on
+ * the loopback interface. A batch is POSTed to /batch as a JSON array of queries:
+ * <pre>
+ * [{"id": "a", "type": "DIJKSTRA_BASE", "start": "0", "end": "6"},
+ *  {"id": "b", "type": "BYPASSING", "start": "0", "end": "6", "nodes": ["1"]},
+ *  {"id": "c", "type": "MUST_GO", "start": "0", "end": "6", "nodes": ["2"]},
+ *  {"id": "d", "type": "CHEAPEST_FLIGHTS", "start": "0", "end": "4", "stops": 2},
+ *  {"id": "e", "type": "NETWORK_DELAY", "start": "0"},
+ *  {"id": "f", "type": "WIDEST_PATH", "start": "0", "end": "4"}]
+ * </pre>
+ * Nodes are given by name and the type is a ProblemType. The response streams one JSON object per
+ * line as each query completes, so results arrive out of order and are matched up by id:
+ * {@code {"id":"a","cost":20.0,"path":["0","1","3","5","4","6"]}}. A query without a path gets a
+ * null cost and path, and a query that cannot run, or that the services turn down, gets an "error"
+ * instead. More stops than the graph has nodes count as n - 1. GET / describes the
+ * loaded graph, and GET /metrics returns the QueryMetrics of the server in the Prometheus text
+ * format; the same metrics are registered with JMX while the server runs.
+ *
+ * <p>Queries run on a fixed pool of worker threads, which keeps the per-thread search workspaces of
+ * the services warm. Admission is bounded: at most maxPending queries are queued or running over
+ * all connections, and a batch submits its next query only when a slot frees up, writing out the
+ * finished results while it waits.
+ */
+public class DijkstraServer {
+  private static final int MAX_BODY_BYTES = 64 << 20;
+
+  private final CsrGraph graph;
+  private final int port;
+  private final int workers;
+  private final Semaphore admission;
+  private final DijkstraService service = new DijkstraService();
+  private final DijkstraAppsService appsService = new DijkstraAppsService();
+  private final QueryMetrics metrics = new QueryMetrics();
+  // listeners run on the thread of the query, so each worker sees only its own rejections
+  private final ThreadLocal<String> rejection = new ThreadLocal<>();
+  private HttpServer server;
+  private ExecutorService pool;
+
+  /**
+   * @param graph      the graph every query runs on
+   * @param port       the port on the loopback interface, or 0 for any free port
+   * @param workers    the number of worker threads
+   * @param maxPending the most queries queued or running at once
+   */
+  public DijkstraServer(CsrGraph graph, int port, int workers, int maxPending) {
+    this.graph = graph;
+    this.port = port;
+    this.workers = workers;
+    this.admission = new Semaphore(maxPending);
+    QueryListener rejections = new QueryListener() {
+      @Override
+      public void queryFinished(QueryEvent event) {
+      }
+
+      @Override
+      public void queryRejected(ProblemType type, String reason) {
+        rejection.set(reason);
+      }
+    };
+    service.addListener(metrics);
+    service.addListener(rejections);
+    appsService.addListener(metrics);
+    appsService.addListener(rejections);
+  }
+
+  /**
+   * Start serving.
+   */
+  public void start() throws IOException {
+    try {
+      metrics.register();
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+    AtomicInteger threads = new AtomicInteger();
+    pool = Executors.newFixedThreadPool(workers, task -> {
+      Thread thread = new Thread(task, "dijkstra-worker-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/batch", this::batch);
+    server.createContext("/metrics", this::metrics);
+    server.createContext("/", this::describe);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  /**
+   * @return the port the server listens on
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the metrics of the queries answered so far
+   */
+  public QueryMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Stop accepting connections and let running queries finish.
+   */
+  public void stop() {
+    server.stop(0);
+    pool.shutdown();
+    try {
+      metrics.unregister();
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void describe(HttpExchange exchange) throws IOException {
+    String body = String.format("{\"nodes\":%d,\"edges\":%d}\n", graph.nodeCount(), graph.edgeCount());
+    respond(exchange, 200, body);
+  }
+
+  private void metrics(HttpExchange exchange) throws IOException {
+    respond(exchange, 200, "text/plain; version=0.0.4", metrics.toText());
+  }
+
+  private void batch(HttpExchange exchange) throws IOException {
+    if (!"POST".equals(exchange.getRequestMethod())) {
+      respond(exchange, 405, error(null, "POST a JSON array of queries."));
+      return;
+    }
+    List<Object> queries;
+    try {
+      Object parsed = Json.parse(read(exchange.getRequestBody()));
+      if (!(parsed instanceof List)) {
+        throw new IllegalArgumentException("Expected a JSON array of queries.");
+      }
+      @SuppressWarnings("unchecked")
+      List<Object> list = (List<Object>) parsed;
+      queries = list;
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, error(null, e.getMessage()));
+      return;
+    }
+
+    exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+    exchange.sendResponseHeaders(200, 0);
+    BlockingQueue<String> done = new LinkedBlockingQueue<>();
+    try (OutputStream out = exchange.getResponseBody()) {
+      int written = 0;
+      for (Object query : queries) {
+        while (!admission.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+          written += drain(done, out, false);
+        }
+        pool.execute(() -> {
+          // every admitted query gets exactly one line, even if an Error kills its worker
+          String line = error(idOf(query), "The query failed.");
+          try {
+            line = answer(query);
+          } finally {
+            done.add(line);
+            admission.release();
+          }
+        });
+        written += drain(done, out, false);
+      }
+      while (written < queries.size()) {
+        written += drain(done, out, true);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Write the finished results.
+   * @param wait whether to wait for at least one
+   * @return the number of results written
+   */
+  private static int drain(BlockingQueue<String> done, OutputStream out, boolean wait)
+          throws IOException, InterruptedException {
+    List<String> lines = new ArrayList<>();
+    if (wait) {
+      lines.add(done.take());
+    }
+    done.drainTo(lines);
+    for (String line : lines) {
+      out.write(line.getBytes(StandardCharsets.UTF_8));
+    }
+    if (!lines.isEmpty()) {
+      out.flush();
+    }
+    return lines.size();
+  }
+
+  /**
+   * Run one query.
+   * @return its result line
+   */
+  private String answer(Object query) {
+    Object id = idOf(query);
+    rejection.remove();
+    try {
+      if (!(query instanceof Map)) {
+        throw new IllegalArgumentException("A query must be a JSON object.");
+      }
+      Map<?, ?> fields = (Map<?, ?>) query;
+      ProblemType type;
+      try {
+        type = ProblemType.valueOf(String.valueOf(fields.get("type")).toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(String.format("Unknown query type <%s>.", fields.get("type")));
+      }
+      int start = node(fields, "start");
+      SmartGraph result;
+      switch (type) {
+        case DIJKSTRA_BASE:
+          result = service.dijkstraBase(graph, start, node(fields, "end"));
+          break;
+        case MUST_GO:
+          result = service.dijkstraMustGo(graph, start, node(fields, "end"), nodes(fields));
+          break;
+        case BYPASSING:
+          result = service.dijkstraBypass(graph, start, node(fields, "end"), nodes(fields));
+          break;
+        case CHEAPEST_FLIGHTS:
+          Object stops = fields.get("stops");
+          if (!(stops instanceof Double) || (Double) stops < 0 || (Double) stops != Math.rint((Double) stops)) {
+            throw new IllegalArgumentException("Cheapest flights needs a whole number of stops, 0 or more.");
+          }
+          int maxStops = (int) Math.min((Double) stops, Math.max(0, graph.nodeCount() - 1));
+          result = appsService.findCheapestPrice(graph, start, node(fields, "end"), maxStops);
+          break;
+        case NETWORK_DELAY:
+          result = appsService.networkDelayTime(graph, start);
+          break;
+        default:
+          result = appsService.widestPath(graph, start, node(fields, "end"));
+          break;
+      }
+      String reason = rejection.get();
+      return reason == null ? result(id, result) : error(id, reason);
+    } catch (RuntimeException e) {
+      return error(id, e.getMessage());
+    }
+  }
+
+  private static Object idOf(Object query) {
+    return query instanceof Map ? ((Map<?, ?>) query).get("id") : null;
+  }
+
+  private int node(Map<?, ?> fields, String key) {
+    Object name = fields.get(key);
+    if (!(name instanceof String)) {
+      throw new IllegalArgumentException(String.format("The query needs a <%s> node name.", key));
+    }
+    int id = graph.indexOf((String) name);
+    if (id < 0) {
+      throw new IllegalArgumentException(String.format("The node <%s> is not in the graph.", name));
+    }
+    return id;
+  }
+
+  private int[] nodes(Map<?, ?> fields) {
+    Object names = fields.get("nodes");
+    if (names == null) {
+      return new int[0];
+    }
+    if (!(names instanceof List)) {
+      throw new IllegalArgumentException("<nodes> must be an array of node names.");
+    }
+    List<?> list = (List<?>) names;
+    int[] ids = new int[list.size()];
+    for (int i = 0; i < ids.length; i++) {
+      Map<String, Object> single = new LinkedHashMap<>();
+      single.put("node", list.get(i));
+      ids[i] = node(single, "node");
+    }
+    return ids;
+  }
+
+  private static String result(Object id, SmartGraph result) {
+    StringBuilder line = new StringBuilder("{\"id\":");
+    Json.write(id, line);
+    if (result == null || result.getPath() == null) {
+      return line.append(",\"cost\":null,\"path\":null}\n").toString();
+    }
+    line.append(",\"cost\":").append(result.getCost()).append(",\"path\":[");
+    List<Node> path = result.getPath();
+    for (int i = 0; i < path.size(); i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      Json.write(path.get(i).getName(), line);
+    }
+    return line.append("]}\n").toString();
+  }
+
+  private static String error(Object id, String message) {
+    StringBuilder line = new StringBuilder("{\"id\":");
+    Json.write(id, line);
+    line.append(",\"error\":");
+    Json.write(message, line);
+    return line.append("}\n").toString();
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1 << 16];
+    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+      body.write(buffer, 0, read);
+      if (body.size() > MAX_BODY_BYTES) {
+        throw new IllegalArgumentException("The batch is too large.");
+      }
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    respond(exchange, status, "application/json", body);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType, String body)
+          throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Load a graph and serve it until the process is stopped. Files ending in .csr are mapped as
+   * saved by CsrGraph.save; anything else is imported with GraphImporter.
+   * @param args the graph file, then optionally the port, the worker count and the admission bound
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: DijkstraServer <graph file> [port] [workers] [max pending queries]");
+      return;
+    }
+    Path file = Paths.get(args[0]);
+    CsrGraph graph = file.toString().endsWith(".csr")
+            ? CsrGraph.map(file) : GraphImporter.read(file, false).toCsrGraph();
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+    int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int maxPending = args.length > 3 ? Integer.parseInt(args[3]) : 4 * workers;
+    DijkstraServer server = new DijkstraServer(graph, port, workers, maxPending);
+    server.start();
+    System.out.println(String.format("Serving %d nodes on http://localhost:%d/batch", graph.nodeCount(),
+            server.getPort()));
+  }
+
+  /**
+   * Just enough JSON for the batch protocol. Objects parse to maps, arrays to lists and numbers to
+   * doubles.
+   */
+  static final class Json {
+    private final String text;
+    private int at;
+
+    private Json(String text) {
+      this.text = text;
+    }
+
+    static Object parse(String text) {
+      Json json = new Json(text);
+      Object value = json.value();
+      json.space();
+      if (json.at < text.length()) {
+        throw json.fail("Unexpected trailing characters");
+      }
+      return value;
+    }
+
+    static void write(Object value, StringBuilder out) {
+      if (value == null) {
+        out.append("null");
+      } else if (value instanceof Double && ((Double) value) == Math.rint((Double) value)
+              && Math.abs((Double) value) < 1e15) {
+        out.append(((Double) value).longValue());
+      } else if (value instanceof Number || value instanceof Boolean) {
+        out.append(value);
+      } else {
+        String text = value.toString();
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+          char c = text.charAt(i);
+          if (c == '"' || c == '\\') {
+            out.append('\\').append(c);
+          } else if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+        }
+        out.append('"');
+      }
+    }
+
+    private Object value() {
+      space();
+      if (at >= text.length()) {
+        throw fail("Unexpected end");
+      }
+      char c = text.charAt(at);
+      if (c == '{') {
+        return object();
+      } else if (c == '[') {
+        return array();
+      } else if (c == '"') {
+        return string();
+      } else if (text.startsWith("true", at)) {
+        at += 4;
+        return Boolean.TRUE;
+      } else if (text.startsWith("false", at)) {
+        at += 5;
+        return Boolean.FALSE;
+      } else if (text.startsWith("null", at)) {
+        at += 4;
+        return null;
+      }
+      int start = at;
+      while (at < text.length() && "+-0123456789.eE".indexOf(text.charAt(at)) >= 0) {
+        at++;
+      }
+      try {
+        return Double.parseDouble(text.substring(start, at));
+      } catch (NumberFormatException e) {
+        throw fail("Unexpected character");
+      }
+    }
+
+    private Map<String, Object> object() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      at++;
+      space();
+      if (peek() == '}') {
+        at++;
+        return map;
+      }
+      while (true) {
+        space();
+        if (peek() != '"') {
+          throw fail("Expected a key");
+        }
+        String key = string();
+        space();
+        expect(':');
+        map.put(key, value());
+        space();
+        if (peek() == '}') {
+          at++;
+          return map;
+        }
+        expect(',');
+      }
+    }
+
+    private List<Object> array() {
+      List<Object> list = new ArrayList<>();
+      at++;
+      space();
+      if (peek() == ']') {
+        at++;
+        return list;
+      }
+      while (true) {
+        list.add(value());
+        space();
+        if (peek() == ']') {
+          at++;
+          return list;
+        }
+        expect(',');
+      }
+    }
+
+    private String string() {
+      StringBuilder out = new StringBuilder();
+      at++;
+      while (at < text.length()) {
+        char c = text.charAt(at++);
+        if (c == '"') {
+          return out.toString();
+        }
+        if (c != '\\') {
+          out.append(c);
+          continue;
+        }
+        if (at >= text.length()) {
+          break;
+        }
+        char escaped = text.charAt(at++);
+        switch (escaped) {
+          case 'b':
+            out.append('\b');
+            break;
+          case 'f':
+            out.append('\f');
+            break;
+          case 'n':
+            out.append('\n');
+            break;
+          case 'r':
+            out.append('\r');
+            break;
+          case 't':
+            out.append('\t');
+            break;
+          case 'u':
+            if (at + 4 > text.length()) {
+              throw fail("Bad unicode escape");
+            }
+            try {
+              out.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+            } catch (NumberFormatException e) {
+              throw fail("Bad unicode escape");
+            }
+            at += 4;
+            break;
+          default:
+            out.append(escaped);
+        }
+      }
+      throw fail("Unterminated string");
+    }
+
+    private void space() {
+      while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+        at++;
+      }
+    }
+
+    private char peek() {
+      if (at >= text.length()) {
+        throw fail("Unexpected end");
+      }
+      return text.charAt(at);
+    }
+
+    private void expect(char c) {
+      if (peek() != c) {
+        throw fail("Expected '" + c + "'");
+      }
+      at++;
+    }
+
+    private IllegalArgumentException fail(String message) {
+      return new IllegalArgumentException(String.format("%s at character %d of the batch.", message, at));
+    }
+  }
+}
@@ -1,22 +1,63 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import models.AllPairsSolver;
+import models.CellShard;
+import models.ContractionHierarchy;
+import models.CsrGraph;
+import models.DeltaStepping;
+import models.DistanceMatrix;
+import models.DynamicShortestPathTree;
 import models.Edge;
 import models.Graph;
+import models.Heuristic;
+import models.KShortestPaths;
 import models.Node;
+import models.OverlayGraph;
+import models.SearchCounts;
+import models.SearchMask;
+import models.SearchWorkspace;
+import models.ShortestPathTree;
 import models.SmartGraph;
+import models.WaypointSolver;
 
 /**
  * This class includes implementations for base dijkstra problem, mast go and bypassing.
+ *
+ * <p>All per-query state lives in a search workspace owned by the calling thread, and searches
+ * never write to the nodes of the graph. One service and one graph can answer queries from many
+ * threads at once, as long as the graph is not modified meanwhile.
+ *
+ * <p>The service prints nothing. Answers, rejected queries and the search work of every query go
+ * to the QueryListeners added with addListener, e.g. a PrintingListener or QueryMetrics. Queries
+ * that are not one of the ProblemTypes, like A* or k shortest paths, are reported as
+ * DIJKSTRA_BASE.
  */
 public class DijkstraService {
-  private final double MAX = Double.MAX_VALUE;
-  private static double lowestCost;
-  private static List<Node> shortestPath;
+  private final ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+  private final ThreadLocal<SearchWorkspace> reverseWorkspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+  private final List<QueryListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param listener told about every query from now on
+   */
+  public void addListener(QueryListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(QueryListener listener) {
+    listeners.remove(listener);
+  }
 
   /**
    * Base dijkstra algorithm implementation.
@@ -26,109 +67,220 @@ public class DijkstraService {
    * @param end   the end node
    */
   public SmartGraph dijkstraBase(Graph graph, Node start, Node end) {
-    if (!graph.getNodes().contains(start) || !graph.getNodes().contains(end)) {
-      System.out.println("Graph doesn't contain start node or end node.");
-      return new SmartGraph(graph, null);
-    }
-
-    Map<Node, Double> shortestPathMap = new HashMap<>();
-    Map<Node, Node> changedAtMap = new HashMap<>();
-    changedAtMap.put(start, null);
-    List<Node> pathList = new ArrayList<>();
+    return dijkstraBase(graph, start, end, workspaces.get());
+  }
 
-    for (Node node : graph.getNodes()) {
-      if (node == start) {
-        shortestPathMap.put(start, 0.0);
-      } else {
-        shortestPathMap.put(node, MAX);
-      }
+  /**
+   * Base dijkstra algorithm on a caller supplied workspace. Distances and parents are kept in the
+   * workspace arrays, so back to back queries on the same workspace allocate nothing but the path.
+   *
+   * @param graph     the given graph
+   * @param start     the start node
+   * @param end       the end node
+   * @param workspace the search state to reuse
+   */
+  public SmartGraph dijkstraBase(Graph graph, Node start, Node end, SearchWorkspace workspace) {
+    int startId = graph.indexOf(start);
+    int endId = graph.indexOf(end);
+    if (startId < 0 || endId < 0) {
+      QueryProbe.reject(listeners, ProblemType.DIJKSTRA_BASE, "Graph doesn't contain start node or end node.");
+      return new SmartGraph(graph, null);
     }
 
-    for (Edge edge : start.getEdges()) {
-      shortestPathMap.put(edge.getDestNode(), edge.getWeight());
-      changedAtMap.put(edge.getDestNode(), start);
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE, workspace);
+    double cost = workspace.search(graph, startId, endId, null);
+    if (cost == Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(graph, null));
     }
 
-    start.setVisited(true);
+    List<Node> pathList = workspace.path(graph, endId);
+    return QueryProbe.finish(probe, new SmartGraph(graph, pathList, cost));
+  }
 
-    while (true) {
-      Node currentNode = getClosedNode(shortestPathMap);
+  /**
+   * Bidirectional dijkstra for point to point queries. A forward search from start over out edges
+   * and a backward search from end over into edges take turns, always expanding the side whose
+   * frontier is closer. The search stops once the best path found through a node seen by both
+   * sides, mu, is no longer than the sum of the two frontier minimums.
+   *
+   * @param graph the given graph
+   * @param start the start node
+   * @param end   the end node
+   */
+  public SmartGraph dijkstraBidirectional(Graph graph, Node start, Node end) {
+    return dijkstraBidirectional(graph, start, end, workspaces.get(), reverseWorkspaces.get());
+  }
 
-      if (currentNode == null) {
-        System.out.println("\nNo available path between the start node and end node.");
-        graph.resetNode();
-        return new SmartGraph(graph, null);
-      }
+  /**
+   * Bidirectional dijkstra on caller supplied workspaces. Afterwards their settled counts tell how
+   * many nodes each side expanded.
+   *
+   * @param graph    the given graph
+   * @param start    the start node
+   * @param end      the end node
+   * @param forward  the search state from start
+   * @param backward the search state from end
+   */
+  public SmartGraph dijkstraBidirectional(Graph graph, Node start, Node end,
+                                          SearchWorkspace forward, SearchWorkspace backward) {
+    int startId = graph.indexOf(start);
+    int endId = graph.indexOf(end);
+    if (startId < 0 || endId < 0) {
+      QueryProbe.reject(listeners, ProblemType.DIJKSTRA_BASE, "Graph doesn't contain start node or end node.");
+      return new SmartGraph(graph, null);
+    }
 
-      if (currentNode == end) {
-        Node child = end;
-
-        pathList.add(end);
-        while (true) {
-          Node parent = changedAtMap.get(child);
-          if (parent == null) {
-            break;
-          }
-          pathList.add(parent);
-          child = parent;
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE, forward, backward);
+    forward.start(graph, startId);
+    backward.start(graph, endId);
+    double mu = startId == endId ? 0.0 : Double.MAX_VALUE;
+    int meet = startId == endId ? startId : -1;
+
+    while (!forward.isEmpty() && !backward.isEmpty()
+            && forward.peekDistance() + backward.peekDistance() < mu) {
+      boolean isForward = forward.peekDistance() <= backward.peekDistance();
+      SearchWorkspace side = isForward ? forward : backward;
+      SearchWorkspace other = isForward ? backward : forward;
+
+      int current = side.pop();
+      double currentDistance = side.getDistance(current);
+      Node node = graph.getNode(current);
+      List<Edge> edges = isForward ? node.getEdges() : node.getIntoEdges();
+      for (int i = 0; i < edges.size(); i++) {
+        Edge edge = edges.get(i);
+        int next = graph.indexOf(isForward ? edge.getDestNode() : edge.getSourceNode());
+        if (next < 0 || side.isSettled(next)) {
+          continue;
         }
-
-        double cost = shortestPathMap.get(end);
-        System.out.println("the path costs: " + cost);
-        lowestCost = cost;
-
-        System.out.print("the path is: ");
-        Collections.reverse(pathList);
-        for (Node node : pathList) {
-          System.out.print(node.getName() + " ");
+        double distance = currentDistance + edge.getWeight();
+        side.relax(next, distance, current);
+        double remaining = other.getDistance(next);
+        if (remaining < Double.MAX_VALUE && distance + remaining < mu) {
+          mu = distance + remaining;
+          meet = next;
         }
-        System.out.println();
-        shortestPath = pathList;
-
-        graph.resetNode();
-        return new SmartGraph(graph, pathList);
       }
+    }
 
-      currentNode.setVisited(true);
-
-      for (Edge edge : currentNode.getEdges()) {
-        if (edge.getDestNode().isVisited()) {
-          continue;
-        }
+    if (meet < 0) {
+      return QueryProbe.finish(probe, new SmartGraph(graph, null));
+    }
 
-        if (shortestPathMap.get(currentNode) < edge.getWeight() + shortestPathMap.get(edge.getDestNode())) {
-          shortestPathMap.put(edge.getDestNode(), edge.getWeight() + shortestPathMap.get(currentNode));
-          changedAtMap.put(edge.getDestNode(), currentNode);
-        }
-      }
+    // forward parents lead back to start, backward parents lead on to end
+    List<Node> pathList = forward.path(graph, meet);
+    for (int id = backward.getParent(meet); id >= 0; id = backward.getParent(id)) {
+      pathList.add(graph.getNode(id));
     }
+    return QueryProbe.finish(probe, new SmartGraph(graph, pathList, mu));
   }
 
-  private Node getClosedNode(Map<Node, Double> shortestPathMap) {
-    double shortestDistance = MAX;
-    Node closedNode = null;
+  /**
+   * A* search: dijkstra guided by a heuristic lower bound on the distance left to the end node, e.g.
+   * Heuristic.euclidean, Heuristic.haversine or a LandmarkHeuristic. Settled nodes are never reopened,
+   * so the path is only exact if the heuristic is consistent, not merely one that never
+   * overestimates; see Heuristic.
+   *
+   * @param graph     the given graph
+   * @param start     the start node
+   * @param end       the end node
+   * @param heuristic the distance estimate
+   */
+  public SmartGraph dijkstraAStar(Graph graph, Node start, Node end, Heuristic heuristic) {
+    return dijkstraAStar(graph, start, end, heuristic, workspaces.get());
+  }
 
-    for (Node node : shortestPathMap.keySet()) {
-      if (node.isVisited()) {
-        continue;
-      }
+  /**
+   * A* search on a caller supplied workspace.
+   *
+   * @param graph     the given graph
+   * @param start     the start node
+   * @param end       the end node
+   * @param heuristic the distance estimate
+   * @param workspace the search state to reuse
+   */
+  public SmartGraph dijkstraAStar(Graph graph, Node start, Node end, Heuristic heuristic,
+                                  SearchWorkspace workspace) {
+    int startId = graph.indexOf(start);
+    int endId = graph.indexOf(end);
+    if (startId < 0 || endId < 0) {
+      QueryProbe.reject(listeners, ProblemType.DIJKSTRA_BASE, "Graph doesn't contain start node or end node.");
+      return new SmartGraph(graph, null);
+    }
 
-      double currDistance = shortestPathMap.get(node);
-      if (currDistance < shortestDistance) {
-        shortestDistance = currDistance;
-        closedNode = node;
-      }
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE, workspace);
+    double cost = workspace.searchAStar(graph, startId, endId, heuristic, null);
+    if (cost == Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(graph, null));
     }
 
-    return closedNode;
+    List<Node> pathList = workspace.path(graph, endId);
+    return QueryProbe.finish(probe, new SmartGraph(graph, pathList, cost));
   }
 
-  private static double getCost() {
-    return lowestCost;
+  /**
+   * Point to point query on a contraction hierarchy. The search only moves up the node ranks from
+   * both ends, so it settles a tiny fraction of the graph; shortcuts are unpacked into the real
+   * path of the graph the hierarchy was built from.
+   *
+   * @param hierarchy the preprocessed graph
+   * @param start     the start node
+   * @param end       the end node
+   */
+  public SmartGraph dijkstraHierarchy(ContractionHierarchy hierarchy, Node start, Node end) {
+    SearchWorkspace forward = workspaces.get();
+    SearchWorkspace backward = reverseWorkspaces.get();
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE, forward, backward);
+    return QueryProbe.finish(probe, hierarchy.route(start, end, forward, backward));
   }
 
-  private static List<Node> getPath() {
-    return shortestPath;
+  /**
+   * Base dijkstra from the source of a resumable shortest path tree. The search of the tree only
+   * runs on if end was not settled by an earlier query.
+   *
+   * @param tree the tree, rooted at the start node
+   * @param end  the end node
+   */
+  public SmartGraph dijkstraBase(ShortestPathTree tree, Node end) {
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE);
+    List<Node> pathList = tree.pathTo(end);
+    if (pathList == null) {
+      return QueryProbe.finish(probe, new SmartGraph(tree.getGraph(), null));
+    }
+    double cost = tree.distanceTo(end);
+    return QueryProbe.finish(probe, new SmartGraph(tree.getGraph(), pathList, cost));
+  }
+
+  /**
+   * Read the current shortest path from a dynamic shortest path tree. The tree repairs itself as
+   * edges of its graph change, so no search runs here.
+   *
+   * @param tree the tree, rooted at the start node
+   * @param end  the end node
+   */
+  public SmartGraph dijkstraDynamic(DynamicShortestPathTree tree, Node end) {
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE);
+    List<Node> pathList = tree.getPath(end);
+    if (pathList == null) {
+      return QueryProbe.finish(probe, new SmartGraph(tree.getGraph(), null));
+    }
+    double cost = tree.getDistance(end);
+    return QueryProbe.finish(probe, new SmartGraph(tree.getGraph(), pathList, cost));
+  }
+
+  /**
+   * Find up to k cheapest loopless paths, for fallback routes. Unlike dijkstraBypass this never
+   * changes the graph; see KShortestPaths.
+   *
+   * @param graph the given graph
+   * @param start the starting node
+   * @param end   the destination node
+   * @param k     the number of paths
+   * @return the paths ranked by cost, cheapest first; empty if end cannot be reached
+   */
+  public List<SmartGraph> dijkstraKShortest(Graph graph, Node start, Node end, int k) {
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE);
+    return QueryProbe.finish(probe,
+            KShortestPaths.find(graph, start, end, k, workspaces::get, probe == null ? null : probe::add));
   }
 
   /**
@@ -140,78 +292,436 @@ public class DijkstraService {
    * @param bypasses a list of nodes to be bypassed
    */
   public SmartGraph dijkstraBypass(Graph graph, Node start, Node end, List<Node> bypasses) {
+    return dijkstraBypass(graph, start, end, bypasses, null);
+  }
 
-    // keep a copy of the original graph
-    Graph originalGraph = new Graph(graph.getNodes(), graph.getOriginalEdges(), true);
+  /**
+   * To find the shortest path with bypassing certain node(s) and link(s). The bypassed nodes and
+   * links are masked out during the search; the graph itself is not changed, so any number of
+   * bypass queries can run against one shared graph at the same time.
+   *
+   * @param graph    the given graph
+   * @param start    the starting node
+   * @param end      the destination node
+   * @param bypasses a list of nodes to be bypassed
+   * @param links    a list of edges to be bypassed
+   */
+  public SmartGraph dijkstraBypass(Graph graph, Node start, Node end, List<Node> bypasses, List<Edge> links) {
 
-    if (bypasses == null || bypasses.size() == 0) {
+    if ((bypasses == null || bypasses.size() == 0) && (links == null || links.size() == 0)) {
       return dijkstraBase(graph, start, end);
     }
 
-    if (bypasses.contains(start) || bypasses.contains(end)) {
-      System.out.println("We cannot remove the starting node or the destination node.");
+    if (bypasses != null && (bypasses.contains(start) || bypasses.contains(end))) {
+      QueryProbe.reject(listeners, ProblemType.BYPASSING,
+              "We cannot remove the starting node or the destination node.");
+      return new SmartGraph(graph, null);
+    }
+
+    int startId = graph.indexOf(start);
+    int endId = graph.indexOf(end);
+    if (startId < 0 || endId < 0) {
+      QueryProbe.reject(listeners, ProblemType.BYPASSING, "Graph doesn't contain start node or end node.");
       return new SmartGraph(graph, null);
     }
 
-    for (Node bypass : bypasses) {
-      if (graph.hasNode(bypass)) {
-        graph.removeNode(bypass);
-        graph.removeEdges(bypass);
-      } else {
-        System.out.println(String.format("The node <%s> is not in the graph.", bypass.getName()));
+    SearchMask mask = new SearchMask();
+    if (bypasses != null) {
+      for (Node bypass : bypasses) {
+        int id = graph.indexOf(bypass);
+        if (id >= 0) {
+          mask.blockNode(id);
+        } else {
+          QueryProbe.warn(listeners, ProblemType.BYPASSING,
+                  String.format("The node <%s> is not in the graph.", bypass.getName()));
+        }
+      }
+    }
+    if (links != null) {
+      for (Edge link : links) {
+        mask.blockEdge(link);
       }
     }
 
-    SmartGraph sm =  dijkstraBase(graph, start, end);
-    sm.setGraph(originalGraph);
-    return sm;
+    SearchWorkspace workspace = workspaces.get();
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.BYPASSING, workspace);
+    double cost = workspace.search(graph, startId, endId, mask);
+    if (cost == Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(graph, null));
+    }
+    List<Node> pathList = workspace.path(graph, endId);
+    return QueryProbe.finish(probe, new SmartGraph(graph, pathList, cost));
   }
 
+  /**
+   * To find the shortest path from start to end that goes through every must go node, in whichever
+   * order is cheapest. One search runs from the start and from every must go node, in parallel,
+   * to build the distance matrix between them. WaypointSolver picks the visiting order from the
+   * matrix, and the real paths of the chosen legs are joined together.
+   *
+   * @param graph  the given graph
+   * @param start  the starting node
+   * @param end    the destination node
+   * @param mustGo a list of nodes to go through
+   */
   public SmartGraph dijkstraMustGo(Graph graph, Node start, Node end, List<Node> mustGo) {
 
-    if (mustGo.size() == 0 || mustGo == null) {
+    if (mustGo == null || mustGo.size() == 0) {
       return dijkstraBase(graph, start, end);
     }
 
     for (Node node : mustGo) {
       if (node.equals(start) || node.equals(end)) {
-        System.out.println("Please try nodes except the start node and the end node.");
+        QueryProbe.reject(listeners, ProblemType.MUST_GO, "Please try nodes except the start node and the end node.");
         return new SmartGraph(graph, null);
       }
     }
 
-    mustGo.add(end);
-    double total = 0.0;
-    StringBuilder path = new StringBuilder();
-    Node next;
-    List<Node> temp;
+    if (graph.indexOf(start) < 0 || graph.indexOf(end) < 0) {
+      QueryProbe.reject(listeners, ProblemType.MUST_GO, "Graph doesn't contain start node or end node.");
+      return new SmartGraph(graph, null);
+    }
 
-    for (int i = 0; i < mustGo.size(); i++) {
-      next = mustGo.get(i);
-      dijkstraBase(graph, start, next);
-      total += getCost();
-      temp = getPath();
-      for (Node node : temp) {
-        path.append(node.getName() + " ");
+    // index 0 is the start, then the distinct must go nodes, then the end
+    Set<Node> waypoints = new LinkedHashSet<>(mustGo);
+    int size = waypoints.size() + 2;
+    int[] points = new int[size];
+    points[0] = graph.indexOf(start);
+    points[size - 1] = graph.indexOf(end);
+    int i = 1;
+    for (Node node : waypoints) {
+      points[i] = graph.indexOf(node);
+      if (points[i] < 0) {
+        QueryProbe.reject(listeners, ProblemType.MUST_GO,
+                String.format("The node <%s> is not in the graph.", node.getName()));
+        return new SmartGraph(graph, null);
       }
-      start = next;
+      i++;
     }
 
-    char[] p = path.toString().replaceAll(" ", "").toCharArray();
-    List<Character> list = new ArrayList<>();
-    for (char c : p) {
-      list.add(c);
-    }
-    List<Character> res = list.stream().distinct().collect(Collectors.toList());
+    int[] targets = Arrays.copyOfRange(points, 1, size);
+    double[][] distances = new double[size][size];
+    List<List<Node>> legs = new ArrayList<>(Collections.nCopies(size * size, (List<Node>) null));
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.MUST_GO);
+    IntStream.range(0, size - 1).parallel().forEach(from -> {
+      SearchWorkspace workspace = workspaces.get();
+      SearchCounts before = probe == null ? null : workspace.counts();
+      workspace.searchAll(graph, points[from], targets, null);
+      if (probe != null) {
+        probe.add(workspace.counts().minus(before));
+      }
+      for (int to = 1; to < size; to++) {
+        distances[from][to] = workspace.getDistance(points[to]);
+        legs.set(from * size + to, workspace.path(graph, points[to]));
+      }
+    });
 
-    System.out.println("The lowest cost is: " + total);
-    System.out.println("The shortest path is: " + res);
+    int[] order = WaypointSolver.solve(distances);
+    double total = WaypointSolver.cost(distances, order);
+    if (total >= Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(graph, null));
+    }
 
     List<Node> pathList = new ArrayList<>();
-    for(char c: res) {
-      pathList.add(new Node(String.valueOf(c)));
+    pathList.add(start);
+    int prev = 0;
+    for (int j = 0; j <= order.length; j++) {
+      int next = j < order.length ? order[j] : size - 1;
+      List<Node> leg = legs.get(prev * size + next);
+      pathList.addAll(leg.subList(1, leg.size()));
+      prev = next;
     }
+    return QueryProbe.finish(probe, new SmartGraph(graph, pathList, total));
+  }
 
-    return new SmartGraph(graph, pathList);
+  /**
+   * Compute the cost of the shortest path from every source to every target. One search runs per
+   * source and stops once all targets are settled; the sources fan out over the common fork-join
+   * pool.
+   *
+   * @param graph   the given graph
+   * @param sources the source nodes
+   * @param targets the target nodes
+   * @return the table, indexed [source][target]; unreachable pairs are Double.MAX_VALUE
+   */
+  public double[][] distanceTable(Graph graph, List<Node> sources, List<Node> targets) {
+    int[] from = indexesOf(graph, sources);
+    int[] to = indexesOf(graph, targets);
+    double[][] table = new double[from.length][to.length];
+    IntStream.range(0, from.length).parallel().forEach(i -> {
+      SearchWorkspace workspace = workspaces.get();
+      workspace.searchAll(graph, from[i], to, null);
+      for (int j = 0; j < to.length; j++) {
+        table[i][j] = workspace.getDistance(to[j]);
+      }
+    });
+    return table;
   }
-}
\ No newline at end of file
+
+  /**
+   * Compute the cost of the shortest path from every source to every target with the bucket based
+   * many to many search of a contraction hierarchy. Much faster than one search per source once
+   * the hierarchy is built.
+   *
+   * @param hierarchy the preprocessed graph
+   * @param sources   the source nodes
+   * @param targets   the target nodes
+   * @return the table, indexed [source][target]; unreachable pairs are Double.MAX_VALUE
+   */
+  public double[][] distanceTable(ContractionHierarchy hierarchy, List<Node> sources, List<Node> targets) {
+    return hierarchy.distanceTable(sources, targets);
+  }
+
+  /**
+   * Compute the cost of the shortest path between every pair of nodes. Dense graphs use a blocked
+   * Floyd-Warshall, sparse ones a parallel dijkstra per source; see AllPairsSolver.
+   *
+   * @param graph          the given graph
+   * @param withSuccessors whether to keep a successor table for allPairsPath
+   * @return the matrix, indexed by node id
+   */
+  public DistanceMatrix allPairs(Graph graph, boolean withSuccessors) {
+    DistanceMatrix matrix = DistanceMatrix.inMemory(graph.nodeCount(), withSuccessors);
+    AllPairsSolver.solve(graph, matrix);
+    return matrix;
+  }
+
+  /**
+   * Compute the cost of the shortest path between every pair of nodes into a memory-mapped file,
+   * for graphs whose matrix does not fit on the heap.
+   *
+   * @param graph          the given graph
+   * @param withSuccessors whether to keep a successor table for allPairsPath
+   * @param file           the file to map
+   * @return the matrix, indexed by node id
+   */
+  public DistanceMatrix allPairs(Graph graph, boolean withSuccessors, Path file) throws IOException {
+    DistanceMatrix matrix = DistanceMatrix.mapped(file, graph.nodeCount(), withSuccessors);
+    AllPairsSolver.solve(graph, matrix);
+    matrix.force();
+    return matrix;
+  }
+
+  /**
+   * Read a shortest path out of an all pairs matrix that has a successor table.
+   *
+   * @param graph  the graph the matrix was computed for
+   * @param matrix the matrix
+   * @param start  the start node
+   * @param end    the end node
+   */
+  public SmartGraph allPairsPath(Graph graph, DistanceMatrix matrix, Node start, Node end) {
+    int source = graph.indexOf(start);
+    int target = graph.indexOf(end);
+    if (source < 0 || target < 0) {
+      return new SmartGraph(graph, null);
+    }
+    int[] ids = matrix.pathIds(source, target);
+    if (ids == null) {
+      return new SmartGraph(graph, null);
+    }
+    List<Node> pathList = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      pathList.add(graph.getNode(id));
+    }
+    return new SmartGraph(graph, pathList, matrix.get(source, target));
+  }
+
+  private static int[] indexesOf(Graph graph, List<Node> nodes) {
+    int[] ids = new int[nodes.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = graph.indexOf(nodes.get(i));
+      if (ids[i] < 0) {
+        throw new IllegalArgumentException(
+                String.format("The node <%s> is not in the graph.", nodes.get(i).getName()));
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Base dijkstra algorithm on a compact graph. The search runs on int ids and flat arrays only.
+   *
+   * @param graph the given graph
+   * @param start the id of the start node
+   * @param end   the id of the end node
+   */
+  public SmartGraph dijkstraBase(CsrGraph graph, int start, int end) {
+    SearchWorkspace workspace = workspaces.get();
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE, workspace);
+    double cost = workspace.search(graph, start, end, null);
+    if (cost == Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+    return QueryProbe.finish(probe, new SmartGraph(null, workspace.path(graph, end), cost));
+  }
+
+  /**
+   * Shortest path on a compact graph with the parallel delta-stepping engine on the common
+   * fork-join pool. For batches, or to pick the thread count, build a DeltaStepping once and reuse
+   * it with dijkstraDeltaStepping(DeltaStepping, int, int).
+   *
+   * @param graph the given graph
+   * @param start the id of the start node
+   * @param end   the id of the end node
+   * @param delta the bucket width, e.g. DeltaStepping.suggestDelta(graph)
+   */
+  public SmartGraph dijkstraDeltaStepping(CsrGraph graph, int start, int end, double delta) {
+    return dijkstraDeltaStepping(new DeltaStepping(graph, delta, ForkJoinPool.commonPool()), start, end);
+  }
+
+  /**
+   * Shortest path with a prepared delta-stepping engine. The engine settles every node reachable
+   * from start, so distances to all other nodes can be read from it afterwards.
+   *
+   * @param engine the engine, which holds the graph
+   * @param start  the id of the start node
+   * @param end    the id of the end node
+   */
+  public SmartGraph dijkstraDeltaStepping(DeltaStepping engine, int start, int end) {
+    CsrGraph graph = engine.getGraph();
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE);
+    engine.run(start);
+    int[] ids = engine.pathIds(end);
+    if (ids == null) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+    return QueryProbe.finish(probe, new SmartGraph(null, graph.toNodes(ids), engine.getDistance(end)));
+  }
+
+  /**
+   * Shortest path on a partitioned graph. Only the overlay is searched here; the source and target
+   * cells, and the legs of the path, are searched by the shards of the cells, which may live in
+   * other processes.
+   *
+   * @param overlay the overlay of the partitioned graph
+   * @param shards  the shard of every cell
+   * @param start   the id of the start node in the whole graph
+   * @param end     the id of the end node in the whole graph
+   */
+  public SmartGraph dijkstraPartitioned(OverlayGraph overlay, IntFunction<? extends CellShard> shards,
+                                        int start, int end) {
+    SearchWorkspace workspace = workspaces.get();
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.DIJKSTRA_BASE, workspace);
+    return QueryProbe.finish(probe, overlay.route(start, end, shards, workspace));
+  }
+
+  /**
+   * To find the shortest path on a compact graph with bypassing certain node(s).
+   *
+   * @param graph    the given graph
+   * @param start    the id of the starting node
+   * @param end      the id of the destination node
+   * @param bypasses the ids of the nodes to be bypassed
+   */
+  public SmartGraph dijkstraBypass(CsrGraph graph, int start, int end, int[] bypasses) {
+    SearchMask mask = new SearchMask();
+    for (int bypass : bypasses) {
+      mask.blockNode(bypass);
+    }
+    return dijkstraBypass(graph, start, end, mask);
+  }
+
+  /**
+   * To find the shortest path on a compact graph avoiding the nodes and edges of the given mask.
+   * The mask is only read, so one mask or many different masks can be used concurrently against
+   * the same graph.
+   *
+   * @param graph the given graph
+   * @param start the id of the starting node
+   * @param end   the id of the destination node
+   * @param mask  the nodes and edges to be bypassed
+   */
+  public SmartGraph dijkstraBypass(CsrGraph graph, int start, int end, SearchMask mask) {
+    if (mask.isNodeBlocked(start) || mask.isNodeBlocked(end)) {
+      QueryProbe.reject(listeners, ProblemType.BYPASSING,
+              "We cannot remove the starting node or the destination node.");
+      return new SmartGraph(null, null);
+    }
+
+    SearchWorkspace workspace = workspaces.get();
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.BYPASSING, workspace);
+    double cost = workspace.search(graph, start, end, mask);
+    if (cost == Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+    return QueryProbe.finish(probe, new SmartGraph(null, workspace.path(graph, end), cost));
+  }
+
+  /**
+   * To find the shortest path on a compact graph from start to end that goes through every must go
+   * node, in whichever order is cheapest. As in the Graph version, one search runs from the start
+   * and from every must go node, in parallel, WaypointSolver picks the order from the distance
+   * matrix, and the paths of the chosen legs are joined together.
+   *
+   * @param graph  the given graph
+   * @param start  the id of the starting node
+   * @param end    the id of the destination node
+   * @param mustGo the ids of the nodes to visit
+   */
+  public SmartGraph dijkstraMustGo(CsrGraph graph, int start, int end, int[] mustGo) {
+    if (mustGo == null || mustGo.length == 0) {
+      return dijkstraBase(graph, start, end);
+    }
+
+    for (int node : mustGo) {
+      if (node == start || node == end) {
+        QueryProbe.reject(listeners, ProblemType.MUST_GO, "Please try nodes except the start node and the end node.");
+        return new SmartGraph(null, null);
+      }
+      if (node < 0 || node >= graph.nodeCount()) {
+        QueryProbe.reject(listeners, ProblemType.MUST_GO, String.format("The node id <%d> is not in the graph.", node));
+        return new SmartGraph(null, null);
+      }
+    }
+
+    if (start < 0 || start >= graph.nodeCount() || end < 0 || end >= graph.nodeCount()) {
+      QueryProbe.reject(listeners, ProblemType.MUST_GO, "Graph doesn't contain start node or end node.");
+      return new SmartGraph(null, null);
+    }
+
+    // index 0 is the start, then the distinct must go nodes, then the end
+    int[] waypoints = IntStream.of(mustGo).distinct().toArray();
+    int size = waypoints.length + 2;
+    int[] points = new int[size];
+    points[0] = start;
+    System.arraycopy(waypoints, 0, points, 1, waypoints.length);
+    points[size - 1] = end;
+
+    int[] targets = Arrays.copyOfRange(points, 1, size);
+    double[][] distances = new double[size][size];
+    int[][] legs = new int[size * size][];
+    QueryProbe probe = QueryProbe.start(listeners, ProblemType.MUST_GO);
+    IntStream.range(0, size - 1).parallel().forEach(from -> {
+      SearchWorkspace workspace = workspaces.get();
+      SearchCounts before = probe == null ? null : workspace.counts();
+      workspace.searchAll(graph, points[from], targets, null);
+      if (probe != null) {
+        probe.add(workspace.counts().minus(before));
+      }
+      for (int to = 1; to < size; to++) {
+        distances[from][to] = workspace.getDistance(points[to]);
+        legs[from * size + to] = workspace.pathIds(points[to]);
+      }
+    });
+
+    int[] order = WaypointSolver.solve(distances);
+    double total = WaypointSolver.cost(distances, order);
+    if (total >= Double.MAX_VALUE) {
+      return QueryProbe.finish(probe, new SmartGraph(null, null));
+    }
+
+    IntStream.Builder ids = IntStream.builder().add(start);
+    int prev = 0;
+    for (int j = 0; j <= order.length; j++) {
+      int next = j < order.length ? order[j] : size - 1;
+      int[] leg = legs[prev * size + next];
+      for (int k = 1; k < leg.length; k++) {
+        ids.add(leg[k]);
+      }
+      prev = next;
+    }
+    return QueryProbe.finish(probe, new SmartGraph(null, graph.toNodes(ids.build().toArray()), total));
+  }
+
+}
@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Node;
+import models.SmartGraph;
+
+/**
+ * PrintingListener writes the answer of every query to the console, in the format of its problem.
+ * ServiceProvider adds one to its services; other callers get no console output unless they add
+ * one themselves.
+ */
+public class PrintingListener implements QueryListener {
+
+  @Override
+  public void queryFinished(QueryEvent event) {
+    switch (event.getType()) {
+      case MUST_GO:
+        printMustGo(event);
+        break;
+      case WIDEST_PATH:
+        printWidestPath(event);
+        break;
+      case NETWORK_DELAY:
+        printNetworkDelay(event);
+        break;
+      case CHEAPEST_FLIGHTS:
+        printCheapestPrice(event);
+        break;
+      default:
+        printPaths(event);
+    }
+  }
+
+  @Override
+  public void queryRejected(ProblemType type, String reason) {
+    System.out.println(reason);
+  }
+
+  @Override
+  public void queryWarning(ProblemType type, String message) {
+    System.out.println(message);
+  }
+
+  private static void printPaths(QueryEvent event) {
+    if (!event.isFound()) {
+      System.out.println("\nNo available path between the start node and end node.");
+      return;
+    }
+    for (SmartGraph result : event.getResults()) {
+      System.out.println("the path costs: " + result.getCost());
+
+      System.out.print("the path is: ");
+      for (Node node : result.getPath()) {
+        System.out.print(node.getName() + " ");
+      }
+      System.out.println();
+    }
+  }
+
+  private static void printMustGo(QueryEvent event) {
+    if (!event.isFound()) {
+      System.out.println("\nNo available path between the start node and end node.");
+      return;
+    }
+    SmartGraph result = event.getResult();
+    List<String> names = new ArrayList<>();
+    for (Node node : result.getPath()) {
+      names.add(node.getName());
+    }
+    System.out.println("The lowest cost is: " + result.getCost());
+    System.out.println("The shortest path is: " + names);
+  }
+
+  private static void printWidestPath(QueryEvent event) {
+    if (!event.isFound()) {
+      System.out.println("Could not find a path between the starting router and the ending router.");
+      return;
+    }
+    SmartGraph result = event.getResult();
+    System.out.println("The largest bandwidth is:" + result.getCost());
+    System.out.print("It is path is: ");
+    for (Node node : result.getPath()) {
+      System.out.print(node.getName() + " ");
+    }
+  }
+
+  private static void printNetworkDelay(QueryEvent event) {
+    if (!event.isFound()) {
+      System.out.println("Could not reach all nodes from the source node.");
+      return;
+    }
+    SmartGraph result = event.getResult();
+    System.out.println("Longest Path in the Network:");
+    for (Node n : result.getPath()) {
+      System.out.print(n.getName() + " ");
+    }
+    System.out.println();
+
+    System.out.println("Total Delay Time: " + Math.round(result.getCost()));
+  }
+
+  private static void printCheapestPrice(QueryEvent event) {
+    if (!event.isFound()) {
+      System.out.println("Could not find cheapest price between source city and destination city.");
+      return;
+    }
+    SmartGraph result = event.getResult();
+    System.out.println("The cheapest price is: " + result.getCost());
+    System.out.print("The path is: ");
+    result.getPath().forEach(e -> System.out.print(e.getName() + " "));
+    System.out.println();
+  }
+}
@@ -0,0 +1,63 @@
+import java.util.List;
+
+import models.SearchCounts;
+import models.SmartGraph;
+
+/**
+ * QueryEvent describes one answered query: its problem, its results, the search work it took and
+ * how long it ran.
+ */
+public class QueryEvent {
+  private final ProblemType type;
+  private final List<SmartGraph> results;
+  private final SearchCounts counts;
+  private final long nanos;
+
+  public QueryEvent(ProblemType type, List<SmartGraph> results, SearchCounts counts, long nanos) {
+    this.type = type;
+    this.results = results;
+    this.counts = counts;
+    this.nanos = nanos;
+  }
+
+  public ProblemType getType() {
+    return type;
+  }
+
+  /**
+   * @return the results; one for most queries, up to k ranked paths for k shortest paths
+   */
+  public List<SmartGraph> getResults() {
+    return results;
+  }
+
+  /**
+   * @return the first result, or null if there is none
+   */
+  public SmartGraph getResult() {
+    return results.isEmpty() ? null : results.get(0);
+  }
+
+  /**
+   * @return whether a path was found
+   */
+  public boolean isFound() {
+    SmartGraph result = getResult();
+    return result != null && result.getPath() != null;
+  }
+
+  /**
+   * @return the nodes settled, edges relaxed and heap operations of the query; zero for queries
+   *     answered from a prebuilt structure without a search
+   */
+  public SearchCounts getCounts() {
+    return counts;
+  }
+
+  /**
+   * @return the wall clock time of the query in nanoseconds
+   */
+  public long getNanos() {
+    return nanos;
+  }
+}
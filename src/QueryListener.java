@@ -0,0 +1,32 @@
+/**
+ * QueryListener is told about every query a DijkstraService or DijkstraAppsService answers. Add
+ * one with addListener on the service; a service with no listeners does no bookkeeping at all.
+ *
+ * <p>Listeners are called on the thread that ran the query, so they must be thread safe when the
+ * service is shared, and should return quickly.
+ */
+public interface QueryListener {
+
+  /**
+   * Called once a query has been answered, whether or not a path was found.
+   * @param event the query, its results and the work it took
+   */
+  void queryFinished(QueryEvent event);
+
+  /**
+   * Called when a query is turned down before any search runs, e.g. for a start node that is not in
+   * the graph.
+   * @param type the problem of the query
+   * @param reason why the query was turned down
+   */
+  default void queryRejected(ProblemType type, String reason) {
+  }
+
+  /**
+   * Called when a query runs on, but part of its input was ignored.
+   * @param type the problem of the query
+   * @param message what was ignored
+   */
+  default void queryWarning(ProblemType type, String message) {
+  }
+}
@@ -0,0 +1,234 @@
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import models.LatencyHistogram;
+import models.SearchCounts;
+
+/**
+ * QueryMetrics counts queries, search work and latency per ProblemType. Add it to the services with
+ * addListener; it can be read through JMX once registered, under
+ * network:type=QueryMetrics,problem=&lt;ProblemType&gt;, or as text with toText.
+ */
+public class QueryMetrics implements QueryListener {
+
+  /**
+   * The metrics of one problem, as seen through JMX. Latencies are in microseconds.
+   */
+  public interface ProblemMetricsMXBean {
+    long getQueries();
+
+    long getNotFound();
+
+    long getRejected();
+
+    long getSettled();
+
+    long getRelaxations();
+
+    long getHeapPushes();
+
+    long getHeapPops();
+
+    long getHeapDecreaseKeys();
+
+    double getMeanLatencyMicros();
+
+    double getP50LatencyMicros();
+
+    double getP90LatencyMicros();
+
+    double getP99LatencyMicros();
+
+    double getP999LatencyMicros();
+
+    double getMaxLatencyMicros();
+  }
+
+  private final Map<ProblemType, ProblemMetrics> metrics = new EnumMap<>(ProblemType.class);
+
+  public QueryMetrics() {
+    for (ProblemType type : ProblemType.values()) {
+      metrics.put(type, new ProblemMetrics());
+    }
+  }
+
+  @Override
+  public void queryFinished(QueryEvent event) {
+    ProblemMetrics m = metrics.get(event.getType());
+    SearchCounts counts = event.getCounts();
+    m.queries.increment();
+    if (!event.isFound()) {
+      m.notFound.increment();
+    }
+    m.settled.add(counts.getSettled());
+    m.relaxations.add(counts.getRelaxations());
+    m.pushes.add(counts.getPushes());
+    m.pops.add(counts.getPops());
+    m.decreaseKeys.add(counts.getDecreaseKeys());
+    m.latency.record(event.getNanos());
+  }
+
+  @Override
+  public void queryRejected(ProblemType type, String reason) {
+    metrics.get(type).rejected.increment();
+  }
+
+  /**
+   * @param type the problem
+   * @return the live metrics of the problem
+   */
+  public ProblemMetricsMXBean get(ProblemType type) {
+    return metrics.get(type);
+  }
+
+  /**
+   * Register one MXBean per problem with the platform MBean server, replacing any registered
+   * before under the same names.
+   */
+  public void register() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (Map.Entry<ProblemType, ProblemMetrics> entry : metrics.entrySet()) {
+      ObjectName name = objectName(entry.getKey());
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(entry.getValue(), name);
+    }
+  }
+
+  /**
+   * Remove the MXBeans of register, if they are still registered.
+   */
+  public void unregister() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ProblemType type : metrics.keySet()) {
+      ObjectName name = objectName(type);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    }
+  }
+
+  /**
+   * @return every metric of every problem, one per line, in the Prometheus text format
+   */
+  public String toText() {
+    StringBuilder out = new StringBuilder();
+    counter(out, "queries_total", "Queries answered.", ProblemMetricsMXBean::getQueries);
+    counter(out, "queries_not_found_total", "Queries answered without a path.", ProblemMetricsMXBean::getNotFound);
+    counter(out, "queries_rejected_total", "Queries turned down unsearched.", ProblemMetricsMXBean::getRejected);
+    counter(out, "nodes_settled_total", "Nodes settled.", ProblemMetricsMXBean::getSettled);
+    counter(out, "edges_relaxed_total", "Edges relaxed.", ProblemMetricsMXBean::getRelaxations);
+    counter(out, "heap_pushes_total", "Heap inserts.", ProblemMetricsMXBean::getHeapPushes);
+    counter(out, "heap_pops_total", "Heap pops.", ProblemMetricsMXBean::getHeapPops);
+    counter(out, "heap_decrease_keys_total", "Heap decrease-keys.", ProblemMetricsMXBean::getHeapDecreaseKeys);
+
+    out.append("# HELP query_latency_seconds Query latency.\n");
+    out.append("# TYPE query_latency_seconds summary\n");
+    for (Map.Entry<ProblemType, ProblemMetrics> entry : metrics.entrySet()) {
+      String problem = entry.getKey().name();
+      LatencyHistogram latency = entry.getValue().latency;
+      for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+        out.append(String.format(Locale.ROOT, "query_latency_seconds{problem=\"%s\",quantile=\"%s\"} %.9f\n",
+                problem, q, latency.getValueAtPercentile(q * 100) / 1e9));
+      }
+      out.append(String.format(Locale.ROOT, "query_latency_seconds_sum{problem=\"%s\"} %.9f\n", problem,
+              latency.getMean() * latency.getCount() / 1e9));
+      out.append(String.format(Locale.ROOT, "query_latency_seconds_count{problem=\"%s\"} %d\n", problem,
+              latency.getCount()));
+    }
+    return out.toString();
+  }
+
+  private interface Metric {
+    long get(ProblemMetricsMXBean metrics);
+  }
+
+  private void counter(StringBuilder out, String name, String help, Metric metric) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(" counter\n");
+    for (Map.Entry<ProblemType, ProblemMetrics> entry : metrics.entrySet()) {
+      out.append(String.format(Locale.ROOT, "%s{problem=\"%s\"} %d\n", name, entry.getKey().name(),
+              metric.get(entry.getValue())));
+    }
+  }
+
+  private static ObjectName objectName(ProblemType type) throws JMException {
+    return new ObjectName("network:type=QueryMetrics,problem=" + type.name());
+  }
+
+  private static class ProblemMetrics implements ProblemMetricsMXBean {
+    final LongAdder queries = new LongAdder();
+    final LongAdder notFound = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder settled = new LongAdder();
+    final LongAdder relaxations = new LongAdder();
+    final LongAdder pushes = new LongAdder();
+    final LongAdder pops = new LongAdder();
+    final LongAdder decreaseKeys = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    public long getQueries() {
+      return queries.sum();
+    }
+
+    public long getNotFound() {
+      return notFound.sum();
+    }
+
+    public long getRejected() {
+      return rejected.sum();
+    }
+
+    public long getSettled() {
+      return settled.sum();
+    }
+
+    public long getRelaxations() {
+      return relaxations.sum();
+    }
+
+    public long getHeapPushes() {
+      return pushes.sum();
+    }
+
+    public long getHeapPops() {
+      return pops.sum();
+    }
+
+    public long getHeapDecreaseKeys() {
+      return decreaseKeys.sum();
+    }
+
+    public double getMeanLatencyMicros() {
+      return latency.getMean() / 1000;
+    }
+
+    public double getP50LatencyMicros() {
+      return latency.getValueAtPercentile(50) / 1000.0;
+    }
+
+    public double getP90LatencyMicros() {
+      return latency.getValueAtPercentile(90) / 1000.0;
+    }
+
+    public double getP99LatencyMicros() {
+      return latency.getValueAtPercentile(99) / 1000.0;
+    }
+
+    public double getP999LatencyMicros() {
+      return latency.getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    public double getMaxLatencyMicros() {
+      return latency.getMax() / 1000.0;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+import java.util.Collections;
+import java.util.List;
+
+import models.SearchCounts;
+import models.SearchWorkspace;
+import models.SmartGraph;
+
+/**
+ * QueryProbe times one query and collects its search work for the listeners of a service. start
+ * returns null when there are no listeners, and the static helpers accept a null probe, so a
+ * service without listeners pays one isEmpty check per query and nothing else.
+ */
+final class QueryProbe {
+  private final List<QueryListener> listeners;
+  private final ProblemType type;
+  private final SearchWorkspace first;
+  private final SearchWorkspace second;
+  private final SearchCounts firstBefore;
+  private final SearchCounts secondBefore;
+  private final long startNanos;
+  private SearchCounts extra = SearchCounts.ZERO;
+
+  private QueryProbe(List<QueryListener> listeners, ProblemType type, SearchWorkspace first,
+                     SearchWorkspace second) {
+    this.listeners = listeners;
+    this.type = type;
+    this.first = first;
+    this.second = second;
+    this.firstBefore = first == null ? null : first.counts();
+    this.secondBefore = second == null ? null : second.counts();
+    this.startNanos = System.nanoTime();
+  }
+
+  static QueryProbe start(List<QueryListener> listeners, ProblemType type) {
+    return start(listeners, type, null, null);
+  }
+
+  /**
+   * @param workspace the workspace the query searches on; its work is counted
+   */
+  static QueryProbe start(List<QueryListener> listeners, ProblemType type, SearchWorkspace workspace) {
+    return start(listeners, type, workspace, null);
+  }
+
+  static QueryProbe start(List<QueryListener> listeners, ProblemType type, SearchWorkspace first,
+                          SearchWorkspace second) {
+    return listeners.isEmpty() ? null : new QueryProbe(listeners, type, first, second);
+  }
+
+  /**
+   * Count work done outside the workspaces given to start, e.g. on other threads or local heaps.
+   * @param counts the work
+   */
+  synchronized void add(SearchCounts counts) {
+    extra = extra.plus(counts);
+  }
+
+  /**
+   * Tell the listeners that the query is answered.
+   * @param probe the probe of the query, or null
+   * @param result the result
+   * @return the result
+   */
+  static SmartGraph finish(QueryProbe probe, SmartGraph result) {
+    if (probe != null) {
+      probe.finish(Collections.singletonList(result));
+    }
+    return result;
+  }
+
+  static List<SmartGraph> finish(QueryProbe probe, List<SmartGraph> results) {
+    if (probe != null) {
+      probe.finish(Collections.unmodifiableList(results));
+    }
+    return results;
+  }
+
+  static void reject(List<QueryListener> listeners, ProblemType type, String reason) {
+    for (QueryListener listener : listeners) {
+      listener.queryRejected(type, reason);
+    }
+  }
+
+  static void warn(List<QueryListener> listeners, ProblemType type, String message) {
+    for (QueryListener listener : listeners) {
+      listener.queryWarning(type, message);
+    }
+  }
+
+  private void finish(List<SmartGraph> results) {
+    long nanos = System.nanoTime() - startNanos;
+    SearchCounts counts;
+    synchronized (this) {
+      counts = extra;
+    }
+    if (first != null) {
+      counts = counts.plus(first.counts().minus(firstBefore));
+    }
+    if (second != null) {
+      counts = counts.plus(second.counts().minus(secondBefore));
+    }
+    QueryEvent event = new QueryEvent(type, results, counts, nanos);
+    for (QueryListener listener : listeners) {
+      listener.queryFinished(event);
+    }
+  }
+}
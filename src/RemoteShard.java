@@ -0,0 +1,90 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import models.CellShard;
+import models.Node;
+import models.SmartGraph;
+
+/**
+ * RemoteShard is the client of a ShardServer: a CellShard whose cell lives in another process.
+ * Path nodes come back by name only.
+ */
+public class RemoteShard implements CellShard {
+  private final String base;
+
+  /**
+   * @param host the host of the shard server, e.g. localhost
+   * @param port its port
+   */
+  public RemoteShard(String host, int port) {
+    this.base = String.format("http://%s:%d", host, port);
+  }
+
+  @Override
+  public double[] distancesFrom(int node) {
+    return distances(get("/from?node=" + node));
+  }
+
+  @Override
+  public double[] distancesTo(int node) {
+    return distances(get("/to?node=" + node));
+  }
+
+  @Override
+  public SmartGraph path(int from, int to) {
+    Map<?, ?> result = (Map<?, ?>) get("/path?from=" + from + "&to=" + to);
+    if (result.get("path") == null) {
+      return new SmartGraph(null, null);
+    }
+    List<Node> path = new ArrayList<>();
+    for (Object name : (List<?>) result.get("path")) {
+      path.add(new Node((String) name));
+    }
+    return new SmartGraph(null, path, (Double) result.get("cost"));
+  }
+
+  private static double[] distances(Object result) {
+    List<?> list = (List<?>) result;
+    double[] distances = new double[list.size()];
+    for (int i = 0; i < distances.length; i++) {
+      distances[i] = list.get(i) == null ? Double.MAX_VALUE : (Double) list.get(i);
+    }
+    return distances;
+  }
+
+  /**
+   * @return the parsed response
+   * @throws IllegalArgumentException if the shard turned the request down
+   * @throws UncheckedIOException if the shard could not be reached
+   */
+  private Object get(String request) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(base + request).openConnection();
+      int status = connection.getResponseCode();
+      InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1 << 13];
+      try (InputStream stream = in) {
+        for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+          body.write(buffer, 0, read);
+        }
+      }
+      Object result = DijkstraServer.Json.parse(new String(body.toByteArray(), StandardCharsets.UTF_8));
+      if (status != 200) {
+        Object message = result instanceof Map ? ((Map<?, ?>) result).get("error") : null;
+        throw new IllegalArgumentException(String.format("%s%s failed: %s", base, request, message));
+      }
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -47,6 +47,9 @@ public class ServiceProvider {
 
     DijkstraService d = new DijkstraService();
     DijkstraAppsService appsService = new DijkstraAppsService();
+    PrintingListener printer = new PrintingListener();
+    d.addListener(printer);
+    appsService.addListener(printer);
 
 
     if(option == ProblemType.DIJKSTRA_BASE) {
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import models.Cell;
+import models.CsrGraph;
+import models.GraphImporter;
+import models.InertialFlow;
+import models.Node;
+import models.OverlayGraph;
+import models.SmartGraph;
+
+/**
+ * ShardServer serves one cell of a partitioned graph over HTTP on the loopback interface, so the
+ * cells of a graph too large for one heap can each live in a process of their own. A RemoteShard
+ * is the client; OverlayGraph and DijkstraService.dijkstraPartitioned take it in place of a Cell.
+ * Nodes are given by their ids in the whole graph:
+ * <ul>
+ *   <li>GET /from?node=ID and GET /to?node=ID return the costs inside the cell from the node to
+ *   every boundary node, or from every boundary node to the node, as a JSON array in ascending id
+ *   order of the boundary nodes, with null where there is no path;</li>
+ *   <li>GET /path?from=ID&amp;to=ID returns the shortest path inside the cell, e.g.
+ *   {@code {"cost":7.0,"path":["3","5","4"]}}, with a null cost and path if there is none;</li>
+ *   <li>GET / describes the cell.</li>
+ * </ul>
+ *
+ * <p>Requests run on a fixed pool of threads, which keeps the search workspaces of the cell warm.
+ *
+ * <p>Run the JVM with -Dsun.net.httpserver.nodelay=true. The JDK server writes the headers and
+ * the body of a response separately, and with Nagle on the body waits for the delayed ack of the
+ * headers, some 40 ms per request. main sets the flag itself; a process that embeds the server
+ * must pass it on the command line, since the JDK reads it once, when the first HttpServer of the
+ * process is made.
+ */
+public class ShardServer {
+  private final Cell cell;
+  private final int port;
+  private final int workers;
+  private HttpServer server;
+  private ExecutorService pool;
+
+  /**
+   * @param cell    the cell to serve
+   * @param port    the port on the loopback interface, or 0 for any free port
+   * @param workers the number of threads answering requests
+   */
+  public ShardServer(Cell cell, int port, int workers) {
+    this.cell = cell;
+    this.port = port;
+    this.workers = workers;
+  }
+
+  public void start() throws IOException {
+    pool = Executors.newFixedThreadPool(workers);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/from", exchange -> distances(exchange, false));
+    server.createContext("/to", exchange -> distances(exchange, true));
+    server.createContext("/path", this::path);
+    server.createContext("/", this::describe);
+    server.setExecutor(pool);
+    server.start();
+  }
+
+  /**
+   * @return the port the server listens on
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void stop() {
+    server.stop(0);
+    pool.shutdown();
+  }
+
+  private void describe(HttpExchange exchange) throws IOException {
+    respond(exchange, 200, String.format("{\"cell\":%d,\"nodes\":%d,\"boundary\":%d}\n", cell.getIndex(),
+            cell.nodeCount(), cell.getBoundary().length));
+  }
+
+  private void distances(HttpExchange exchange, boolean reverse) throws IOException {
+    double[] distances;
+    try {
+      int node = parameter(exchange, "node");
+      distances = reverse ? cell.distancesTo(node) : cell.distancesFrom(node);
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, error(e.getMessage()));
+      return;
+    }
+    StringBuilder body = new StringBuilder("[");
+    for (int i = 0; i < distances.length; i++) {
+      if (i > 0) {
+        body.append(',');
+      }
+      DijkstraServer.Json.write(distances[i] == Double.MAX_VALUE ? null : distances[i], body);
+    }
+    respond(exchange, 200, body.append("]\n").toString());
+  }
+
+  private void path(HttpExchange exchange) throws IOException {
+    SmartGraph result;
+    try {
+      result = cell.path(parameter(exchange, "from"), parameter(exchange, "to"));
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, error(e.getMessage()));
+      return;
+    }
+    if (result.getPath() == null) {
+      respond(exchange, 200, "{\"cost\":null,\"path\":null}\n");
+      return;
+    }
+    StringBuilder body = new StringBuilder("{\"cost\":").append(result.getCost()).append(",\"path\":[");
+    List<Node> path = result.getPath();
+    for (int i = 0; i < path.size(); i++) {
+      if (i > 0) {
+        body.append(',');
+      }
+      DijkstraServer.Json.write(path.get(i).getName(), body);
+    }
+    respond(exchange, 200, body.append("]}\n").toString());
+  }
+
+  private static int parameter(HttpExchange exchange, String name) {
+    Map<String, String> parameters = new HashMap<>();
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query != null) {
+      for (String pair : query.split("&")) {
+        int equals = pair.indexOf('=');
+        if (equals > 0) {
+          parameters.put(pair.substring(0, equals), pair.substring(equals + 1));
+        }
+      }
+    }
+    try {
+      return Integer.parseInt(parameters.get(name));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("The request needs a <%s> node id.", name));
+    }
+  }
+
+  private static String error(String message) {
+    StringBuilder body = new StringBuilder("{\"error\":");
+    DijkstraServer.Json.write(message, body);
+    return body.append("}\n").toString();
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Partition a graph into a directory of cells, or serve one cell of such a directory until the
+   * process is stopped:
+   * <pre>
+   * ShardServer partition &lt;graph file&gt; &lt;max cell size&gt; &lt;directory&gt;
+   * ShardServer serve &lt;directory&gt; &lt;cell&gt; [port] [workers]
+   * </pre>
+   * Graph files ending in .csr are mapped as saved by CsrGraph.save; anything else is imported
+   * with GraphImporter. The overlay goes to overlay.bin in the directory.
+   */
+  public static void main(String[] args) throws IOException {
+    // before any HttpServer exists, which is when the JDK reads it; see the class doc
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    if (args.length >= 4 && args[0].equals("partition")) {
+      Path file = Paths.get(args[1]);
+      CsrGraph graph = file.toString().endsWith(".csr")
+              ? CsrGraph.map(file) : GraphImporter.read(file, false).toCsrGraph();
+      Path directory = Paths.get(args[3]);
+      int[] cells = InertialFlow.partition(graph, Integer.parseInt(args[2]));
+      Cell[] shards = Cell.split(graph, cells);
+      for (Cell shard : shards) {
+        shard.save(directory);
+      }
+      OverlayGraph overlay = OverlayGraph.build(graph, cells, c -> shards[c]);
+      overlay.save(directory.resolve("overlay.bin"));
+      System.out.println(String.format("Split %d nodes into %d cells; the overlay has %d boundary nodes and %d edges.",
+              graph.nodeCount(), overlay.cellCount(), overlay.boundaryCount(), overlay.edgeCount()));
+    } else if (args.length >= 3 && args[0].equals("serve")) {
+      Cell cell = Cell.load(Paths.get(args[1]), Integer.parseInt(args[2]));
+      int port = args.length > 3 ? Integer.parseInt(args[3]) : 9000 + cell.getIndex();
+      int workers = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+      ShardServer server = new ShardServer(cell, port, workers);
+      server.start();
+      System.out.println(String.format("Serving cell %d on http://localhost:%d/", cell.getIndex(), server.getPort()));
+    } else {
+      System.out.println("Usage: ShardServer partition <graph file> <max cell size> <directory>");
+      System.out.println("       ShardServer serve <directory> <cell> [port] [workers]");
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package models;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * AllPairsSolver fills a DistanceMatrix with the shortest path cost between every pair of nodes of
+ * a graph, indexed by node id. Dense graphs use a blocked Floyd-Warshall that works on square tiles
+ * small enough to stay in cache; sparse graphs run one dijkstra per node in parallel. Edge
+ * weights must not be negative.
+ */
+public class AllPairsSolver {
+  /**
+   * Graphs with at least this many edges per node pair use Floyd-Warshall. Below it, n dijkstra
+   * runs at O(m log n) each beat the n^3 relaxations of Floyd-Warshall.
+   */
+  public static final double DENSE_THRESHOLD = 0.1;
+
+  /**
+   * The side of a Floyd-Warshall tile. Three tiles of doubles and successors fit in L2 cache.
+   */
+  private static final int TILE = 64;
+
+  /**
+   * The most cells the dijkstra solver gathers for one block of target columns.
+   */
+  private static final int BLOCK_CELLS = 1 << 16;
+
+  /**
+   * Pick Floyd-Warshall or repeated dijkstra by the density of the graph.
+   * @param graph the graph
+   * @param matrix the output, of size graph.nodeCount()
+   */
+  public static void solve(Graph graph, DistanceMatrix matrix) {
+    double n = graph.nodeCount();
+    if (edgeCount(graph) >= DENSE_THRESHOLD * n * n) {
+      floydWarshall(graph, matrix);
+    } else {
+      dijkstra(graph, matrix);
+    }
+  }
+
+  /**
+   * Run one full dijkstra per target over the into edges, in parallel. The parent pointers of the
+   * search from j are the successors of column j, so every column is a single tree and paths
+   * cannot cycle, even where zero weight edges tie several ways to j. The columns of a block of
+   * targets are gathered and written row by row, to keep writes to the matrix sequential.
+   */
+  public static void dijkstra(Graph graph, DistanceMatrix matrix) {
+    int n = checkSize(graph, matrix);
+    int width = Math.max(1, Math.min(TILE, BLOCK_CELLS / Math.max(1, n)));
+    ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(n));
+    IntStream.range(0, (n + width - 1) / width).parallel().forEach(block -> {
+      int first = block * width;
+      int columns = Math.min(width, n - first);
+      double[] cells = new double[n * columns];
+      int[] next = matrix.hasSuccessors() ? new int[n * columns] : null;
+      Arrays.fill(cells, Double.MAX_VALUE);
+      if (next != null) {
+        Arrays.fill(next, -1);
+      }
+      SearchWorkspace workspace = workspaces.get();
+      for (int c = 0; c < columns; c++) {
+        if (graph.getNode(first + c) == null) {
+          continue;
+        }
+        workspace.settleAll(graph, first + c, true);
+        for (int id : workspace.settledIds()) {
+          cells[id * columns + c] = workspace.getDistance(id);
+          if (next != null) {
+            int parent = workspace.getParent(id);
+            next[id * columns + c] = parent < 0 ? id : parent;
+          }
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        matrix.write(i, first, cells, next, i * columns, columns);
+      }
+    });
+  }
+
+  /**
+   * Run Floyd-Warshall on TILE x TILE blocks. Each round k first closes the diagonal tile, then the
+   * tiles in row and column k, then every other tile; the tiles of one phase are independent and
+   * run in parallel.
+   *
+   * <p>With successors, equal distances are broken by the number of edges, which the solver keeps
+   * in a table of its own. Otherwise a cycle of zero weight edges could leave each of its nodes
+   * pointing at the next as the way to j. The table is no larger than the edge lists of a graph
+   * dense enough for Floyd-Warshall.
+   */
+  public static void floydWarshall(Graph graph, DistanceMatrix matrix) {
+    int n = checkSize(graph, matrix);
+    boolean withSuccessors = matrix.hasSuccessors();
+    if (withSuccessors && (long) n * n > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(String.format("%d nodes are too many to keep successors with Floyd-Warshall.", n));
+    }
+    int[] hops = withSuccessors ? new int[n * n] : null;
+    IntStream.range(0, n).parallel().forEach(i -> {
+      double[] row = new double[n];
+      int[] next = withSuccessors ? new int[n] : null;
+      Arrays.fill(row, Double.MAX_VALUE);
+      if (next != null) {
+        Arrays.fill(next, -1);
+      }
+      Node node = graph.getNode(i);
+      if (node != null) {
+        row[i] = 0;
+        if (next != null) {
+          next[i] = i;
+        }
+        List<Edge> edges = node.getEdges();
+        for (int e = 0; e < edges.size(); e++) {
+          int j = graph.indexOf(edges.get(e).getDestNode());
+          if (j >= 0 && edges.get(e).getWeight() < row[j]) {
+            row[j] = edges.get(e).getWeight();
+            if (next != null) {
+              next[j] = j;
+              hops[i * n + j] = 1;
+            }
+          }
+        }
+      }
+      matrix.write(i, 0, row, next, 0, n);
+    });
+
+    int tiles = (n + TILE - 1) / TILE;
+    for (int k = 0; k < tiles; k++) {
+      int round = k;
+      Tile diagonal = new Tile(matrix, hops, k, k);
+      diagonal.relax(diagonal, diagonal);
+      diagonal.store(matrix, hops);
+
+      IntStream.range(0, tiles).parallel().filter(t -> t != round).forEach(t -> {
+        Tile row = new Tile(matrix, hops, round, t);
+        row.relax(diagonal, row);
+        row.store(matrix, hops);
+        Tile column = new Tile(matrix, hops, t, round);
+        column.relax(column, diagonal);
+        column.store(matrix, hops);
+      });
+
+      IntStream.range(0, tiles * tiles).parallel().forEach(t -> {
+        int i = t / tiles;
+        int j = t % tiles;
+        if (i == round || j == round) {
+          return;
+        }
+        Tile tile = new Tile(matrix, hops, i, j);
+        tile.relax(new Tile(matrix, hops, i, round), new Tile(matrix, hops, round, j));
+        tile.store(matrix, hops);
+      });
+    }
+  }
+
+  private static int checkSize(Graph graph, DistanceMatrix matrix) {
+    if (matrix.size() != graph.nodeCount()) {
+      throw new IllegalArgumentException(String.format("The matrix is %d x %d but the graph has %d ids.",
+              matrix.size(), matrix.size(), graph.nodeCount()));
+    }
+    return matrix.size();
+  }
+
+  private static long edgeCount(Graph graph) {
+    long count = 0;
+    for (Node node : graph.getNodes()) {
+      count += node.getEdges().size();
+    }
+    return count;
+  }
+
+  /**
+   * A TILE x TILE block of the matrix, with the edge counts of its paths when there are
+   * successors. Cells past the edge of the matrix hold Double.MAX_VALUE, so they never improve
+   * anything.
+   */
+  private static class Tile {
+    final int row;
+    final int column;
+    final double[] distances = new double[TILE * TILE];
+    final int[] successors;
+    final int[] hops;
+
+    Tile(DistanceMatrix matrix, int[] hops, int tileRow, int tileColumn) {
+      row = tileRow * TILE;
+      column = tileColumn * TILE;
+      successors = hops != null ? new int[TILE * TILE] : null;
+      this.hops = hops != null ? new int[TILE * TILE] : null;
+      Arrays.fill(distances, Double.MAX_VALUE);
+      int n = matrix.size();
+      int width = Math.min(TILE, n - column);
+      for (int i = 0; i < TILE && row + i < n; i++) {
+        matrix.read(row + i, column, distances, successors, i * TILE, width);
+        if (hops != null) {
+          System.arraycopy(hops, (row + i) * n + column, this.hops, i * TILE, width);
+        }
+      }
+    }
+
+    /**
+     * Relax every cell (i, j) of this tile through every k: d(i, j) = min(d(i, j), a(i, k) + b(k, j)),
+     * taking the path with fewer edges on a tie when there are successors. The k loop is outermost,
+     * so this is also correct when a or b is this tile.
+     */
+    void relax(Tile a, Tile b) {
+      for (int k = 0; k < TILE; k++) {
+        for (int i = 0; i < TILE; i++) {
+          double viaK = a.distances[i * TILE + k];
+          if (viaK == Double.MAX_VALUE) {
+            continue;
+          }
+          int bRow = k * TILE;
+          int cRow = i * TILE;
+          if (successors == null) {
+            for (int j = 0; j < TILE; j++) {
+              double distance = viaK + b.distances[bRow + j];
+              if (distance < distances[cRow + j]) {
+                distances[cRow + j] = distance;
+              }
+            }
+            continue;
+          }
+          int first = a.successors[i * TILE + k];
+          int hopsToK = a.hops[i * TILE + k];
+          for (int j = 0; j < TILE; j++) {
+            double distance = viaK + b.distances[bRow + j];
+            int count = hopsToK + b.hops[bRow + j];
+            if (distance < distances[cRow + j]
+                    || distance == distances[cRow + j] && distance < Double.MAX_VALUE && count < hops[cRow + j]) {
+              distances[cRow + j] = distance;
+              successors[cRow + j] = first;
+              hops[cRow + j] = count;
+            }
+          }
+        }
+      }
+    }
+
+    void store(DistanceMatrix matrix, int[] hops) {
+      int n = matrix.size();
+      int width = Math.min(TILE, n - column);
+      for (int i = 0; i < TILE && row + i < n; i++) {
+        matrix.write(row + i, column, distances, successors, i * TILE, width);
+        if (hops != null) {
+          System.arraycopy(this.hops, i * TILE, hops, (row + i) * n + column, width);
+        }
+      }
+    }
+  }
+}
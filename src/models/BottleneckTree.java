@@ -0,0 +1,215 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * BottleneckTree answers repeated widest path queries on a network whose links carry the same
+ * bandwidth both ways. In a maximum spanning forest the tree path between two nodes is a widest
+ * path of the whole network, so the forest is built once with Kruskal's algorithm and every query
+ * climbs the tree with binary lifting in O(log n).
+ *
+ * <p>Edges of the source graph are treated as undirected. For one way links use
+ * DijkstraAppsService.widestPath on the graph itself.
+ */
+public class BottleneckTree {
+  private final CsrGraph graph;
+  private final int[] depths;
+  private final int[] components;
+  private final int[][] ancestors;
+  private final double[][] widths;
+
+  private BottleneckTree(CsrGraph graph, int[] depths, int[] components, int[][] ancestors, double[][] widths) {
+    this.graph = graph;
+    this.depths = depths;
+    this.components = components;
+    this.ancestors = ancestors;
+    this.widths = widths;
+  }
+
+  /**
+   * Build the maximum spanning forest of the graph.
+   * @param graph the network, weighted by bandwidth
+   * @return the query structure
+   */
+  public static BottleneckTree build(CsrGraph graph) {
+    int n = graph.nodeCount();
+    int m = graph.edgeCount();
+    int[] edgeSources = new int[m];
+    for (int u = 0; u < n; u++) {
+      for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+        edgeSources[e] = u;
+      }
+    }
+
+    // Kruskal: take edges from widest to narrowest, keeping those that join two trees
+    Integer[] order = new Integer[m];
+    for (int e = 0; e < m; e++) {
+      order[e] = e;
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(graph.weight(b), graph.weight(a)));
+    int[] sets = new int[n];
+    for (int i = 0; i < n; i++) {
+      sets[i] = i;
+    }
+    int[] treeOffsets = new int[n + 1];
+    int[] treeEdges = new int[Math.max(0, n - 1)];
+    int treeSize = 0;
+    for (int e : order) {
+      int a = find(sets, edgeSources[e]);
+      int b = find(sets, graph.target(e));
+      if (a != b) {
+        sets[a] = b;
+        treeEdges[treeSize++] = e;
+        treeOffsets[edgeSources[e] + 1]++;
+        treeOffsets[graph.target(e) + 1]++;
+      }
+    }
+
+    // undirected adjacency of the forest
+    for (int i = 0; i < n; i++) {
+      treeOffsets[i + 1] += treeOffsets[i];
+    }
+    int[] next = Arrays.copyOf(treeOffsets, n);
+    int[] neighbours = new int[2 * treeSize];
+    double[] neighbourWidths = new double[2 * treeSize];
+    for (int i = 0; i < treeSize; i++) {
+      int e = treeEdges[i];
+      int u = edgeSources[e];
+      int v = graph.target(e);
+      neighbours[next[u]] = v;
+      neighbourWidths[next[u]++] = graph.weight(e);
+      neighbours[next[v]] = u;
+      neighbourWidths[next[v]++] = graph.weight(e);
+    }
+
+    // root every tree and record parents in breadth first order
+    int levels = 1;
+    while ((1 << levels) < n) {
+      levels++;
+    }
+    int[][] ancestors = new int[levels][n];
+    double[][] widths = new double[levels][n];
+    int[] depths = new int[n];
+    int[] components = new int[n];
+    Arrays.fill(components, -1);
+    int[] queue = new int[n];
+    for (int root = 0; root < n; root++) {
+      if (components[root] >= 0) {
+        continue;
+      }
+      components[root] = root;
+      ancestors[0][root] = root;
+      widths[0][root] = Double.MAX_VALUE;
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = root;
+      while (head < tail) {
+        int u = queue[head++];
+        for (int i = treeOffsets[u]; i < treeOffsets[u + 1]; i++) {
+          int v = neighbours[i];
+          if (components[v] < 0) {
+            components[v] = root;
+            depths[v] = depths[u] + 1;
+            ancestors[0][v] = u;
+            widths[0][v] = neighbourWidths[i];
+            queue[tail++] = v;
+          }
+        }
+      }
+    }
+    for (int k = 1; k < levels; k++) {
+      for (int v = 0; v < n; v++) {
+        int half = ancestors[k - 1][v];
+        ancestors[k][v] = ancestors[k - 1][half];
+        widths[k][v] = Math.min(widths[k - 1][v], widths[k - 1][half]);
+      }
+    }
+    return new BottleneckTree(graph, depths, components, ancestors, widths);
+  }
+
+  public CsrGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * @param start the id of the starting node
+   * @param end the id of the ending node
+   * @return the width of the widest path, Double.MAX_VALUE if start is end, or -1 if there is no
+   *     path
+   */
+  public double width(int start, int end) {
+    if (components[start] != components[end]) {
+      return -1;
+    }
+    double width = Double.MAX_VALUE;
+    int u = start;
+    int v = end;
+    if (depths[u] < depths[v]) {
+      int temp = u;
+      u = v;
+      v = temp;
+    }
+    for (int k = ancestors.length - 1; k >= 0; k--) {
+      if (depths[u] - (1 << k) >= depths[v]) {
+        width = Math.min(width, widths[k][u]);
+        u = ancestors[k][u];
+      }
+    }
+    if (u == v) {
+      return width;
+    }
+    for (int k = ancestors.length - 1; k >= 0; k--) {
+      if (ancestors[k][u] != ancestors[k][v]) {
+        width = Math.min(width, Math.min(widths[k][u], widths[k][v]));
+        u = ancestors[k][u];
+        v = ancestors[k][v];
+      }
+    }
+    return Math.min(width, Math.min(widths[0][u], widths[0][v]));
+  }
+
+  /**
+   * @param start the id of the starting node
+   * @param end the id of the ending node
+   * @return the ids on the widest tree path from start to end, or null if there is no path
+   */
+  public int[] path(int start, int end) {
+    if (components[start] != components[end]) {
+      return null;
+    }
+    int[] up = new int[depths[start] + 1];
+    int[] down = new int[depths[end] + 1];
+    int ups = 0;
+    int downs = 0;
+    int u = start;
+    int v = end;
+    while (depths[u] > depths[v]) {
+      up[ups++] = u;
+      u = ancestors[0][u];
+    }
+    while (depths[v] > depths[u]) {
+      down[downs++] = v;
+      v = ancestors[0][v];
+    }
+    while (u != v) {
+      up[ups++] = u;
+      u = ancestors[0][u];
+      down[downs++] = v;
+      v = ancestors[0][v];
+    }
+    up[ups++] = u;
+    int[] path = Arrays.copyOf(up, ups + downs);
+    for (int i = 0; i < downs; i++) {
+      path[ups + i] = down[downs - 1 - i];
+    }
+    return path;
+  }
+
+  private static int find(int[] sets, int x) {
+    while (sets[x] != x) {
+      sets[x] = sets[sets[x]];
+      x = sets[x];
+    }
+    return x;
+  }
+}
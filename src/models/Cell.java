@@ -0,0 +1,303 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Cell is one shard of a partitioned graph: the nodes of one cell, the edges between them, and the
+ * ids the nodes have in the whole graph. Boundary nodes are the nodes with an edge to or from
+ * another cell; OverlayGraph links them up. A cell is searched without the rest of the graph, so
+ * each cell can live in a process of its own.
+ *
+ * <p>A cell is saved as two files in a directory: cell-&lt;index&gt;.csr holds the edges of the cell
+ * as a CsrGraph, which load maps, and cell-&lt;index&gt;.ids holds, little endian and each section
+ * padded to 8 bytes, a header (magic, version, index, node count n, boundary count b), the ids of
+ * the n nodes in the whole graph in ascending order, and the local ids of the b boundary nodes.
+ */
+public class Cell implements CellShard {
+  private static final int MAGIC = 0x4C4C4543;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+
+  private final int index;
+  private final CsrGraph graph;
+  private final int[] nodes;
+  private final int[] boundary;
+  private final boolean[] isBoundary;
+  private final ThreadLocal<SearchWorkspace> workspaces;
+
+  /**
+   * @param index    the cell number
+   * @param graph    the edges of the cell, on local ids
+   * @param nodes    the id in the whole graph of every local id, ascending
+   * @param boundary the local ids of the boundary nodes, ascending
+   */
+  private Cell(int index, CsrGraph graph, int[] nodes, int[] boundary) {
+    this.index = index;
+    this.graph = graph;
+    this.nodes = nodes;
+    this.boundary = boundary;
+    this.isBoundary = new boolean[nodes.length];
+    for (int b : boundary) {
+      isBoundary[b] = true;
+    }
+    this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(nodes.length));
+  }
+
+  /**
+   * Cut a graph into its cells, e.g. as numbered by InertialFlow.partition. The cells are built in
+   * parallel on the common fork-join pool.
+   * @param graph the whole graph
+   * @param cells the cell of every node
+   * @return the cells, indexed by cell number
+   */
+  public static Cell[] split(CsrGraph graph, int[] cells) {
+    int n = graph.nodeCount();
+    int cellCount = 0;
+    for (int cell : cells) {
+      cellCount = Math.max(cellCount, cell + 1);
+    }
+
+    // counting sort of the nodes by cell keeps every cell in ascending id order
+    int[] start = new int[cellCount + 1];
+    for (int cell : cells) {
+      start[cell + 1]++;
+    }
+    for (int c = 0; c < cellCount; c++) {
+      start[c + 1] += start[c];
+    }
+    int[] members = new int[n];
+    int[] next = Arrays.copyOf(start, cellCount);
+    for (int u = 0; u < n; u++) {
+      members[next[cells[u]]++] = u;
+    }
+
+    boolean[] border = new boolean[n];
+    for (int u = 0; u < n; u++) {
+      for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+        int v = graph.target(e);
+        if (cells[u] != cells[v]) {
+          border[u] = true;
+          border[v] = true;
+        }
+      }
+    }
+
+    Cell[] result = new Cell[cellCount];
+    IntStream.range(0, cellCount).parallel().forEach(c ->
+            result[c] = extract(graph, cells, c, Arrays.copyOfRange(members, start[c], start[c + 1]), border));
+    return result;
+  }
+
+  private static Cell extract(CsrGraph graph, int[] cells, int index, int[] nodes, boolean[] border) {
+    int size = nodes.length;
+    // fresh nodes, so that materializing the cell graph never touches the nodes of the whole graph
+    Node[] copies = new Node[size];
+    int m = 0;
+    int b = 0;
+    for (int i = 0; i < size; i++) {
+      Node node = graph.getNode(nodes[i]);
+      copies[i] = node.hasCoordinates() ? new Node(node.getName(), node.getX(), node.getY())
+              : new Node(node.getName());
+      for (int e = graph.firstEdge(nodes[i]); e < graph.endEdge(nodes[i]); e++) {
+        m += cells[graph.target(e)] == index ? 1 : 0;
+      }
+      b += border[nodes[i]] ? 1 : 0;
+    }
+
+    int[] sources = new int[m];
+    int[] targets = new int[m];
+    double[] weights = new double[m];
+    int[] boundary = new int[b];
+    m = 0;
+    b = 0;
+    for (int i = 0; i < size; i++) {
+      for (int e = graph.firstEdge(nodes[i]); e < graph.endEdge(nodes[i]); e++) {
+        int v = graph.target(e);
+        if (cells[v] == index) {
+          sources[m] = i;
+          targets[m] = Arrays.binarySearch(nodes, v);
+          weights[m] = graph.weight(e);
+          m++;
+        }
+      }
+      if (border[nodes[i]]) {
+        boundary[b++] = i;
+      }
+    }
+    return new Cell(index, CsrGraph.fromEdges(copies, sources, targets, weights), nodes, boundary);
+  }
+
+  /**
+   * Write the cell into the directory, replacing its files from an earlier save.
+   * @param directory the directory, created if needed
+   */
+  public void save(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    graph.save(directory.resolve("cell-" + index + ".csr"));
+    try (FileChannel channel = FileChannel.open(directory.resolve("cell-" + index + ".ids"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(index).putInt(nodes.length).putInt(boundary.length);
+      header.clear();
+      channel.write(header, 0);
+
+      long position = HEADER_BYTES;
+      CsrGraph.section(channel, position, (long) nodes.length * Integer.BYTES, true).asIntBuffer().put(nodes);
+      position = CsrGraph.align(position + (long) nodes.length * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) boundary.length * Integer.BYTES, true).asIntBuffer().put(boundary);
+    }
+  }
+
+  /**
+   * Load a cell written by save. Its edges are mapped, not read.
+   * @param directory the directory
+   * @param index     the cell number
+   * @return the cell
+   */
+  public static Cell load(Path directory, int index) throws IOException {
+    Path file = directory.resolve("cell-" + index + ".ids");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      channel.read(header, 0);
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException(String.format("%s is not a cell file.", file));
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(String.format("%s has format version %d, expected %d.", file, version, VERSION));
+      }
+      if (header.getInt() != index) {
+        throw new IOException(String.format("%s does not hold cell %d.", file, index));
+      }
+      int[] nodes = new int[header.getInt()];
+      int[] boundary = new int[header.getInt()];
+
+      long position = HEADER_BYTES;
+      IntBuffer section = CsrGraph.section(channel, position, (long) nodes.length * Integer.BYTES, false).asIntBuffer();
+      section.get(nodes);
+      position = CsrGraph.align(position + (long) nodes.length * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) boundary.length * Integer.BYTES, false).asIntBuffer().get(boundary);
+
+      CsrGraph graph = CsrGraph.map(directory.resolve("cell-" + index + ".csr"));
+      if (graph.nodeCount() != nodes.length) {
+        throw new IOException(String.format("The files of cell %d do not match.", index));
+      }
+      return new Cell(index, graph, nodes, boundary);
+    }
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * @return the edges of the cell, on local ids
+   */
+  public CsrGraph getGraph() {
+    return graph;
+  }
+
+  public int nodeCount() {
+    return nodes.length;
+  }
+
+  /**
+   * @param local a local id
+   * @return the id of the node in the whole graph
+   */
+  public int globalId(int local) {
+    return nodes[local];
+  }
+
+  /**
+   * @param node the id of a node in the whole graph
+   * @return its local id, or -1 if the node is not in this cell
+   */
+  public int localId(int node) {
+    int local = Arrays.binarySearch(nodes, node);
+    return local < 0 ? -1 : local;
+  }
+
+  /**
+   * @return the ids in the whole graph of the boundary nodes, ascending
+   */
+  public int[] getBoundary() {
+    int[] ids = new int[boundary.length];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = nodes[boundary[i]];
+    }
+    return ids;
+  }
+
+  @Override
+  public double[] distancesFrom(int node) {
+    return boundaryDistances(node, false);
+  }
+
+  @Override
+  public double[] distancesTo(int node) {
+    return boundaryDistances(node, true);
+  }
+
+  @Override
+  public SmartGraph path(int from, int to) {
+    SearchWorkspace workspace = workspaces.get();
+    int target = local(to);
+    double cost = workspace.search(graph, local(from), target, null);
+    if (cost == Double.MAX_VALUE) {
+      return new SmartGraph(null, null);
+    }
+    return new SmartGraph(null, workspace.path(graph, target), cost);
+  }
+
+  /**
+   * Dijkstra inside the cell, over out edges or, in reverse, over into edges, until every boundary
+   * node is settled.
+   */
+  private double[] boundaryDistances(int node, boolean reverse) {
+    SearchWorkspace workspace = workspaces.get();
+    workspace.reset(nodes.length);
+    workspace.relax(local(node), 0.0, -1);
+    int left = boundary.length;
+    while (left > 0 && !workspace.isEmpty()) {
+      int u = workspace.pop();
+      if (isBoundary[u]) {
+        left--;
+      }
+      double distance = workspace.getDistance(u);
+      if (reverse) {
+        for (int e = graph.firstIntoEdge(u); e < graph.endIntoEdge(u); e++) {
+          workspace.relax(graph.source(e), distance + graph.weight(graph.forwardEdge(e)), u);
+        }
+      } else {
+        for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+          workspace.relax(graph.target(e), distance + graph.weight(e), u);
+        }
+      }
+    }
+    double[] distances = new double[boundary.length];
+    for (int i = 0; i < distances.length; i++) {
+      distances[i] = workspace.getDistance(boundary[i]);
+    }
+    return distances;
+  }
+
+  private int local(int node) {
+    int local = localId(node);
+    if (local < 0) {
+      throw new IllegalArgumentException(String.format("Node %d is not in cell %d.", node, index));
+    }
+    return local;
+  }
+}
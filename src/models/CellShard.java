@@ -0,0 +1,30 @@
+package models;
+
+/**
+ * CellShard answers the searches that OverlayGraph needs from one cell of a partitioned graph.
+ * Nodes are given by their ids in the whole graph. A Cell answers them in process; a shard in
+ * another process can answer them over the network.
+ */
+public interface CellShard {
+
+  /**
+   * @param node a node of the cell
+   * @return the cost of the shortest path inside the cell from the node to every boundary node of
+   *     the cell, in ascending id order; Double.MAX_VALUE where there is none
+   */
+  double[] distancesFrom(int node);
+
+  /**
+   * @param node a node of the cell
+   * @return the cost of the shortest path inside the cell from every boundary node of the cell to
+   *     the node, in ascending id order; Double.MAX_VALUE where there is none
+   */
+  double[] distancesTo(int node);
+
+  /**
+   * @param from a node of the cell
+   * @param to   a node of the cell
+   * @return the shortest path inside the cell and its cost; the path is null if there is none
+   */
+  SmartGraph path(int from, int to);
+}
@@ -0,0 +1,706 @@
+package models;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * ContractionHierarchy preprocesses a static graph for fast point to point queries. Nodes are
+ * contracted one by one in order of importance; whenever removing a node would lengthen a shortest
+ * path between two of its neighbours, a shortcut edge is added. A query then runs a bidirectional
+ * dijkstra that only ever moves up the node ranks, and unpacks shortcuts back into the real path.
+ *
+ * <p>The importance of a node is its edge difference (shortcuts added minus edges removed) plus the
+ * number of neighbours already contracted. Each round contracts the nodes that are less important
+ * than all their remaining neighbours. These nodes are independent, so their witness searches run
+ * in parallel. A built hierarchy is immutable, can answer queries from many threads, and can be
+ * written to and read back from a stream.
+ */
+public class ContractionHierarchy {
+  private static final int MAGIC = 0x444a4348;
+  private static final int WITNESS_SETTLE_LIMIT = 500;
+  private static final int PRIORITY_SETTLE_LIMIT = 50;
+
+  private final Graph graph;
+  private final Node[] nodes;
+  private final Map<Node, Integer> ids;
+  private final int[] ranks;
+  private final int[] upOffsets;
+  private final int[] upTargets;
+  private final double[] upWeights;
+  private final int[] upMiddles;
+  private final int[] downOffsets;
+  private final int[] downSources;
+  private final double[] downWeights;
+  private final int[] downMiddles;
+
+  private ContractionHierarchy(Graph graph, Node[] nodes, int[] ranks, int[] upOffsets, int[] upTargets,
+                               double[] upWeights, int[] upMiddles, int[] downOffsets, int[] downSources,
+                               double[] downWeights, int[] downMiddles) {
+    this.graph = graph;
+    this.nodes = nodes;
+    this.ranks = ranks;
+    this.upOffsets = upOffsets;
+    this.upTargets = upTargets;
+    this.upWeights = upWeights;
+    this.upMiddles = upMiddles;
+    this.downOffsets = downOffsets;
+    this.downSources = downSources;
+    this.downWeights = downWeights;
+    this.downMiddles = downMiddles;
+    this.ids = new HashMap<>();
+    for (int i = 0; i < nodes.length; i++) {
+      ids.put(nodes[i], i);
+    }
+  }
+
+  /**
+   * Contract every node of the graph. The graph must not change while this runs, and the hierarchy
+   * must be rebuilt after it changes.
+   * @param graph the graph
+   * @return the hierarchy
+   */
+  public static ContractionHierarchy build(Graph graph) {
+    List<Node> present = new ArrayList<>();
+    for (int id = 0; id < graph.nodeCount(); id++) {
+      if (graph.getNode(id) != null) {
+        present.add(graph.getNode(id));
+      }
+    }
+    Node[] nodes = present.toArray(new Node[0]);
+    Map<Node, Integer> index = new HashMap<>();
+    for (int i = 0; i < nodes.length; i++) {
+      index.put(nodes[i], i);
+    }
+
+    Builder builder = new Builder(nodes.length);
+    for (int u = 0; u < nodes.length; u++) {
+      for (Edge edge : nodes[u].getEdges()) {
+        Integer v = index.get(edge.getDestNode());
+        if (v != null && v != u) {
+          builder.addArc(u, v, edge.getWeight(), -1);
+        }
+      }
+    }
+    builder.contractAll();
+    return builder.finish(graph, nodes);
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  public int nodeCount() {
+    return nodes.length;
+  }
+
+  /**
+   * @return the number of edges of the hierarchy, original edges plus shortcuts
+   */
+  public int edgeCount() {
+    return upTargets.length + downSources.length;
+  }
+
+  /**
+   * @param node the node
+   * @return the contraction rank of the node; higher ranks were contracted later
+   */
+  public int getRank(Node node) {
+    Integer id = ids.get(node);
+    return id == null ? -1 : ranks[id];
+  }
+
+  /**
+   * Find the shortest path between two nodes by an upward bidirectional search.
+   * @param start the start node
+   * @param end the end node
+   * @param forward the search state from start
+   * @param backward the search state from end
+   * @return the path and its cost; the path is null if end cannot be reached
+   */
+  public SmartGraph route(Node start, Node end, SearchWorkspace forward, SearchWorkspace backward) {
+    Integer source = ids.get(start);
+    Integer target = ids.get(end);
+    if (source == null || target == null) {
+      return new SmartGraph(graph, null);
+    }
+
+    int n = nodes.length;
+    forward.reset(n);
+    backward.reset(n);
+    forward.relax(source, 0.0, -1);
+    backward.relax(target, 0.0, -1);
+    double mu = Double.MAX_VALUE;
+    int meet = -1;
+
+    boolean isForward = true;
+    while (true) {
+      boolean forwardOpen = !forward.isEmpty() && forward.peekDistance() < mu;
+      boolean backwardOpen = !backward.isEmpty() && backward.peekDistance() < mu;
+      if (!forwardOpen && !backwardOpen) {
+        break;
+      }
+      if (!forwardOpen || (backwardOpen && !isForward)) {
+        meet = settleUp(backward, forward, downOffsets, downSources, downWeights, meet, mu);
+      } else {
+        meet = settleUp(forward, backward, upOffsets, upTargets, upWeights, meet, mu);
+      }
+      if (meet >= 0) {
+        mu = forward.getDistance(meet) + backward.getDistance(meet);
+      }
+      isForward = !isForward;
+    }
+
+    if (meet < 0) {
+      return new SmartGraph(graph, null);
+    }
+
+    List<Integer> ids = new ArrayList<>();
+    for (int id = meet; id >= 0; id = forward.getParent(id)) {
+      ids.add(id);
+    }
+    Collections.reverse(ids);
+    for (int id = backward.getParent(meet); id >= 0; id = backward.getParent(id)) {
+      ids.add(id);
+    }
+
+    List<Node> path = new ArrayList<>();
+    path.add(nodes[ids.get(0)]);
+    for (int i = 1; i < ids.size(); i++) {
+      unpack(ids.get(i - 1), ids.get(i), path);
+    }
+    return new SmartGraph(graph, path, mu);
+  }
+
+  /**
+   * Find the distances from every source to every target with bucket based many to many search.
+   * An upward search over the reversed arcs from every target leaves (target, distance) entries in
+   * a bucket at each node it settles. An upward search from every source then scans the buckets of
+   * the nodes it settles; the best source distance plus bucket distance over all common nodes is
+   * the shortest distance. Both phases run one search per node in parallel.
+   * @param sources the source nodes
+   * @param targets the target nodes
+   * @return the table, indexed [source][target]; unreachable pairs are Double.MAX_VALUE
+   */
+  public double[][] distanceTable(List<Node> sources, List<Node> targets) {
+    int[] from = toIds(sources);
+    int[] to = toIds(targets);
+    int n = nodes.length;
+    ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(n));
+
+    // the settled nodes and distances of the backward search from every target
+    int[][] settledNodes = new int[to.length][];
+    double[][] settledDistances = new double[to.length][];
+    IntStream.range(0, to.length).parallel().forEach(j -> {
+      SearchWorkspace workspace = workspaces.get();
+      searchUp(workspace, to[j], downOffsets, downSources, downWeights);
+      int[] settled = workspace.settledIds();
+      double[] distances = new double[settled.length];
+      for (int i = 0; i < settled.length; i++) {
+        distances[i] = workspace.getDistance(settled[i]);
+      }
+      settledNodes[j] = settled;
+      settledDistances[j] = distances;
+    });
+
+    // bucket entries grouped by node in a CSR layout
+    int[] bucketOffsets = new int[n + 1];
+    for (int[] settled : settledNodes) {
+      for (int node : settled) {
+        bucketOffsets[node + 1]++;
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      bucketOffsets[i + 1] += bucketOffsets[i];
+    }
+    int[] bucketTargets = new int[bucketOffsets[n]];
+    double[] bucketDistances = new double[bucketOffsets[n]];
+    int[] next = Arrays.copyOf(bucketOffsets, n);
+    for (int j = 0; j < to.length; j++) {
+      for (int i = 0; i < settledNodes[j].length; i++) {
+        int slot = next[settledNodes[j][i]]++;
+        bucketTargets[slot] = j;
+        bucketDistances[slot] = settledDistances[j][i];
+      }
+    }
+
+    double[][] table = new double[from.length][to.length];
+    IntStream.range(0, from.length).parallel().forEach(i -> {
+      SearchWorkspace workspace = workspaces.get();
+      searchUp(workspace, from[i], upOffsets, upTargets, upWeights);
+      double[] row = table[i];
+      Arrays.fill(row, Double.MAX_VALUE);
+      for (int node : workspace.settledIds()) {
+        double distance = workspace.getDistance(node);
+        for (int b = bucketOffsets[node]; b < bucketOffsets[node + 1]; b++) {
+          row[bucketTargets[b]] = Math.min(row[bucketTargets[b]], distance + bucketDistances[b]);
+        }
+      }
+    });
+    return table;
+  }
+
+  private int[] toIds(List<Node> list) {
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      Integer id = ids.get(list.get(i));
+      if (id == null) {
+        throw new IllegalArgumentException(
+                String.format("The node <%s> is not in the graph.", list.get(i).getName()));
+      }
+      result[i] = id;
+    }
+    return result;
+  }
+
+  /**
+   * Settle every node reachable from source over the given upward arcs.
+   */
+  private void searchUp(SearchWorkspace workspace, int source, int[] offsets, int[] heads, double[] weights) {
+    workspace.reset(nodes.length);
+    workspace.relax(source, 0.0, -1);
+    while (!workspace.isEmpty()) {
+      int current = workspace.pop();
+      double currentDistance = workspace.getDistance(current);
+      for (int a = offsets[current]; a < offsets[current + 1]; a++) {
+        if (!workspace.isSettled(heads[a])) {
+          workspace.relax(heads[a], currentDistance + weights[a], current);
+        }
+      }
+    }
+  }
+
+  /**
+   * Settle one node of a search and relax its upward arcs.
+   * @return the best meeting node so far
+   */
+  private static int settleUp(SearchWorkspace side, SearchWorkspace other, int[] offsets, int[] heads,
+                              double[] weights, int meet, double mu) {
+    int current = side.pop();
+    double currentDistance = side.getDistance(current);
+    if (other.getDistance(current) < Double.MAX_VALUE && currentDistance + other.getDistance(current) < mu) {
+      mu = currentDistance + other.getDistance(current);
+      meet = current;
+    }
+    for (int a = offsets[current]; a < offsets[current + 1]; a++) {
+      int next = heads[a];
+      double distance = currentDistance + weights[a];
+      if (!side.isSettled(next) && side.relax(next, distance, current)) {
+        double remaining = other.getDistance(next);
+        if (remaining < Double.MAX_VALUE && distance + remaining < mu) {
+          mu = distance + remaining;
+          meet = next;
+        }
+      }
+    }
+    return meet;
+  }
+
+  /**
+   * Append the original nodes of the arc from-to, without from itself, to the path.
+   */
+  private void unpack(int from, int to, List<Node> path) {
+    int[] stack = new int[16];
+    int size = 0;
+    stack[size++] = to;
+    int current = from;
+    while (size > 0) {
+      int next = stack[size - 1];
+      int middle = middle(current, next);
+      if (middle < 0) {
+        path.add(nodes[next]);
+        current = next;
+        size--;
+      } else {
+        if (size == stack.length) {
+          stack = Arrays.copyOf(stack, size * 2);
+        }
+        stack[size++] = middle;
+      }
+    }
+  }
+
+  /**
+   * @return the node a shortcut from-to skips, or -1 if it is an original edge
+   */
+  private int middle(int from, int to) {
+    int best = -1;
+    double bestWeight = Double.MAX_VALUE;
+    if (ranks[to] > ranks[from]) {
+      for (int a = upOffsets[from]; a < upOffsets[from + 1]; a++) {
+        if (upTargets[a] == to && upWeights[a] < bestWeight) {
+          bestWeight = upWeights[a];
+          best = upMiddles[a];
+        }
+      }
+    } else {
+      for (int a = downOffsets[to]; a < downOffsets[to + 1]; a++) {
+        if (downSources[a] == from && downWeights[a] < bestWeight) {
+          bestWeight = downWeights[a];
+          best = downMiddles[a];
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Write the hierarchy to a stream. Nodes are stored by name.
+   * @param out the stream
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(nodes.length);
+    for (Node node : nodes) {
+      data.writeUTF(node.getName());
+    }
+    writeInts(data, ranks);
+    writeInts(data, upOffsets);
+    writeInts(data, upTargets);
+    writeDoubles(data, upWeights);
+    writeInts(data, upMiddles);
+    writeInts(data, downOffsets);
+    writeInts(data, downSources);
+    writeDoubles(data, downWeights);
+    writeInts(data, downMiddles);
+    data.flush();
+  }
+
+  /**
+   * Read a hierarchy written by writeTo. Its nodes are matched by name to the nodes of the given
+   * graph, which should be the graph the hierarchy was built from.
+   * @param in the stream
+   * @param graph the graph
+   * @return the hierarchy
+   */
+  public static ContractionHierarchy readFrom(InputStream in, Graph graph) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a contraction hierarchy.");
+    }
+    Map<String, Node> byName = graph.getNodes().stream()
+            .collect(Collectors.toMap(Node::getName, node -> node, (a, b) -> a));
+    Node[] nodes = new Node[data.readInt()];
+    for (int i = 0; i < nodes.length; i++) {
+      String name = data.readUTF();
+      nodes[i] = byName.get(name);
+      if (nodes[i] == null) {
+        throw new IOException(String.format("The node <%s> is not in the graph.", name));
+      }
+    }
+    return new ContractionHierarchy(graph, nodes, readInts(data), readInts(data), readInts(data),
+            readDoubles(data), readInts(data), readInts(data), readInts(data), readDoubles(data),
+            readInts(data));
+  }
+
+  private static void writeInts(DataOutputStream data, int[] values) throws IOException {
+    data.writeInt(values.length);
+    for (int value : values) {
+      data.writeInt(value);
+    }
+  }
+
+  private static void writeDoubles(DataOutputStream data, double[] values) throws IOException {
+    data.writeInt(values.length);
+    for (double value : values) {
+      data.writeDouble(value);
+    }
+  }
+
+  private static int[] readInts(DataInputStream data) throws IOException {
+    int[] values = new int[data.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = data.readInt();
+    }
+    return values;
+  }
+
+  private static double[] readDoubles(DataInputStream data) throws IOException {
+    double[] values = new double[data.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = data.readDouble();
+    }
+    return values;
+  }
+
+  /**
+   * Arcs is a growable list of arcs leaving or entering one node during contraction.
+   */
+  private static class Arcs {
+    int[] heads = new int[4];
+    double[] weights = new double[4];
+    int[] middles = new int[4];
+    int size;
+
+    /**
+     * Add the arc, or lower the weight of an existing arc to the same node.
+     * @return true if the arc was added or improved
+     */
+    boolean put(int head, double weight, int middle) {
+      for (int i = 0; i < size; i++) {
+        if (heads[i] == head) {
+          if (weight < weights[i]) {
+            weights[i] = weight;
+            middles[i] = middle;
+            return true;
+          }
+          return false;
+        }
+      }
+      if (size == heads.length) {
+        heads = Arrays.copyOf(heads, size * 2);
+        weights = Arrays.copyOf(weights, size * 2);
+        middles = Arrays.copyOf(middles, size * 2);
+      }
+      heads[size] = head;
+      weights[size] = weight;
+      middles[size] = middle;
+      size++;
+      return true;
+    }
+
+    void remove(int head) {
+      for (int i = 0; i < size; i++) {
+        if (heads[i] == head) {
+          size--;
+          heads[i] = heads[size];
+          weights[i] = weights[size];
+          middles[i] = middles[size];
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Witness is the per thread state of witness searches.
+   */
+  private static class Witness {
+    final SearchWorkspace workspace;
+    final int[] marks;
+    int stamp;
+
+    Witness(int n) {
+      workspace = new SearchWorkspace(n);
+      marks = new int[n];
+    }
+  }
+
+  /**
+   * Builder holds the mutable graph while nodes are contracted. The arc lists of a node only hold
+   * neighbours that are not contracted yet; once a node is contracted its lists are frozen and
+   * become its upward arcs in the hierarchy.
+   */
+  private static class Builder {
+    private final int n;
+    private final Arcs[] out;
+    private final Arcs[] in;
+    private final boolean[] contracted;
+    private final int[] ranks;
+    private final int[] contractedNeighbours;
+    private final int[] levels;
+    private final int[] priorities;
+    private final ThreadLocal<Witness> witnesses;
+
+    Builder(int n) {
+      this.n = n;
+      out = new Arcs[n];
+      in = new Arcs[n];
+      for (int i = 0; i < n; i++) {
+        out[i] = new Arcs();
+        in[i] = new Arcs();
+      }
+      contracted = new boolean[n];
+      ranks = new int[n];
+      contractedNeighbours = new int[n];
+      levels = new int[n];
+      priorities = new int[n];
+      witnesses = ThreadLocal.withInitial(() -> new Witness(n));
+    }
+
+    void addArc(int from, int to, double weight, int middle) {
+      if (out[from].put(to, weight, middle)) {
+        in[to].put(from, weight, middle);
+      }
+    }
+
+    void contractAll() {
+      IntStream.range(0, n).parallel().forEach(v -> priorities[v] = priority(v));
+
+      int[] remaining = IntStream.range(0, n).toArray();
+      int rank = 0;
+      while (remaining.length > 0) {
+        int[] round = Arrays.stream(remaining).parallel().filter(this::isLocalMinimum).toArray();
+
+        // the whole round counts as contracted before any witness search runs, so no shortcut
+        // decision depends on a witness path through another node of the same round
+        for (int v : round) {
+          contracted[v] = true;
+          ranks[v] = rank++;
+        }
+        List<List<double[]>> shortcuts = Arrays.stream(round).parallel()
+                .mapToObj(v -> shortcuts(v, WITNESS_SETTLE_LIMIT))
+                .collect(Collectors.toList());
+
+        List<Integer> affected = new ArrayList<>();
+        for (int v : round) {
+          for (int i = 0; i < out[v].size; i++) {
+            int x = out[v].heads[i];
+            in[x].remove(v);
+            levels[x] = Math.max(levels[x], levels[v] + 1);
+            affected.add(x);
+          }
+          for (int i = 0; i < in[v].size; i++) {
+            int u = in[v].heads[i];
+            out[u].remove(v);
+            levels[u] = Math.max(levels[u], levels[v] + 1);
+            affected.add(u);
+          }
+        }
+        for (int i = 0; i < round.length; i++) {
+          for (double[] shortcut : shortcuts.get(i)) {
+            addArc((int) shortcut[0], (int) shortcut[1], shortcut[2], round[i]);
+          }
+        }
+        for (int u : affected) {
+          contractedNeighbours[u]++;
+        }
+        affected.parallelStream().distinct().forEach(u -> priorities[u] = priority(u));
+        remaining = Arrays.stream(remaining).filter(v -> !contracted[v]).toArray();
+      }
+    }
+
+    /**
+     * @return true if the node is less important than every neighbour not contracted yet
+     */
+    private boolean isLocalMinimum(int v) {
+      return isBelow(v, out[v]) && isBelow(v, in[v]);
+    }
+
+    private boolean isBelow(int v, Arcs arcs) {
+      for (int i = 0; i < arcs.size; i++) {
+        int u = arcs.heads[i];
+        if (priorities[u] < priorities[v] || (priorities[u] == priorities[v] && u < v)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int priority(int v) {
+      return 2 * (shortcuts(v, PRIORITY_SETTLE_LIMIT).size() - out[v].size - in[v].size)
+              + contractedNeighbours[v] + levels[v];
+    }
+
+    /**
+     * Find the shortcuts needed to contract v: for every pair of neighbours u -> v -> x, a witness
+     * search from u that avoids v checks whether some other path is as short.
+     * @return the shortcuts as {from, to, weight}
+     */
+    private List<double[]> shortcuts(int v, int settleLimit) {
+      List<double[]> result = new ArrayList<>();
+      Witness witness = witnesses.get();
+      Arcs outs = out[v];
+      for (int i = 0; i < in[v].size; i++) {
+        int u = in[v].heads[i];
+        double toV = in[v].weights[i];
+        // a limit of 0 still needs a search: u -> v -> x may cost nothing
+        double limit = 0;
+        boolean through = false;
+        for (int j = 0; j < outs.size; j++) {
+          if (outs.heads[j] != u) {
+            limit = Math.max(limit, toV + outs.weights[j]);
+            through = true;
+          }
+        }
+        if (!through) {
+          continue;
+        }
+        witnessSearch(witness, u, v, limit, settleLimit);
+        for (int j = 0; j < outs.size; j++) {
+          int x = outs.heads[j];
+          double via = toV + outs.weights[j];
+          if (x != u && witness.workspace.getDistance(x) > via) {
+            result.add(new double[] {u, x, via});
+          }
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Search from source without passing through avoid, until every out neighbour of avoid is
+     * settled, the search passes limit, or settleLimit nodes were settled.
+     */
+    private void witnessSearch(Witness witness, int source, int avoid, double limit, int settleLimit) {
+      SearchWorkspace workspace = witness.workspace;
+      int stamp = ++witness.stamp;
+      int remaining = 0;
+      Arcs targets = out[avoid];
+      for (int j = 0; j < targets.size; j++) {
+        if (targets.heads[j] != source && witness.marks[targets.heads[j]] != stamp) {
+          witness.marks[targets.heads[j]] = stamp;
+          remaining++;
+        }
+      }
+
+      workspace.reset(n);
+      workspace.relax(source, 0.0, -1);
+      int settled = 0;
+      while (remaining > 0 && !workspace.isEmpty() && workspace.peekDistance() <= limit
+              && settled < settleLimit) {
+        int current = workspace.pop();
+        settled++;
+        if (witness.marks[current] == stamp) {
+          remaining--;
+        }
+        double distance = workspace.getDistance(current);
+        Arcs arcs = out[current];
+        for (int i = 0; i < arcs.size; i++) {
+          int next = arcs.heads[i];
+          if (next != avoid && !contracted[next] && !workspace.isSettled(next)) {
+            workspace.relax(next, distance + arcs.weights[i], current);
+          }
+        }
+      }
+    }
+
+    ContractionHierarchy finish(Graph graph, Node[] nodes) {
+      int[] upOffsets = new int[n + 1];
+      int[] downOffsets = new int[n + 1];
+      for (int u = 0; u < n; u++) {
+        upOffsets[u + 1] = upOffsets[u] + out[u].size;
+        downOffsets[u + 1] = downOffsets[u] + in[u].size;
+      }
+      int[] upTargets = new int[upOffsets[n]];
+      double[] upWeights = new double[upOffsets[n]];
+      int[] upMiddles = new int[upOffsets[n]];
+      int[] downSources = new int[downOffsets[n]];
+      double[] downWeights = new double[downOffsets[n]];
+      int[] downMiddles = new int[downOffsets[n]];
+      for (int u = 0; u < n; u++) {
+        copy(out[u], upOffsets[u], upTargets, upWeights, upMiddles);
+        copy(in[u], downOffsets[u], downSources, downWeights, downMiddles);
+      }
+      return new ContractionHierarchy(graph, nodes, ranks, upOffsets, upTargets, upWeights, upMiddles,
+              downOffsets, downSources, downWeights, downMiddles);
+    }
+
+    private static void copy(Arcs arcs, int offset, int[] heads, double[] weights, int[] middles) {
+      System.arraycopy(arcs.heads, 0, heads, offset, arcs.size);
+      System.arraycopy(arcs.weights, 0, weights, offset, arcs.size);
+      System.arraycopy(arcs.middles, 0, middles, offset, arcs.size);
+    }
+  }
+}
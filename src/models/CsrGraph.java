@@ -0,0 +1,558 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * CsrGraph is an immutable compressed sparse row copy of a directed graph. Nodes are dense int ids
+ * in [0, nodeCount()). The out edges of node u are the edge indexes firstEdge(u) until
+ * endEdge(u), and a reverse CSR lists the into edges of every node the same way.
+ *
+ * <p>A CSR graph can be saved to a binary file and mapped back with map. A mapped graph reads its
+ * rows straight from the file, so it is ready as soon as the file is mapped. Its Node objects are
+ * only created when getNode or toNodes asks for them, and only the most recently used ones are
+ * kept, so a long running service does not end up holding a Node for every id. The file is little endian and holds,
+ * each section padded to 8 bytes:
+ * <ul>
+ *   <li>a header: magic, version, node count n, edge count m, flags, name bytes;</li>
+ *   <li>the rows: offsets (n + 1 ints), targets (m ints), reverse offsets (n + 1 ints), sources
+ *   (m ints), reverse edges (m ints) and weights (m doubles);</li>
+ *   <li>if flagged, the x and y coordinates (n doubles each, NaN for a node without any);</li>
+ *   <li>the node names: offsets into the name bytes (n + 1 ints), the ids sorted by name (n ints),
+ *   and the UTF-8 name bytes.</li>
+ * </ul>
+ * Every section must stay below 2 GB, i.e. up to about 268 million edges.
+ */
+public class CsrGraph {
+  private static final int MAGIC = 0x47525343;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  private static final int FLAG_COORDINATES = 1;
+  private static final int MATERIALIZED_NODES = 4096;
+
+  private final int n;
+  private final Node[] nodes;
+  private final Map<Node, Integer> ids;
+  private final IntBuffer offsets;
+  private final IntBuffer targets;
+  private final DoubleBuffer weights;
+  private final IntBuffer reverseOffsets;
+  private final IntBuffer sources;
+  private final IntBuffer reverseEdges;
+  private final Dictionary dictionary;
+  private Map<String, Integer> names;
+
+  private CsrGraph(Node[] nodes, int[] edgeSources, int[] edgeTargets, double[] edgeWeights) {
+    int n = nodes.length;
+    int m = edgeSources.length;
+    this.n = n;
+    this.nodes = nodes;
+    this.dictionary = null;
+    this.ids = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      ids.put(nodes[i], i);
+    }
+
+    // counting sort of the edge list by source, then by target for the reverse rows
+    int[] offsets = new int[n + 1];
+    int[] reverseOffsets = new int[n + 1];
+    for (int e = 0; e < m; e++) {
+      offsets[edgeSources[e] + 1]++;
+      reverseOffsets[edgeTargets[e] + 1]++;
+    }
+    for (int i = 0; i < n; i++) {
+      offsets[i + 1] += offsets[i];
+      reverseOffsets[i + 1] += reverseOffsets[i];
+    }
+
+    int[] targets = new int[m];
+    double[] weights = new double[m];
+    int[] next = new int[n];
+    System.arraycopy(offsets, 0, next, 0, n);
+    for (int e = 0; e < m; e++) {
+      int slot = next[edgeSources[e]]++;
+      targets[slot] = edgeTargets[e];
+      weights[slot] = edgeWeights[e];
+    }
+
+    int[] sources = new int[m];
+    int[] reverseEdges = new int[m];
+    System.arraycopy(reverseOffsets, 0, next, 0, n);
+    for (int u = 0; u < n; u++) {
+      for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+        int slot = next[targets[e]]++;
+        sources[slot] = u;
+        reverseEdges[slot] = e;
+      }
+    }
+    this.offsets = IntBuffer.wrap(offsets);
+    this.targets = IntBuffer.wrap(targets);
+    this.weights = DoubleBuffer.wrap(weights);
+    this.reverseOffsets = IntBuffer.wrap(reverseOffsets);
+    this.sources = IntBuffer.wrap(sources);
+    this.reverseEdges = IntBuffer.wrap(reverseEdges);
+  }
+
+  private CsrGraph(int n, IntBuffer offsets, IntBuffer targets, DoubleBuffer weights, IntBuffer reverseOffsets,
+                   IntBuffer sources, IntBuffer reverseEdges, Dictionary dictionary) {
+    this.n = n;
+    this.nodes = null;
+    // Node has identity equality, so an entry lives as long as some caller still holds its node
+    this.ids = Collections.synchronizedMap(new WeakHashMap<>());
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+    this.reverseOffsets = reverseOffsets;
+    this.sources = sources;
+    this.reverseEdges = reverseEdges;
+    this.dictionary = dictionary;
+  }
+
+  /**
+   * Build a CSR copy of the nodes and adjacency lists of the given graph.
+   * @param graph the graph
+   * @return the csr graph
+   */
+  public static CsrGraph fromGraph(Graph graph) {
+    List<Edge> edges = new ArrayList<>();
+    for (Node node : graph.getNodes()) {
+      for (Edge edge : node.getEdges()) {
+        if (graph.hasNode(edge.getDestNode())) {
+          edges.add(edge);
+        }
+      }
+    }
+    return fromEdges(graph.getNodes(), edges);
+  }
+
+  /**
+   * Build a CSR graph from a node set and an edge list, e.g. the flights or routers handed to
+   * DijkstraAppsService. Edges touching nodes outside the set are ignored. The nodes are only read:
+   * they keep the ids of the graphs they belong to.
+   * @param nodes the nodes
+   * @param edges the edges
+   * @return the csr graph
+   */
+  public static CsrGraph fromEdges(Collection<Node> nodes, List<Edge> edges) {
+    Node[] nodeArray = nodes.toArray(new Node[0]);
+    Map<Node, Integer> index = new HashMap<>();
+    for (int i = 0; i < nodeArray.length; i++) {
+      index.put(nodeArray[i], i);
+    }
+
+    int[] edgeSources = new int[edges.size()];
+    int[] edgeTargets = new int[edges.size()];
+    double[] edgeWeights = new double[edges.size()];
+    int m = 0;
+    for (Edge edge : edges) {
+      Integer source = index.get(edge.getSourceNode());
+      Integer target = index.get(edge.getDestNode());
+      if (source == null || target == null) {
+        continue;
+      }
+      edgeSources[m] = source;
+      edgeTargets[m] = target;
+      edgeWeights[m] = edge.getWeight();
+      m++;
+    }
+    return new CsrGraph(nodeArray, trim(edgeSources, m), trim(edgeTargets, m), trim(edgeWeights, m));
+  }
+
+  /**
+   * Build a CSR graph straight from parallel edge arrays. Node i is named after its id.
+   * @param nodeCount the number of nodes
+   * @param edgeSources the source id of every edge
+   * @param edgeTargets the target id of every edge
+   * @param edgeWeights the weight of every edge
+   * @return the csr graph
+   */
+  public static CsrGraph fromEdges(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights) {
+    if (edgeSources.length != edgeTargets.length || edgeSources.length != edgeWeights.length) {
+      throw new IllegalArgumentException("Edge arrays must have the same length.");
+    }
+    Node[] nodeArray = new Node[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      nodeArray[i] = new Node(String.valueOf(i));
+    }
+    return new CsrGraph(nodeArray, edgeSources, edgeTargets, edgeWeights);
+  }
+
+  /**
+   * Build a CSR graph over the given nodes from parallel edge arrays of their ids.
+   */
+  static CsrGraph fromEdges(Node[] nodes, int[] edgeSources, int[] edgeTargets, double[] edgeWeights) {
+    return new CsrGraph(nodes, edgeSources, edgeTargets, edgeWeights);
+  }
+
+  /**
+   * Write this graph to a file in the binary format described above, replacing the file.
+   * @param file the file
+   */
+  public void save(Path file) throws IOException {
+    int m = edgeCount();
+    boolean located = false;
+    byte[][] nameBytes = new byte[n][];
+    long nameLength = 0;
+    for (int i = 0; i < n; i++) {
+      Node node = getNode(i);
+      located |= node.hasCoordinates();
+      nameBytes[i] = node.getName().getBytes(StandardCharsets.UTF_8);
+      nameLength += nameBytes[i].length;
+    }
+    if (nameLength > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The node names do not fit in 2 GB.");
+    }
+    Integer[] byName = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      byName[i] = i;
+    }
+    Arrays.sort(byName, (a, b) -> getNode(a).getName().compareTo(getNode(b).getName()));
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m)
+              .putInt(located ? FLAG_COORDINATES : 0).putInt((int) nameLength);
+      header.clear();
+      channel.write(header, 0);
+
+      long position = HEADER_BYTES;
+      position = putInts(channel, position, offsets, n + 1);
+      position = putInts(channel, position, targets, m);
+      position = putInts(channel, position, reverseOffsets, n + 1);
+      position = putInts(channel, position, sources, m);
+      position = putInts(channel, position, reverseEdges, m);
+      DoubleBuffer weightSection = section(channel, position, (long) m * Double.BYTES, true).asDoubleBuffer();
+      weightSection.put(slice(weights, m));
+      position = align(position + (long) m * Double.BYTES);
+      if (located) {
+        DoubleBuffer xs = section(channel, position, (long) n * Double.BYTES, true).asDoubleBuffer();
+        position = align(position + (long) n * Double.BYTES);
+        DoubleBuffer ys = section(channel, position, (long) n * Double.BYTES, true).asDoubleBuffer();
+        position = align(position + (long) n * Double.BYTES);
+        for (int i = 0; i < n; i++) {
+          Node node = getNode(i);
+          xs.put(node.hasCoordinates() ? node.getX() : Double.NaN);
+          ys.put(node.hasCoordinates() ? node.getY() : Double.NaN);
+        }
+      }
+
+      IntBuffer nameOffsets = section(channel, position, (n + 1L) * Integer.BYTES, true).asIntBuffer();
+      position = align(position + (n + 1L) * Integer.BYTES);
+      IntBuffer sorted = section(channel, position, (long) n * Integer.BYTES, true).asIntBuffer();
+      position = align(position + (long) n * Integer.BYTES);
+      ByteBuffer bytes = section(channel, position, nameLength, true);
+      int offset = 0;
+      for (int i = 0; i < n; i++) {
+        nameOffsets.put(offset);
+        bytes.put(nameBytes[i]);
+        offset += nameBytes[i].length;
+        sorted.put(byName[i]);
+      }
+      nameOffsets.put(offset);
+    }
+  }
+
+  /**
+   * Map a file written by save. Nothing is copied: the rows are read from the page cache as the
+   * searches touch them, so even a graph of several GB is ready within milliseconds. The mapping
+   * stays valid after the file is closed.
+   * @param file the file
+   * @return a read only graph backed by the file
+   */
+  public static CsrGraph map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      channel.read(header, 0);
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException(String.format("%s is not a graph file.", file));
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(String.format("%s has format version %d, expected %d.", file, version, VERSION));
+      }
+      int n = header.getInt();
+      int m = header.getInt();
+      int flags = header.getInt();
+      int nameLength = header.getInt();
+
+      long position = HEADER_BYTES;
+      IntBuffer offsets = section(channel, position, (n + 1L) * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (n + 1L) * Integer.BYTES);
+      IntBuffer targets = section(channel, position, (long) m * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (long) m * Integer.BYTES);
+      IntBuffer reverseOffsets = section(channel, position, (n + 1L) * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (n + 1L) * Integer.BYTES);
+      IntBuffer sources = section(channel, position, (long) m * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (long) m * Integer.BYTES);
+      IntBuffer reverseEdges = section(channel, position, (long) m * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (long) m * Integer.BYTES);
+      DoubleBuffer weights = section(channel, position, (long) m * Double.BYTES, false).asDoubleBuffer();
+      position = align(position + (long) m * Double.BYTES);
+      DoubleBuffer xs = null;
+      DoubleBuffer ys = null;
+      if ((flags & FLAG_COORDINATES) != 0) {
+        xs = section(channel, position, (long) n * Double.BYTES, false).asDoubleBuffer();
+        position = align(position + (long) n * Double.BYTES);
+        ys = section(channel, position, (long) n * Double.BYTES, false).asDoubleBuffer();
+        position = align(position + (long) n * Double.BYTES);
+      }
+      IntBuffer nameOffsets = section(channel, position, (n + 1L) * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (n + 1L) * Integer.BYTES);
+      IntBuffer sorted = section(channel, position, (long) n * Integer.BYTES, false).asIntBuffer();
+      position = align(position + (long) n * Integer.BYTES);
+      ByteBuffer bytes = section(channel, position, nameLength, false);
+
+      Dictionary dictionary = new Dictionary(nameOffsets, sorted, bytes, xs, ys);
+      return new CsrGraph(n, offsets, targets, weights, reverseOffsets, sources, reverseEdges, dictionary);
+    }
+  }
+
+  public int nodeCount() {
+    return n;
+  }
+
+  public int edgeCount() {
+    return targets.limit();
+  }
+
+  /**
+   * @return whether the rows are read from a mapped file
+   */
+  public boolean isMapped() {
+    return dictionary != null;
+  }
+
+  /**
+   * A mapped graph hands out the same Node for an id while it is among the recently used ones; an
+   * evicted id gets a new Node, and indexOf still knows both.
+   * @param id the node id
+   * @return the node
+   */
+  public Node getNode(int id) {
+    if (nodes != null) {
+      return nodes[id];
+    }
+    if (id < 0 || id >= n) {
+      throw new IndexOutOfBoundsException(String.format("Node id %d out of range [0, %d).", id, n));
+    }
+    synchronized (dictionary.materialized) {
+      Node node = dictionary.materialized.get(id);
+      if (node == null) {
+        node = dictionary.node(id);
+        ids.put(node, id);
+        dictionary.materialized.put(id, node);
+      }
+      return node;
+    }
+  }
+
+  /**
+   * @param node the node
+   * @return the id of the node, or -1 if it is not in this graph
+   */
+  public int indexOf(Node node) {
+    Integer id = ids.get(node);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Look a node up by name. Mapped graphs search the sorted name index of the file; other graphs
+   * build a name table on first use.
+   * @param name the node name
+   * @return the id of the node, or -1 if there is no node of that name
+   */
+  public int indexOf(String name) {
+    if (dictionary != null) {
+      return dictionary.find(name);
+    }
+    synchronized (this) {
+      if (names == null) {
+        names = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+          names.putIfAbsent(nodes[i].getName(), i);
+        }
+      }
+    }
+    Integer id = names.get(name);
+    return id == null ? -1 : id;
+  }
+
+  public int firstEdge(int node) {
+    return offsets.get(node);
+  }
+
+  public int endEdge(int node) {
+    return offsets.get(node + 1);
+  }
+
+  public int target(int edge) {
+    return targets.get(edge);
+  }
+
+  public double weight(int edge) {
+    return weights.get(edge);
+  }
+
+  public int firstIntoEdge(int node) {
+    return reverseOffsets.get(node);
+  }
+
+  public int endIntoEdge(int node) {
+    return reverseOffsets.get(node + 1);
+  }
+
+  /**
+   * @param intoEdge an index into the reverse rows
+   * @return the source node of that edge
+   */
+  public int source(int intoEdge) {
+    return sources.get(intoEdge);
+  }
+
+  /**
+   * @param intoEdge an index into the reverse rows
+   * @return the index of the same edge in the forward rows
+   */
+  public int forwardEdge(int intoEdge) {
+    return reverseEdges.get(intoEdge);
+  }
+
+  /**
+   * Map a path of ids back to nodes.
+   * @param path the ids
+   * @return the nodes
+   */
+  public List<Node> toNodes(int[] path) {
+    List<Node> list = new ArrayList<>(path.length);
+    for (int id : path) {
+      list.add(getNode(id));
+    }
+    return list;
+  }
+
+  static long align(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  static ByteBuffer section(FileChannel channel, long position, long size, boolean write) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(String.format("A graph section of %d bytes does not fit in one mapping.", size));
+    }
+    return channel.map(write ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, position, size)
+            .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static long putInts(FileChannel channel, long position, IntBuffer values, int count) throws IOException {
+    section(channel, position, (long) count * Integer.BYTES, true).asIntBuffer().put(slice(values, count));
+    return align(position + (long) count * Integer.BYTES);
+  }
+
+  private static IntBuffer slice(IntBuffer buffer, int count) {
+    IntBuffer view = buffer.duplicate();
+    view.clear().limit(count);
+    return view;
+  }
+
+  private static DoubleBuffer slice(DoubleBuffer buffer, int count) {
+    DoubleBuffer view = buffer.duplicate();
+    view.clear().limit(count);
+    return view;
+  }
+
+  private static int[] trim(int[] array, int length) {
+    if (array.length == length) {
+      return array;
+    }
+    int[] copy = new int[length];
+    System.arraycopy(array, 0, copy, 0, length);
+    return copy;
+  }
+
+  private static double[] trim(double[] array, int length) {
+    if (array.length == length) {
+      return array;
+    }
+    double[] copy = new double[length];
+    System.arraycopy(array, 0, copy, 0, length);
+    return copy;
+  }
+
+  /**
+   * The node names and coordinates of a mapped graph, and the most recently used Node objects
+   * created from them.
+   */
+  private static final class Dictionary {
+    private final IntBuffer nameOffsets;
+    private final IntBuffer sorted;
+    private final ByteBuffer bytes;
+    private final DoubleBuffer xs;
+    private final DoubleBuffer ys;
+    private final Map<Integer, Node> materialized = new LinkedHashMap<Integer, Node>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+        return size() > MATERIALIZED_NODES;
+      }
+    };
+
+    Dictionary(IntBuffer nameOffsets, IntBuffer sorted, ByteBuffer bytes, DoubleBuffer xs, DoubleBuffer ys) {
+      this.nameOffsets = nameOffsets;
+      this.sorted = sorted;
+      this.bytes = bytes;
+      this.xs = xs;
+      this.ys = ys;
+    }
+
+    String name(int id) {
+      int start = nameOffsets.get(id);
+      byte[] name = new byte[nameOffsets.get(id + 1) - start];
+      bytes.duplicate().position(start).get(name);
+      return new String(name, StandardCharsets.UTF_8);
+    }
+
+    Node node(int id) {
+      if (xs != null && !Double.isNaN(xs.get(id))) {
+        return new Node(name(id), xs.get(id), ys.get(id));
+      }
+      return new Node(name(id));
+    }
+
+    /**
+     * Binary search of the ids sorted by name.
+     */
+    int find(String name) {
+      int low = 0;
+      int high = sorted.limit() - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int id = sorted.get(mid);
+        int order = name(id).compareTo(name);
+        if (order < 0) {
+          low = mid + 1;
+        } else if (order > 0) {
+          high = mid - 1;
+        } else {
+          return id;
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package models;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * DeltaStepping is a parallel single source shortest path engine for compact graphs. Tentative
+ * distances are kept in buckets of width delta. The nodes of the lowest bucket are relaxed
+ * together: first their light edges (weight at most delta), repeatedly, since those can put nodes
+ * back into the same bucket, then their heavy edges once the bucket is empty. Every relaxation
+ * phase is split into chunks that run on a fork-join pool, and distances are lowered with a
+ * compare and set so the chunks never lock.
+ *
+ * <p>A small delta does little wasted work but has many short phases; a large one has few long
+ * phases but relaxes nodes that later improve again. delta = infinity is parallel Bellman-Ford.
+ * One engine runs one search at a time; its results stay readable until the next run.
+ */
+public class DeltaStepping {
+  private static final int CHUNK = 256;
+
+  private final CsrGraph graph;
+  private final double delta;
+  private final ForkJoinPool pool;
+  private final AtomicLongArray distances;
+  private final int[] parents;
+  private final int[] queuedAt;
+  private int phase;
+  private int source = -1;
+
+  /**
+   * @param graph the graph; weights must not be negative
+   * @param delta the bucket width
+   * @param pool  the pool the relaxation phases run on; its parallelism sets the thread count
+   */
+  public DeltaStepping(CsrGraph graph, double delta, ForkJoinPool pool) {
+    if (!(delta > 0)) {
+      throw new IllegalArgumentException("Delta must be positive.");
+    }
+    this.graph = graph;
+    this.delta = delta;
+    this.pool = pool;
+    int n = graph.nodeCount();
+    distances = new AtomicLongArray(n);
+    parents = new int[n];
+    queuedAt = new int[n];
+  }
+
+  /**
+   * A delta that works well on most graphs: the mean edge weight.
+   * @param graph the graph
+   * @return the bucket width
+   */
+  public static double suggestDelta(CsrGraph graph) {
+    double sum = 0;
+    for (int e = 0; e < graph.edgeCount(); e++) {
+      sum += graph.weight(e);
+    }
+    return graph.edgeCount() == 0 || sum == 0 ? 1 : sum / graph.edgeCount();
+  }
+
+  public CsrGraph getGraph() {
+    return graph;
+  }
+
+  public double getDelta() {
+    return delta;
+  }
+
+  /**
+   * Find the shortest distance from source to every node.
+   * @param source the id of the source node
+   */
+  public void run(int source) {
+    int n = graph.nodeCount();
+    long infinity = Double.doubleToRawLongBits(Double.MAX_VALUE);
+    execute(() -> IntStream.range(0, n).parallel().forEach(v -> distances.set(v, infinity)));
+    Arrays.fill(queuedAt, 0);
+    phase = 0;
+    this.source = source;
+    distances.set(source, Double.doubleToRawLongBits(0.0));
+
+    // only buckets that hold nodes exist, however far apart their distances are
+    NavigableMap<Integer, IntList> buckets = new TreeMap<>();
+    bucket(buckets, 0).add(source);
+    while (!buckets.isEmpty()) {
+      Map.Entry<Integer, IntList> lowest = buckets.pollFirstEntry();
+      int current = lowest.getKey();
+      IntList settled = new IntList();
+      int[] frontier = take(lowest.getValue(), current);
+      while (frontier.length > 0) {
+        settled.addAll(frontier);
+        int[] improved = relax(frontier, true);
+        // improved nodes either rejoin this bucket at once or wait in a later one
+        IntList again = new IntList();
+        for (int v : improved) {
+          int b = bucketOf(v);
+          if (b == current) {
+            again.add(v);
+          } else {
+            bucket(buckets, b).add(v);
+          }
+        }
+        frontier = take(again, current);
+      }
+      for (int v : relax(settled.toArray(), false)) {
+        bucket(buckets, bucketOf(v)).add(v);
+      }
+    }
+    computeParents();
+  }
+
+  public int getSource() {
+    return source;
+  }
+
+  /**
+   * @return the distance from the source, or Double.MAX_VALUE if the node cannot be reached
+   */
+  public double getDistance(int id) {
+    return Double.longBitsToDouble(distances.get(id));
+  }
+
+  /**
+   * @return the node before id on a shortest path from the source, or -1
+   */
+  public int getParent(int id) {
+    return parents[id];
+  }
+
+  /**
+   * @return the ids on a shortest path from the source to target, or null if it cannot be reached
+   */
+  public int[] pathIds(int target) {
+    if (getDistance(target) == Double.MAX_VALUE) {
+      return null;
+    }
+    int length = 0;
+    for (int id = target; id >= 0; id = parents[id]) {
+      length++;
+    }
+    int[] path = new int[length];
+    for (int id = target; id >= 0; id = parents[id]) {
+      path[--length] = id;
+    }
+    return path;
+  }
+
+  /**
+   * The nodes of a bucket that still belong to it, once each. Nodes whose distance dropped into an
+   * earlier bucket after they were queued are stale entries and are skipped.
+   */
+  private int[] take(IntList bucket, int index) {
+    phase++;
+    IntList frontier = new IntList();
+    for (int i = 0; i < bucket.size; i++) {
+      int v = bucket.items[i];
+      if (queuedAt[v] != phase && bucketOf(v) == index) {
+        queuedAt[v] = phase;
+        frontier.add(v);
+      }
+    }
+    bucket.size = 0;
+    return frontier.toArray();
+  }
+
+  /**
+   * Relax the light or the heavy out edges of the given nodes in parallel.
+   * @return the nodes whose distance improved, possibly more than once
+   */
+  private int[] relax(int[] nodes, boolean light) {
+    int chunks = (nodes.length + CHUNK - 1) / CHUNK;
+    List<IntList> results = compute(() -> IntStream.range(0, chunks).parallel().mapToObj(c -> {
+      IntList improved = new IntList();
+      for (int i = c * CHUNK; i < Math.min(nodes.length, (c + 1) * CHUNK); i++) {
+        int u = nodes[i];
+        double distance = getDistance(u);
+        for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+          double weight = graph.weight(e);
+          if ((weight <= delta) == light && lower(graph.target(e), distance + weight)) {
+            improved.add(graph.target(e));
+          }
+        }
+      }
+      return improved;
+    }).collect(Collectors.toList()));
+    IntList all = new IntList();
+    for (IntList improved : results) {
+      all.addAll(improved.toArray());
+    }
+    return all.toArray();
+  }
+
+  private boolean lower(int v, double distance) {
+    long bits = distances.get(v);
+    while (distance < Double.longBitsToDouble(bits)) {
+      if (distances.compareAndSet(v, bits, Double.doubleToRawLongBits(distance))) {
+        return true;
+      }
+      bits = distances.get(v);
+    }
+    return false;
+  }
+
+  /**
+   * Parents are not tracked during the search, where two threads could lower the same distance.
+   * Afterwards the parent of v is an into neighbour u with d(u) + w(u, v) = d(v), the one taken
+   * into a frontier in the earliest phase. The node that gave v its distance was taken in an
+   * earlier phase than v, so every parent is taken before its child and the parents form a tree,
+   * even where zero weight edges join nodes at the same distance.
+   */
+  private void computeParents() {
+    execute(() -> IntStream.range(0, graph.nodeCount()).parallel().forEach(v -> {
+      parents[v] = -1;
+      double distance = getDistance(v);
+      if (v == source || distance == Double.MAX_VALUE) {
+        return;
+      }
+      for (int e = graph.firstIntoEdge(v); e < graph.endIntoEdge(v); e++) {
+        int u = graph.source(e);
+        if (getDistance(u) + graph.weight(graph.forwardEdge(e)) == distance
+                && (parents[v] < 0 || queuedAt[u] < queuedAt[parents[v]])) {
+          parents[v] = u;
+        }
+      }
+    }));
+  }
+
+  private int bucketOf(int v) {
+    return (int) Math.min(Integer.MAX_VALUE - 1, getDistance(v) / delta);
+  }
+
+  private static IntList bucket(Map<Integer, IntList> buckets, int index) {
+    return buckets.computeIfAbsent(index, key -> new IntList());
+  }
+
+  private void execute(Runnable task) {
+    compute(() -> {
+      task.run();
+      return null;
+    });
+  }
+
+  /**
+   * Run a task inside the pool, so the parallel streams it starts use the pool's threads.
+   */
+  private <T> T compute(Callable<T> task) {
+    try {
+      return pool.submit(task).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private static class IntList {
+    int[] items = new int[8];
+    int size;
+
+    void add(int value) {
+      if (size == items.length) {
+        items = Arrays.copyOf(items, size * 2);
+      }
+      items[size++] = value;
+    }
+
+    void addAll(int[] values) {
+      if (size + values.length > items.length) {
+        items = Arrays.copyOf(items, Math.max(size + values.length, size * 2));
+      }
+      System.arraycopy(values, 0, items, size, values.length);
+      size += values.length;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(items, size);
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * DistanceMatrix is an n x n table of shortest path costs in row-major order, with an optional
+ * successor table for path reconstruction: successor(i, j) is the node after i on a shortest path
+ * to j. Unreachable pairs cost Double.MAX_VALUE and have successor -1.
+ *
+ * <p>A matrix lives either in a double[] on the heap or in a memory-mapped file, for tables too
+ * large for the heap. The file holds the n * n distances followed by the n * n successors, in
+ * native byte order. Different cells may be written from different threads.
+ */
+public class DistanceMatrix {
+  /**
+   * The most bytes mapped by one buffer.
+   */
+  private static final long CHUNK_BYTES = 1L << 30;
+
+  private final int n;
+  private final double[] distances;
+  private final int[] successors;
+  private final DoubleBuffer[] distanceChunks;
+  private final IntBuffer[] successorChunks;
+  private final MappedByteBuffer[] mapped;
+  private final int rowsPerChunk;
+
+  private DistanceMatrix(int n, double[] distances, int[] successors) {
+    this.n = n;
+    this.distances = distances;
+    this.successors = successors;
+    this.distanceChunks = null;
+    this.successorChunks = null;
+    this.mapped = null;
+    this.rowsPerChunk = 0;
+  }
+
+  private DistanceMatrix(int n, DoubleBuffer[] distanceChunks, IntBuffer[] successorChunks,
+                         MappedByteBuffer[] mapped, int rowsPerChunk) {
+    this.n = n;
+    this.distances = null;
+    this.successors = null;
+    this.distanceChunks = distanceChunks;
+    this.successorChunks = successorChunks;
+    this.mapped = mapped;
+    this.rowsPerChunk = rowsPerChunk;
+  }
+
+  /**
+   * @param n the number of nodes
+   * @param withSuccessors whether to keep a successor table
+   * @return a matrix on the heap
+   */
+  public static DistanceMatrix inMemory(int n, boolean withSuccessors) {
+    if ((long) n * n > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(String.format("%d nodes do not fit in one array, map a file instead.", n));
+    }
+    return new DistanceMatrix(n, new double[n * n], withSuccessors ? new int[n * n] : null);
+  }
+
+  /**
+   * Map a file as the matrix. The file is created or resized as needed, and its contents become
+   * the matrix, so an earlier result can be mapped again to read it.
+   * @param file the file
+   * @param n the number of nodes
+   * @param withSuccessors whether to keep a successor table
+   * @return a matrix backed by the file
+   */
+  public static DistanceMatrix mapped(Path file, int n, boolean withSuccessors) throws IOException {
+    int rowsPerChunk = (int) Math.max(1, Math.min(n, CHUNK_BYTES / Double.BYTES / Math.max(1, n)));
+    int chunks = (n + rowsPerChunk - 1) / rowsPerChunk;
+    long distanceBytes = (long) n * n * Double.BYTES;
+    DoubleBuffer[] distanceChunks = new DoubleBuffer[chunks];
+    IntBuffer[] successorChunks = withSuccessors ? new IntBuffer[chunks] : null;
+    MappedByteBuffer[] mapped = new MappedByteBuffer[withSuccessors ? 2 * chunks : chunks];
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      for (int c = 0; c < chunks; c++) {
+        long rows = Math.min(rowsPerChunk, n - (long) c * rowsPerChunk);
+        long firstCell = (long) c * rowsPerChunk * n;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                firstCell * Double.BYTES, rows * n * Double.BYTES);
+        buffer.order(ByteOrder.nativeOrder());
+        mapped[c] = buffer;
+        distanceChunks[c] = buffer.asDoubleBuffer();
+        if (withSuccessors) {
+          buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                  distanceBytes + firstCell * Integer.BYTES, rows * n * Integer.BYTES);
+          buffer.order(ByteOrder.nativeOrder());
+          mapped[chunks + c] = buffer;
+          successorChunks[c] = buffer.asIntBuffer();
+        }
+      }
+    }
+    return new DistanceMatrix(n, distanceChunks, successorChunks, mapped, rowsPerChunk);
+  }
+
+  public int size() {
+    return n;
+  }
+
+  public boolean hasSuccessors() {
+    return successors != null || successorChunks != null;
+  }
+
+  /**
+   * @return true if the matrix is backed by an accessible array
+   */
+  public boolean hasArray() {
+    return distances != null;
+  }
+
+  /**
+   * @return the row-major backing array of a heap matrix; changes write through
+   */
+  public double[] array() {
+    if (distances == null) {
+      throw new UnsupportedOperationException("The matrix is backed by a file.");
+    }
+    return distances;
+  }
+
+  /**
+   * @return the cost of the shortest path from i to j
+   */
+  public double get(int i, int j) {
+    if (distances != null) {
+      return distances[i * n + j];
+    }
+    return distanceChunks[i / rowsPerChunk].get((i % rowsPerChunk) * n + j);
+  }
+
+  public void set(int i, int j, double distance) {
+    if (distances != null) {
+      distances[i * n + j] = distance;
+    } else {
+      distanceChunks[i / rowsPerChunk].put((i % rowsPerChunk) * n + j, distance);
+    }
+  }
+
+  /**
+   * @return the node after i on a shortest path from i to j, i itself if i is j, or -1
+   */
+  public int successor(int i, int j) {
+    if (successors != null) {
+      return successors[i * n + j];
+    }
+    return successorChunks[i / rowsPerChunk].get((i % rowsPerChunk) * n + j);
+  }
+
+  public void setSuccessor(int i, int j, int successor) {
+    if (successors != null) {
+      successors[i * n + j] = successor;
+    } else {
+      successorChunks[i / rowsPerChunk].put((i % rowsPerChunk) * n + j, successor);
+    }
+  }
+
+  /**
+   * Copy length cells of row i, starting at column j, into the given arrays.
+   * @param next where to copy the successors, or null
+   */
+  public void read(int i, int j, double[] distance, int[] next, int offset, int length) {
+    if (distances != null) {
+      System.arraycopy(distances, i * n + j, distance, offset, length);
+      if (next != null && successors != null) {
+        System.arraycopy(successors, i * n + j, next, offset, length);
+      }
+      return;
+    }
+    for (int c = 0; c < length; c++) {
+      distance[offset + c] = get(i, j + c);
+      if (next != null && successorChunks != null) {
+        next[offset + c] = successor(i, j + c);
+      }
+    }
+  }
+
+  /**
+   * Copy length cells from the given arrays into row i, starting at column j.
+   * @param next the successors to copy, or null
+   */
+  public void write(int i, int j, double[] distance, int[] next, int offset, int length) {
+    if (distances != null) {
+      System.arraycopy(distance, offset, distances, i * n + j, length);
+      if (next != null && successors != null) {
+        System.arraycopy(next, offset, successors, i * n + j, length);
+      }
+      return;
+    }
+    for (int c = 0; c < length; c++) {
+      set(i, j + c, distance[offset + c]);
+      if (next != null && successorChunks != null) {
+        setSuccessor(i, j + c, next[offset + c]);
+      }
+    }
+  }
+
+  /**
+   * @return the ids on a shortest path from i to j, or null if j cannot be reached
+   */
+  public int[] pathIds(int i, int j) {
+    if (!hasSuccessors()) {
+      throw new UnsupportedOperationException("The matrix has no successor table.");
+    }
+    if (successor(i, j) < 0) {
+      return null;
+    }
+    int[] path = new int[16];
+    int length = 0;
+    path[length++] = i;
+    for (int id = i; id != j; ) {
+      id = successor(id, j);
+      if (length == path.length) {
+        path = Arrays.copyOf(path, length * 2);
+      }
+      path[length++] = id;
+    }
+    return Arrays.copyOf(path, length);
+  }
+
+  /**
+   * Write the mapped pages of a file matrix back to the file. Does nothing for a heap matrix.
+   */
+  public void force() {
+    if (mapped != null) {
+      for (MappedByteBuffer buffer : mapped) {
+        buffer.force();
+      }
+    }
+  }
+}
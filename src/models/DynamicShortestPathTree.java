@@ -0,0 +1,222 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DynamicShortestPathTree keeps the shortest paths from one source node up to date while the edges
+ * of the graph change. It listens to the graph and repairs only the part of the tree a change
+ * touches, in the style of Ramalingam and Reps:
+ * <ul>
+ *   <li>a cheaper or new edge (u, v) lowers v if d(u) + w(u, v) &lt; d(v), and a dijkstra from v
+ *   carries the improvement as far as it goes;</li>
+ *   <li>a dearer or removed tree edge (u, v) invalidates the subtree under v. Each node of the
+ *   subtree is reseeded from its best into neighbour outside the subtree, and a dijkstra restricted
+ *   by those seeds settles the subtree again. Changes to edges outside the tree need no work.</li>
+ * </ul>
+ *
+ * <p>Distances and paths are read without any search. Reads and repairs are synchronized, so the
+ * tree can be queried while another thread feeds it changes. Graph.removeNode reports the edges of
+ * the node as removed, so the paths through it are repaired too. Call close to stop listening.
+ */
+public class DynamicShortestPathTree implements GraphListener {
+  private final Graph graph;
+  private final Node source;
+  private double[] distances;
+  private Edge[] parentEdges;
+  private int[] affectedAt;
+  private int stamp;
+  private IndexedMinHeap heap;
+
+  /**
+   * Build the tree with a full dijkstra and start listening to the graph.
+   * @param graph  the graph; weights must not be negative
+   * @param source the source node
+   */
+  public DynamicShortestPathTree(Graph graph, Node source) {
+    if (graph.indexOf(source) < 0) {
+      throw new IllegalArgumentException(String.format("The node <%s> is not in the graph.", source.getName()));
+    }
+    this.graph = graph;
+    this.source = source;
+    int n = graph.nodeCount();
+    distances = new double[n];
+    parentEdges = new Edge[n];
+    affectedAt = new int[n];
+    heap = new IndexedMinHeap(n);
+    Arrays.fill(distances, Double.MAX_VALUE);
+    int id = graph.indexOf(source);
+    distances[id] = 0;
+    heap.push(id, 0);
+    propagate();
+    graph.addListener(this);
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  public Node getSource() {
+    return source;
+  }
+
+  /**
+   * @param target the target node
+   * @return the current shortest distance from the source, or Double.MAX_VALUE if the target cannot
+   *     be reached
+   */
+  public synchronized double getDistance(Node target) {
+    int id = graph.indexOf(target);
+    return id < 0 || id >= distances.length ? Double.MAX_VALUE : distances[id];
+  }
+
+  /**
+   * @param target the target node
+   * @return the nodes on the current shortest path from the source, or null if there is none
+   */
+  public synchronized List<Node> getPath(Node target) {
+    if (getDistance(target) == Double.MAX_VALUE) {
+      return null;
+    }
+    List<Node> path = new ArrayList<>();
+    path.add(target);
+    for (Edge edge = parentEdges[graph.indexOf(target)]; edge != null;
+         edge = parentEdges[graph.indexOf(edge.getSourceNode())]) {
+      path.add(edge.getSourceNode());
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Stop listening to the graph. The tree keeps answering with its last state.
+   */
+  public void close() {
+    graph.removeListener(this);
+  }
+
+  @Override
+  public synchronized void edgeAdded(Edge edge) {
+    lower(edge);
+  }
+
+  @Override
+  public synchronized void edgeRemoved(Edge edge) {
+    int v = graph.indexOf(edge.getDestNode());
+    if (v >= 0 && v < parentEdges.length && parentEdges[v] == edge) {
+      rebuildSubtree(v);
+    }
+  }
+
+  @Override
+  public synchronized void weightChanged(Edge edge, double oldWeight) {
+    int v = graph.indexOf(edge.getDestNode());
+    if (v < 0) {
+      return;
+    }
+    if (edge.getWeight() < oldWeight) {
+      lower(edge);
+    } else if (v < parentEdges.length && parentEdges[v] == edge) {
+      rebuildSubtree(v);
+    }
+  }
+
+  /**
+   * Take a cheaper path over the edge if it offers one, and pass the improvement on.
+   */
+  private void lower(Edge edge) {
+    ensureCapacity();
+    int u = graph.indexOf(edge.getSourceNode());
+    int v = graph.indexOf(edge.getDestNode());
+    if (u < 0 || v < 0 || distances[u] == Double.MAX_VALUE) {
+      return;
+    }
+    double distance = distances[u] + edge.getWeight();
+    if (distance < distances[v]) {
+      distances[v] = distance;
+      parentEdges[v] = edge;
+      heap.push(v, distance);
+      propagate();
+    }
+  }
+
+  /**
+   * The path to root got longer or broke: forget the distances of its subtree, seed every subtree
+   * node from its into neighbours outside the subtree, and settle the subtree again.
+   */
+  private void rebuildSubtree(int root) {
+    ensureCapacity();
+    stamp++;
+    List<Integer> subtree = new ArrayList<>();
+    subtree.add(root);
+    affectedAt[root] = stamp;
+    for (int i = 0; i < subtree.size(); i++) {
+      int u = subtree.get(i);
+      for (Edge edge : graph.getNode(u).getEdges()) {
+        int v = graph.indexOf(edge.getDestNode());
+        if (v >= 0 && parentEdges[v] == edge && affectedAt[v] != stamp) {
+          affectedAt[v] = stamp;
+          subtree.add(v);
+        }
+      }
+    }
+
+    for (int v : subtree) {
+      distances[v] = Double.MAX_VALUE;
+      parentEdges[v] = null;
+    }
+    for (int v : subtree) {
+      for (Edge edge : graph.getNode(v).getIntoEdges()) {
+        int u = graph.indexOf(edge.getSourceNode());
+        if (u >= 0 && affectedAt[u] != stamp && distances[u] < Double.MAX_VALUE
+                && distances[u] + edge.getWeight() < distances[v]) {
+          distances[v] = distances[u] + edge.getWeight();
+          parentEdges[v] = edge;
+        }
+      }
+      if (distances[v] < Double.MAX_VALUE) {
+        heap.push(v, distances[v]);
+      }
+    }
+    propagate();
+  }
+
+  /**
+   * Dijkstra from whatever is on the heap, relaxing only edges that improve a distance.
+   */
+  private void propagate() {
+    while (!heap.isEmpty()) {
+      int u = heap.pop();
+      for (Edge edge : graph.getNode(u).getEdges()) {
+        int v = graph.indexOf(edge.getDestNode());
+        if (v < 0) {
+          continue;
+        }
+        double distance = distances[u] + edge.getWeight();
+        if (distance < distances[v]) {
+          distances[v] = distance;
+          parentEdges[v] = edge;
+          heap.push(v, distance);
+        }
+      }
+    }
+  }
+
+  /**
+   * Make room for nodes added to the graph since the tree was built.
+   */
+  private void ensureCapacity() {
+    int n = graph.nodeCount();
+    if (n <= distances.length) {
+      return;
+    }
+    int old = distances.length;
+    distances = Arrays.copyOf(distances, n);
+    Arrays.fill(distances, old, n, Double.MAX_VALUE);
+    parentEdges = Arrays.copyOf(parentEdges, n);
+    affectedAt = Arrays.copyOf(affectedAt, n);
+    heap.ensureCapacity(n);
+  }
+}
@@ -7,6 +7,7 @@ public class Edge implements Comparable<Edge>{
   private Node source;
   private Node dest;
   private double weight;
+  private Graph owner;
 
   public Edge(Node src, Node dest, double weight) {
     this.source = src;
@@ -34,8 +35,24 @@ public class Edge implements Comparable<Edge>{
     return weight;
   }
 
+  /**
+   * Change the weight. The listeners of the graph that holds this edge in its adjacency lists are
+   * told about the change.
+   */
   public void setWeight(double weight) {
+    double oldWeight = this.weight;
     this.weight = weight;
+    if (owner != null && oldWeight != weight) {
+      owner.fireWeightChanged(this, oldWeight);
+    }
+  }
+
+  Graph getOwner() {
+    return owner;
+  }
+
+  void setOwner(Graph owner) {
+    this.owner = owner;
   }
 
   @Override
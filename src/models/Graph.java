@@ -2,22 +2,33 @@ package models;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Graph consists of nodes and edges. It can be undirected or directed.
+ * Graph consists of nodes and edges. It can be undirected or directed. Every node gets a dense int
+ * id when it is added, so searches can keep their state in flat arrays indexed by id.
  */
 public class Graph {
   private Set<Node> nodes;
   private boolean directed;
   private List<Edge> originalEdges;
+  private List<Node> indexedNodes;
+  private Map<Node, Integer> ids;
+  private final List<GraphListener> listeners = new CopyOnWriteArrayList<>();
+  private final AtomicLong version = new AtomicLong();
 
   public Graph(boolean dir) {
     directed = dir;
     nodes = new HashSet<>();
     originalEdges = new ArrayList<>();
+    indexedNodes = new ArrayList<>();
+    ids = new HashMap<>();
   }
 
   public Graph(Set<Node> newNodes, List<Edge> newEdges, boolean dir) {
@@ -25,6 +36,11 @@ public class Graph {
     nodes = new HashSet<>(newNodes);
     originalEdges = new ArrayList<>(newEdges);
     directed = dir;
+    indexedNodes = new ArrayList<>(nodes.size());
+    ids = new HashMap<>();
+    for (Node node : nodes) {
+      index(node);
+    }
   }
 
   public Set<Node> getNodes() {
@@ -38,6 +54,60 @@ public class Graph {
   public void addNodes(Node... n) {
 
     nodes.addAll(Arrays.asList(n));
+    for (Node node : n) {
+      index(node);
+    }
+    version.incrementAndGet();
+  }
+
+  /**
+   * The version goes up after every change to the nodes, edges or edge weights of the graph, so a
+   * result computed at one version is still valid while the version is unchanged.
+   * @return the current version
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * The size of the id space. Ids of removed nodes are not reused, so this can be larger than the
+   * number of nodes.
+   * @return one more than the largest id
+   */
+  public int nodeCount() {
+    return indexedNodes.size();
+  }
+
+  /**
+   * @param id the node id
+   * @return the node with this id, or null if it was removed
+   */
+  public Node getNode(int id) {
+    return indexedNodes.get(id);
+  }
+
+  /**
+   * @param node the node
+   * @return the id of the node in this graph, or -1 if the node is not in this graph
+   */
+  public int indexOf(Node node) {
+    int id = node.getId();
+    if (id >= 0 && id < indexedNodes.size() && indexedNodes.get(id) == node) {
+      return id;
+    }
+    // the node was added to another graph after this one
+    Integer mapped = ids.get(node);
+    return mapped == null ? -1 : mapped;
+  }
+
+  private void index(Node node) {
+    Integer id = ids.get(node);
+    if (id == null) {
+      id = indexedNodes.size();
+      indexedNodes.add(node);
+      ids.put(node, id);
+    }
+    node.setId(id);
   }
 
   public void addEdges(Edge... newEdges) {
@@ -47,41 +117,140 @@ public class Graph {
 
       nodes.add(sourceNode);
       nodes.add(destNode);
+      index(sourceNode);
+      index(destNode);
       originalEdges.add(edge);
 
       // go through all the edges and update edge weight if the edge is already added
+      Edge existing = null;
       for(Edge e : sourceNode.getEdges()) {
         if (e.getSourceNode() == sourceNode && e.getDestNode() == destNode) {
-          e.setWeight(edge.getWeight());
-          return;
+          existing = e;
+          break;
+        }
+      }
+      if (existing != null) {
+        double oldWeight = existing.getWeight();
+        existing.setWeight(edge.getWeight());
+        // setWeight only tells the graph that owns the edge
+        if (existing.getOwner() != this && oldWeight != edge.getWeight()) {
+          fireWeightChanged(existing, oldWeight);
         }
+        continue;
       }
       sourceNode.getEdges().add(edge);
       destNode.getIntoEdges().add(edge);
+      edge.setOwner(this);
+      for (GraphListener listener : listeners) {
+        listener.edgeAdded(edge);
+      }
+    }
+    version.incrementAndGet();
+  }
+
+  /**
+   * Add edges the caller knows to be new and pairwise distinct, such as the deduplicated output of
+   * GraphImporter, skipping the duplicate scan of addEdges. Their nodes must already be added.
+   * @param newEdges the edges
+   */
+  void addDistinctEdges(List<Edge> newEdges) {
+    originalEdges.addAll(newEdges);
+    for (Edge edge : newEdges) {
+      edge.getSourceNode().getEdges().add(edge);
+      edge.getDestNode().getIntoEdges().add(edge);
+      edge.setOwner(this);
+      for (GraphListener listener : listeners) {
+        listener.edgeAdded(edge);
+      }
+    }
+    version.incrementAndGet();
+  }
+
+  /**
+   * Remove one edge from the adjacency lists of its nodes.
+   * @param edge the edge
+   * @return true if the edge was there
+   */
+  public boolean removeEdge(Edge edge) {
+    boolean removed = edge.getSourceNode().getEdges().remove(edge);
+    edge.getDestNode().getIntoEdges().remove(edge);
+    if (removed) {
+      fireEdgeRemoved(edge);
+    }
+    return removed;
+  }
+
+  /**
+   * Register a listener for edge changes.
+   */
+  public void addListener(GraphListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(GraphListener listener) {
+    listeners.remove(listener);
+  }
+
+  void fireWeightChanged(Edge edge, double oldWeight) {
+    version.incrementAndGet();
+    for (GraphListener listener : listeners) {
+      listener.weightChanged(edge, oldWeight);
     }
   }
 
-  public void resetNode() {
-    for(Node node: nodes){
-      node.setVisited(false);
+  private void fireEdgeRemoved(Edge edge) {
+    version.incrementAndGet();
+    if (edge.getOwner() == this) {
+      edge.setOwner(null);
+    }
+    for (GraphListener listener : listeners) {
+      listener.edgeRemoved(edge);
     }
   }
+
   public boolean hasNode(Node node) {
     return nodes.contains(node);
   }
 
+  /**
+   * Remove a node and take its edges off the adjacency lists of its neighbours. Listeners are told
+   * edgeRemoved for every edge into or out of the node, once the node is gone.
+   * @param node the node
+   */
   public void removeNode(Node node) {
     nodes.remove(node);
+    Integer id = ids.remove(node);
+    if (id != null) {
+      indexedNodes.set(id, null);
+    }
+    List<Edge> removed = new ArrayList<>(node.getEdges());
+    for (Edge edge : node.getIntoEdges()) {
+      if (edge.getSourceNode() != node) {
+        removed.add(edge);
+      }
+    }
+    for (Edge edge : removed) {
+      edge.getSourceNode().getEdges().remove(edge);
+      edge.getDestNode().getIntoEdges().remove(edge);
+    }
+    version.incrementAndGet();
+    for (Edge edge : removed) {
+      fireEdgeRemoved(edge);
+    }
   }
 
   public void removeEdges(Node bypass) {
+    List<Edge> removed = new ArrayList<>();
     for (Node node: nodes) {
-      remove(node.getIntoEdges(), bypass);
-      remove(node.getEdges(), bypass);
+      remove(node.getIntoEdges(), bypass, null);
+      remove(node.getEdges(), bypass, removed);
+    }
+    for (Edge edge : removed) {
+      fireEdgeRemoved(edge);
     }
   }
 
-  private static void remove(List<Edge> edges, Node bypass) {
+  private static void remove(List<Edge> edges, Node bypass, List<Edge> removed) {
     if (edges == null || edges.size() == 0) {
       return;
     }
@@ -91,6 +260,9 @@ public class Graph {
     for (Edge edge: temp) {
       if (containsBypass(edge, bypass)) {
         edges.remove(edge);
+        if (removed != null) {
+          removed.add(edge);
+        }
       }
     }
   }
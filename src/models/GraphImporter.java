@@ -0,0 +1,675 @@
+package models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * GraphImporter loads large edge lists from disk. The file is cut into chunks at line boundaries
+ * and the chunks are parsed in parallel, each into flat id arrays, so only a few chunks of text are
+ * in memory at any time. Node names are interned into dense int ids in order of first appearance.
+ * Parallel edges are merged afterwards by sorting every row by target, keeping the cheapest weight,
+ * instead of scanning the adjacency list on every insert like Graph.addEdges. The result is built
+ * into a Graph or a CsrGraph.
+ *
+ * <p>Supported formats:
+ * <ul>
+ *   <li>DIMACS: a .gr file of {@code a u v w} arcs over the node ids 1..n of its {@code p sp n m}
+ *   line, and optionally a .co file of {@code v id x y} lines. DIMACS coordinates are degrees times
+ *   10^6 and are scaled back to degrees.</li>
+ *   <li>TSV: whitespace separated {@code source target [weight]} lines.</li>
+ *   <li>CSV: comma separated, optionally quoted fields. A header line picks the columns by name
+ *   (source/from/u, target/to/v and weight/length/cost/time/travel_time), so edge tables exported
+ *   from OpenStreetMap tools can be read as they are. Without a header the first three columns
+ *   are used.</li>
+ * </ul>
+ * Lines starting with # or % are comments in TSV and CSV, and a missing weight counts as 1. Quoted
+ * fields may not span lines. Negative weights are rejected, since no search here can use them.
+ */
+public class GraphImporter {
+  public enum Format {
+    DIMACS, TSV, CSV
+  }
+
+  static final int CHUNK_BYTES = 1 << 22;
+  private static final String[] SOURCE_COLUMNS = {"source", "src", "from", "u"};
+  private static final String[] TARGET_COLUMNS = {"target", "dst", "dest", "to", "v"};
+  private static final String[] WEIGHT_COLUMNS = {"weight", "length", "cost", "time", "travel_time", "distance"};
+  private static final double[] POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+          1e12, 1e13, 1e14, 1e15};
+
+  private final String[] names;
+  private final double[] xs;
+  private final double[] ys;
+  private final int[] sources;
+  private final int[] targets;
+  private final double[] weights;
+
+  private GraphImporter(String[] names, double[] xs, double[] ys, int[] sources, int[] targets, double[] weights) {
+    this.names = names;
+    this.xs = xs;
+    this.ys = ys;
+    this.sources = sources;
+    this.targets = targets;
+    this.weights = weights;
+  }
+
+  /**
+   * Read an edge list, guessing the format from the file extension.
+   * @param file       the file
+   * @param undirected whether every line stands for an edge in both directions; DIMACS files list
+   *                   both arcs themselves
+   * @return the imported graph
+   */
+  public static GraphImporter read(Path file, boolean undirected) throws IOException {
+    return read(file, detect(file), undirected);
+  }
+
+  /**
+   * @param file       the file
+   * @param format     its format
+   * @param undirected whether every line stands for an edge in both directions
+   * @return the imported graph
+   */
+  public static GraphImporter read(Path file, Format format, boolean undirected) throws IOException {
+    if (format == Format.DIMACS) {
+      return readDimacs(file, null);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      char delimiter = format == Format.CSV ? ',' : ' ';
+      String first = firstLine(channel);
+      int[] columns = {0, 1, 2};
+      long dataStart = 0;
+      if (first != null && isHeader(first, delimiter)) {
+        columns = columns(split(first, delimiter));
+        dataStart = lineEnd(channel, 0, channel.size()) + 1;
+      }
+      int[] picked = columns;
+      List<Chunk> chunks = parse(channel, dataStart, (bytes, from, to, chunk) ->
+              parseDelimited(file, bytes, from, to, delimiter, picked, chunk));
+
+      // intern chunk by chunk, so ids follow the order of first appearance in the file
+      Map<String, Integer> ids = new HashMap<>();
+      List<String> names = new ArrayList<>();
+      for (Chunk chunk : chunks) {
+        chunk.globalIds = new int[chunk.names.size()];
+        for (int i = 0; i < chunk.names.size(); i++) {
+          String name = chunk.names.get(i);
+          Integer id = ids.get(name);
+          if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+          }
+          chunk.globalIds[i] = id;
+        }
+      }
+      chunks.parallelStream().forEach(chunk -> {
+        for (int e = 0; e < chunk.count; e++) {
+          chunk.sources[e] = chunk.globalIds[chunk.sources[e]];
+          chunk.targets[e] = chunk.globalIds[chunk.targets[e]];
+        }
+      });
+      return merge(names.toArray(new String[0]), null, null, chunks, undirected);
+    }
+  }
+
+  /**
+   * Read a DIMACS shortest path graph and its coordinates.
+   * @param graphFile       the .gr file
+   * @param coordinatesFile the .co file, or null
+   * @return the imported graph
+   */
+  public static GraphImporter readDimacs(Path graphFile, Path coordinatesFile) throws IOException {
+    List<Chunk> chunks;
+    try (FileChannel channel = FileChannel.open(graphFile, StandardOpenOption.READ)) {
+      chunks = parse(channel, 0, (bytes, from, to, chunk) -> parseArc(graphFile, bytes, from, to, chunk));
+    }
+    int n = 0;
+    for (Chunk chunk : chunks) {
+      n = Math.max(n, chunk.declaredNodes);
+      for (int e = 0; e < chunk.count; e++) {
+        n = Math.max(n, Math.max(chunk.sources[e], chunk.targets[e]) + 1);
+      }
+    }
+    String[] names = new String[n];
+    for (int i = 0; i < n; i++) {
+      names[i] = String.valueOf(i + 1);
+    }
+
+    double[] xs = null;
+    double[] ys = null;
+    if (coordinatesFile != null) {
+      xs = new double[n];
+      ys = new double[n];
+      Arrays.fill(xs, Double.NaN);
+      Arrays.fill(ys, Double.NaN);
+      double[] x = xs;
+      double[] y = ys;
+      try (FileChannel channel = FileChannel.open(coordinatesFile, StandardOpenOption.READ)) {
+        parse(channel, 0, (bytes, from, to, chunk) -> parseCoordinate(coordinatesFile, bytes, from, to, x, y));
+      }
+    }
+    return merge(names, xs, ys, chunks, false);
+  }
+
+  /**
+   * @param file the file
+   * @return DIMACS for .gr, CSV for .csv and TSV for anything else
+   */
+  public static Format detect(Path file) {
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".gr")) {
+      return Format.DIMACS;
+    }
+    return name.endsWith(".csv") ? Format.CSV : Format.TSV;
+  }
+
+  public int nodeCount() {
+    return names.length;
+  }
+
+  /**
+   * @return the number of edges left after merging parallel edges
+   */
+  public int edgeCount() {
+    return sources.length;
+  }
+
+  /**
+   * Build a compact graph. Save it with CsrGraph.save to skip the parsing next time.
+   * @return the csr graph
+   */
+  public CsrGraph toCsrGraph() {
+    return CsrGraph.fromEdges(createNodes(), sources, targets, weights);
+  }
+
+  /**
+   * Build a directed Graph holding every imported edge.
+   * @return the graph
+   */
+  public Graph toGraph() {
+    Node[] nodes = createNodes();
+    Graph graph = new Graph(true);
+    graph.addNodes(nodes);
+    List<Edge> edges = new ArrayList<>(sources.length);
+    for (int e = 0; e < sources.length; e++) {
+      edges.add(new Edge(nodes[sources[e]], nodes[targets[e]], weights[e]));
+    }
+    graph.addDistinctEdges(edges);
+    return graph;
+  }
+
+  private Node[] createNodes() {
+    Node[] nodes = new Node[names.length];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = xs != null && !Double.isNaN(xs[i]) ? new Node(names[i], xs[i], ys[i]) : new Node(names[i]);
+    }
+    return nodes;
+  }
+
+  /**
+   * Collect the edges of every chunk and merge parallel edges: bucket the edges by source, sort
+   * each row by target, and keep the cheapest edge of every run of equal targets.
+   */
+  private static GraphImporter merge(String[] names, double[] xs, double[] ys, List<Chunk> chunks,
+                                     boolean undirected) {
+    int n = names.length;
+    long total = 0;
+    for (Chunk chunk : chunks) {
+      total += undirected ? 2L * chunk.count : chunk.count;
+    }
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(String.format("%d edges do not fit in one graph.", total));
+    }
+    int m = (int) total;
+
+    int[] offsets = new int[n + 1];
+    for (Chunk chunk : chunks) {
+      for (int e = 0; e < chunk.count; e++) {
+        offsets[chunk.sources[e] + 1]++;
+        if (undirected) {
+          offsets[chunk.targets[e] + 1]++;
+        }
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] rowTargets = new int[m];
+    double[] rowWeights = new double[m];
+    int[] next = Arrays.copyOf(offsets, n);
+    for (Chunk chunk : chunks) {
+      for (int e = 0; e < chunk.count; e++) {
+        int slot = next[chunk.sources[e]]++;
+        rowTargets[slot] = chunk.targets[e];
+        rowWeights[slot] = chunk.weights[e];
+        if (undirected) {
+          slot = next[chunk.targets[e]]++;
+          rowTargets[slot] = chunk.sources[e];
+          rowWeights[slot] = chunk.weights[e];
+        }
+      }
+      chunk.release();
+    }
+    chunks.clear();
+
+    // sort every row by target; the low half of a key is the slot the edge came from
+    long[] keys = new long[m];
+    int[] kept = new int[n + 1];
+    IntStream.range(0, n).parallel().forEach(u -> {
+      int from = offsets[u];
+      int to = offsets[u + 1];
+      for (int slot = from; slot < to; slot++) {
+        keys[slot] = (long) rowTargets[slot] << 32 | slot;
+      }
+      Arrays.sort(keys, from, to);
+      int unique = 0;
+      for (int i = from; i < to; i++) {
+        if (i == from || keys[i] >>> 32 != keys[i - 1] >>> 32) {
+          unique++;
+        }
+      }
+      kept[u + 1] = unique;
+    });
+    for (int i = 0; i < n; i++) {
+      kept[i + 1] += kept[i];
+    }
+
+    int[] sources = new int[kept[n]];
+    int[] targets = new int[kept[n]];
+    double[] weights = new double[kept[n]];
+    IntStream.range(0, n).parallel().forEach(u -> {
+      int out = kept[u] - 1;
+      for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+        int target = (int) (keys[i] >>> 32);
+        double weight = rowWeights[(int) keys[i]];
+        if (i == offsets[u] || target != targets[out]) {
+          out++;
+          sources[out] = u;
+          targets[out] = target;
+          weights[out] = weight;
+        } else if (weight < weights[out]) {
+          weights[out] = weight;
+        }
+      }
+    });
+    return new GraphImporter(names, xs, ys, sources, targets, weights);
+  }
+
+  /**
+   * Cut the file from start on into chunks that end at line breaks, and run the parser over every
+   * line of every chunk in parallel.
+   * @return the chunks in file order
+   */
+  private static List<Chunk> parse(FileChannel channel, long start, LineParser parser) throws IOException {
+    long size = channel.size();
+    int count = (int) Math.max(1, (size - start + CHUNK_BYTES - 1) / CHUNK_BYTES);
+    List<Chunk> chunks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      chunks.add(new Chunk());
+    }
+    try {
+      IntStream.range(0, count).parallel().forEach(i -> {
+        long from = start + (long) i * CHUNK_BYTES;
+        byte[] bytes = readLines(channel, from, Math.min(size, from + CHUNK_BYTES), start);
+        Chunk chunk = chunks.get(i);
+        int lineStart = 0;
+        for (int j = 0; j <= bytes.length; j++) {
+          if (j == bytes.length || bytes[j] == '\n') {
+            int lineEnd = j > lineStart && bytes[j - 1] == '\r' ? j - 1 : j;
+            if (lineEnd > lineStart) {
+              parser.parse(bytes, lineStart, lineEnd, chunk);
+            }
+            lineStart = j + 1;
+          }
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return chunks;
+  }
+
+  /**
+   * Read the lines that start in [from, to): skip the partial line the previous chunk owns, and
+   * read on past to until the last line ends.
+   */
+  private static byte[] readLines(FileChannel channel, long from, long to, long start) {
+    try {
+      long size = channel.size();
+      long first = from;
+      if (from > start) {
+        // the line that crosses from belongs to the previous chunk
+        first = lineEnd(channel, from - 1, size) + 1;
+      }
+      if (first >= to) {
+        return new byte[0];
+      }
+      long last = lineEnd(channel, to - 1, size);
+      long end = Math.min(size, last + 1);
+      ByteBuffer buffer = ByteBuffer.allocate((int) (end - first));
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, first + buffer.position()) < 0) {
+          break;
+        }
+      }
+      return buffer.array();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return the position of the first line break at or after position, or size if there is none
+   */
+  private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  private static String firstLine(FileChannel channel) throws IOException {
+    long end = lineEnd(channel, 0, channel.size());
+    if (end == 0 && channel.size() == 0) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(end, 1 << 20));
+    channel.read(buffer, 0);
+    String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+  }
+
+  /**
+   * A first line is a header if it names a known column or its third field is not a number.
+   */
+  private static boolean isHeader(String line, char delimiter) {
+    if (line.startsWith("#") || line.startsWith("%")) {
+      return false;
+    }
+    List<String> fields = split(line, delimiter);
+    int[] columns = columns(fields);
+    if (columns[0] != 0 || columns[1] != 1 || columns[2] != 2) {
+      return true;
+    }
+    if (fields.size() < 3) {
+      return indexOf(fields, SOURCE_COLUMNS) >= 0;
+    }
+    try {
+      Double.parseDouble(fields.get(2));
+      return false;
+    } catch (NumberFormatException e) {
+      return true;
+    }
+  }
+
+  private static int[] columns(List<String> header) {
+    int source = indexOf(header, SOURCE_COLUMNS);
+    int target = indexOf(header, TARGET_COLUMNS);
+    int weight = indexOf(header, WEIGHT_COLUMNS);
+    return new int[] {source < 0 ? 0 : source, target < 0 ? 1 : target, weight < 0 ? 2 : weight};
+  }
+
+  private static int indexOf(List<String> header, String[] aliases) {
+    for (String alias : aliases) {
+      for (int i = 0; i < header.size(); i++) {
+        if (header.get(i).trim().equalsIgnoreCase(alias)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static List<String> split(String line, char delimiter) {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    int[] bounds = new int[2 * bytes.length + 2];
+    int count = fields(bytes, 0, bytes.length, delimiter, bounds);
+    List<String> fields = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      fields.add(text(bytes, bounds[2 * i], bounds[2 * i + 1]));
+    }
+    return fields;
+  }
+
+  private static void parseDelimited(Path file, byte[] bytes, int from, int to, char delimiter, int[] columns,
+                                     Chunk chunk) {
+    if (bytes[from] == '#' || bytes[from] == '%') {
+      return;
+    }
+    int[] bounds = chunk.bounds(to - from);
+    int count = fields(bytes, from, to, delimiter, bounds);
+    if (count == 0) {
+      return;
+    }
+    if (count <= Math.max(columns[0], columns[1])) {
+      throw malformed(file, bytes, from, to);
+    }
+    int source = chunk.intern(text(bytes, bounds[2 * columns[0]], bounds[2 * columns[0] + 1]));
+    int target = chunk.intern(text(bytes, bounds[2 * columns[1]], bounds[2 * columns[1] + 1]));
+    double weight = 1;
+    if (columns[2] < count && bounds[2 * columns[2]] < bounds[2 * columns[2] + 1]) {
+      weight = weight(file, bytes, bounds[2 * columns[2]], bounds[2 * columns[2] + 1], from, to);
+    }
+    chunk.add(source, target, weight);
+  }
+
+  private static void parseArc(Path file, byte[] bytes, int from, int to, Chunk chunk) {
+    int[] bounds = chunk.bounds(to - from);
+    int count = fields(bytes, from, to, ' ', bounds);
+    if (count == 0 || bytes[bounds[0]] == 'c') {
+      return;
+    }
+    if (bytes[bounds[0]] == 'p' && count >= 3) {
+      chunk.declaredNodes = (int) number(file, bytes, bounds[4], bounds[5], from, to);
+    } else if (bytes[bounds[0]] == 'a' && count >= 4) {
+      int source = (int) number(file, bytes, bounds[2], bounds[3], from, to) - 1;
+      int target = (int) number(file, bytes, bounds[4], bounds[5], from, to) - 1;
+      if (source < 0 || target < 0) {
+        throw malformed(file, bytes, from, to);
+      }
+      chunk.add(source, target, weight(file, bytes, bounds[6], bounds[7], from, to));
+    } else {
+      throw malformed(file, bytes, from, to);
+    }
+  }
+
+  private static void parseCoordinate(Path file, byte[] bytes, int from, int to, double[] xs, double[] ys) {
+    int[] bounds = new int[8];
+    int count = fields(bytes, from, to, ' ', bounds);
+    if (count == 0 || bytes[bounds[0]] == 'c' || bytes[bounds[0]] == 'p') {
+      return;
+    }
+    if (bytes[bounds[0]] != 'v' || count < 4) {
+      throw malformed(file, bytes, from, to);
+    }
+    int id = (int) number(file, bytes, bounds[2], bounds[3], from, to) - 1;
+    if (id < 0 || id >= xs.length) {
+      throw malformed(file, bytes, from, to);
+    }
+    xs[id] = number(file, bytes, bounds[4], bounds[5], from, to) / 1e6;
+    ys[id] = number(file, bytes, bounds[6], bounds[7], from, to) / 1e6;
+  }
+
+  /**
+   * Find the fields of a line. A space delimiter splits on runs of spaces and tabs; any other
+   * delimiter splits on itself and honours double quotes. Field i spans bounds[2i] until
+   * bounds[2i + 1], without its quotes.
+   * @return the number of fields, at most bounds.length / 2
+   */
+  private static int fields(byte[] bytes, int from, int to, char delimiter, int[] bounds) {
+    int count = 0;
+    int i = from;
+    if (delimiter == ' ') {
+      while (i < to && count * 2 < bounds.length) {
+        while (i < to && (bytes[i] == ' ' || bytes[i] == '\t')) {
+          i++;
+        }
+        if (i == to) {
+          break;
+        }
+        bounds[2 * count] = i;
+        while (i < to && bytes[i] != ' ' && bytes[i] != '\t') {
+          i++;
+        }
+        bounds[2 * count + 1] = i;
+        count++;
+      }
+      return count;
+    }
+    while (i <= to && count * 2 < bounds.length) {
+      if (i < to && bytes[i] == '"') {
+        int start = ++i;
+        while (i < to && !(bytes[i] == '"' && (i + 1 == to || bytes[i + 1] != '"'))) {
+          i += bytes[i] == '"' ? 2 : 1;
+        }
+        bounds[2 * count] = start;
+        bounds[2 * count + 1] = i;
+        while (i < to && bytes[i] != delimiter) {
+          i++;
+        }
+      } else {
+        bounds[2 * count] = i;
+        while (i < to && bytes[i] != delimiter) {
+          i++;
+        }
+        bounds[2 * count + 1] = i;
+      }
+      count++;
+      i++;
+    }
+    return count;
+  }
+
+  /**
+   * Parse a decimal number. Plain decimals of up to 15 digits are computed directly, which gives
+   * the same double as Double.parseDouble; anything else falls back to it.
+   */
+  private static double number(Path file, byte[] bytes, int from, int to, int lineFrom, int lineTo) {
+    boolean negative = from < to && bytes[from] == '-';
+    long mantissa = 0;
+    int digits = 0;
+    int scale = -1;
+    for (int i = negative ? from + 1 : from; i < to; i++) {
+      byte b = bytes[i];
+      if (b >= '0' && b <= '9' && digits < 15) {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (scale >= 0) {
+          scale++;
+        }
+      } else if (b == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        digits = -1;
+        break;
+      }
+    }
+    if (digits > 0) {
+      double value = scale > 0 ? mantissa / POWERS[scale] : mantissa;
+      return negative ? -value : value;
+    }
+    try {
+      return Double.parseDouble(text(bytes, from, to));
+    } catch (NumberFormatException e) {
+      throw malformed(file, bytes, lineFrom, lineTo);
+    }
+  }
+
+  private static double weight(Path file, byte[] bytes, int from, int to, int lineFrom, int lineTo) {
+    double weight = number(file, bytes, from, to, lineFrom, lineTo);
+    if (!(weight >= 0)) {
+      throw malformed(file, bytes, lineFrom, lineTo);
+    }
+    return weight;
+  }
+
+  private static String text(byte[] bytes, int from, int to) {
+    String text = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    return text.indexOf('"') < 0 ? text : text.replace("\"\"", "\"");
+  }
+
+  private static IllegalArgumentException malformed(Path file, byte[] bytes, int from, int to) {
+    return new IllegalArgumentException(String.format("%s: cannot parse line \"%s\".", file,
+            new String(bytes, from, to - from, StandardCharsets.UTF_8)));
+  }
+
+  private interface LineParser {
+    void parse(byte[] bytes, int from, int to, Chunk chunk);
+  }
+
+  /**
+   * The edges parsed from one chunk. For named formats the ids are local to the chunk until they
+   * are mapped through globalIds.
+   */
+  private static final class Chunk {
+    private int[] sources = new int[1024];
+    private int[] targets = new int[1024];
+    private double[] weights = new double[1024];
+    private int count;
+    private int declaredNodes;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> localIds = new HashMap<>();
+    private int[] globalIds;
+    private int[] bounds = new int[16];
+
+    int[] bounds(int length) {
+      if (bounds.length < 2 * length + 2) {
+        bounds = new int[2 * length + 2];
+      }
+      return bounds;
+    }
+
+    int intern(String name) {
+      Integer id = localIds.get(name);
+      if (id == null) {
+        id = names.size();
+        localIds.put(name, id);
+        names.add(name);
+      }
+      return id;
+    }
+
+    void add(int source, int target, double weight) {
+      if (count == sources.length) {
+        sources = Arrays.copyOf(sources, count * 2);
+        targets = Arrays.copyOf(targets, count * 2);
+        weights = Arrays.copyOf(weights, count * 2);
+      }
+      sources[count] = source;
+      targets[count] = target;
+      weights[count] = weight;
+      count++;
+    }
+
+    void release() {
+      sources = null;
+      targets = null;
+      weights = null;
+      globalIds = null;
+    }
+  }
+}
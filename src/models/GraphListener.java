@@ -0,0 +1,25 @@
+package models;
+
+/**
+ * GraphListener is told about every change to the edges of a graph it is registered with, after
+ * the change was made. Listeners run on the thread that changed the graph.
+ */
+public interface GraphListener {
+
+  /**
+   * A new edge was added to the adjacency lists.
+   */
+  void edgeAdded(Edge edge);
+
+  /**
+   * An edge was removed from the adjacency lists.
+   */
+  void edgeRemoved(Edge edge);
+
+  /**
+   * The weight of an edge changed.
+   * @param edge      the edge, already holding its new weight
+   * @param oldWeight the weight before the change
+   */
+  void weightChanged(Edge edge, double oldWeight);
+}
@@ -0,0 +1,63 @@
+package models;
+
+/**
+ * Heuristic estimates the remaining distance to the target of an A* search. A* never reopens a
+ * settled node, so to keep it exact the estimate must be consistent: for every edge (u, v),
+ * estimate(u) <= weight(u, v) + estimate(v), which also keeps it from overestimating. Only edges
+ * into nodes that can still reach the target matter. Landmark estimates are consistent; the
+ * straight line ones are as long as no edge weighs less than the straight line between its nodes.
+ */
+public interface Heuristic {
+
+  /**
+   * @param graph  the searched graph
+   * @param node   the id of the node
+   * @param target the id of the target node
+   * @return a lower bound on the distance from node to target
+   */
+  double estimate(Graph graph, int node, int target);
+
+  /**
+   * Straight line distance between node coordinates. Admissible when every edge costs at least
+   * costPerUnit times the straight line length between its ends. Nodes without coordinates are
+   * estimated at 0.
+   * @param costPerUnit the lowest cost of one unit of distance
+   * @return the heuristic
+   */
+  static Heuristic euclidean(double costPerUnit) {
+    return (graph, node, target) -> {
+      Node from = graph.getNode(node);
+      Node to = graph.getNode(target);
+      if (!from.hasCoordinates() || !to.hasCoordinates()) {
+        return 0;
+      }
+      double dx = from.getX() - to.getX();
+      double dy = from.getY() - to.getY();
+      return Math.sqrt(dx * dx + dy * dy) * costPerUnit;
+    };
+  }
+
+  /**
+   * Great circle distance in kilometers between nodes whose x is a longitude and y a latitude, in
+   * degrees. Admissible when every edge costs at least costPerKm times its great circle length.
+   * Nodes without coordinates are estimated at 0.
+   * @param costPerKm the lowest cost of one kilometer
+   * @return the heuristic
+   */
+  static Heuristic haversine(double costPerKm) {
+    return (graph, node, target) -> {
+      Node from = graph.getNode(node);
+      Node to = graph.getNode(target);
+      if (!from.hasCoordinates() || !to.hasCoordinates()) {
+        return 0;
+      }
+      double lat1 = Math.toRadians(from.getY());
+      double lat2 = Math.toRadians(to.getY());
+      double dLat = lat2 - lat1;
+      double dLon = Math.toRadians(to.getX() - from.getX());
+      double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+              + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+      return 2 * 6371.0088 * Math.asin(Math.min(1, Math.sqrt(a))) * costPerKm;
+    };
+  }
+}
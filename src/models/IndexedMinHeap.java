@@ -0,0 +1,183 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * IndexedMinHeap is a binary min heap over dense int ids in [0, capacity). Keys and heap positions
+ * are kept in flat arrays indexed by id, so push, decrease-key and pop never allocate. The heap
+ * counts its inserts, decrease-keys and pops for the query metrics.
+ */
+public class IndexedMinHeap {
+  private int[] heap;
+  private int[] positions;
+  private double[] keys;
+  private int size;
+  private long pushCount;
+  private long popCount;
+  private long decreaseKeyCount;
+
+  public IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    positions = new int[capacity];
+    keys = new double[capacity];
+    Arrays.fill(positions, -1);
+  }
+
+  /**
+   * Grow the heap so it can hold ids up to capacity - 1. Queued ids are kept.
+   * @param capacity the number of ids
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity <= positions.length) {
+      return;
+    }
+    int old = positions.length;
+    heap = Arrays.copyOf(heap, capacity);
+    keys = Arrays.copyOf(keys, capacity);
+    positions = Arrays.copyOf(positions, capacity);
+    Arrays.fill(positions, old, capacity, -1);
+  }
+
+  public int capacity() {
+    return positions.length;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(int id) {
+    return positions[id] >= 0;
+  }
+
+  public double getKey(int id) {
+    return keys[id];
+  }
+
+  /**
+   * @return the number of ids inserted since the heap was created
+   */
+  public long getPushCount() {
+    return pushCount;
+  }
+
+  /**
+   * @return the number of ids popped since the heap was created
+   */
+  public long getPopCount() {
+    return popCount;
+  }
+
+  /**
+   * @return the number of keys lowered since the heap was created
+   */
+  public long getDecreaseKeyCount() {
+    return decreaseKeyCount;
+  }
+
+  /**
+   * Insert the id with the given key, or lower its key if it is already queued with a larger one.
+   * @param id the node id
+   * @param key the priority
+   * @return true if the heap changed
+   */
+  public boolean push(int id, double key) {
+    int pos = positions[id];
+    if (pos < 0) {
+      keys[id] = key;
+      heap[size] = id;
+      positions[id] = size;
+      siftUp(size++);
+      pushCount++;
+      return true;
+    }
+    if (key < keys[id]) {
+      keys[id] = key;
+      siftUp(pos);
+      decreaseKeyCount++;
+      return true;
+    }
+    return false;
+  }
+
+  public int peek() {
+    return heap[0];
+  }
+
+  public double peekKey() {
+    return keys[heap[0]];
+  }
+
+  /**
+   * Remove and return the id with the smallest key.
+   * @return the id
+   */
+  public int pop() {
+    int top = heap[0];
+    positions[top] = -1;
+    size--;
+    popCount++;
+    if (size > 0) {
+      int last = heap[size];
+      heap[0] = last;
+      positions[last] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  /**
+   * Empty the heap. Only the ids still queued are touched, so this is O(size) rather than
+   * O(capacity).
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      positions[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private void siftUp(int i) {
+    int id = heap[i];
+    double key = keys[id];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      int parentId = heap[parent];
+      if (keys[parentId] <= key) {
+        break;
+      }
+      heap[i] = parentId;
+      positions[parentId] = i;
+      i = parent;
+    }
+    heap[i] = id;
+    positions[id] = i;
+  }
+
+  private void siftDown(int i) {
+    int id = heap[i];
+    double key = keys[id];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+        child++;
+      }
+      int childId = heap[child];
+      if (key <= keys[childId]) {
+        break;
+      }
+      heap[i] = childId;
+      positions[childId] = i;
+      i = child;
+    }
+    heap[i] = id;
+    positions[id] = i;
+  }
+}
@@ -0,0 +1,376 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * InertialFlow splits a graph into cells of at most maxCellSize nodes by recursive bisection, as
+ * in inertial flow (Schild and Sommer). The nodes of a part are ordered along a line, the first and
+ * last quarter of the order become the source and sink sides, and a maximum flow with unit capacity
+ * on every link finds the smallest cut between them. Every part keeps at least a quarter of its
+ * nodes, and cuts are as small as the flow can make them, which suits road networks well.
+ *
+ * <p>Nodes with coordinates are ordered along four directions (east, north-east, north,
+ * north-west) and the smallest cut wins. Without coordinates, the order is the breadth first order
+ * from a far away node. Edge directions are ignored: a link is cut if either direction crosses.
+ */
+public final class InertialFlow {
+  private static final double SEED_RATIO = 0.25;
+  private static final double[][] DIRECTIONS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
+
+  private final CsrGraph graph;
+  private final double[] xs;
+  private final double[] ys;
+  private final int[] position;
+
+  private InertialFlow(CsrGraph graph) {
+    this.graph = graph;
+    int n = graph.nodeCount();
+    double[] xs = new double[n];
+    double[] ys = new double[n];
+    boolean located = n > 0;
+    for (int i = 0; i < n && located; i++) {
+      Node node = graph.getNode(i);
+      located = node.hasCoordinates();
+      xs[i] = node.getX();
+      ys[i] = node.getY();
+    }
+    this.xs = located ? xs : null;
+    this.ys = located ? ys : null;
+    this.position = new int[n];
+    Arrays.fill(position, -1);
+  }
+
+  /**
+   * @param graph       the graph
+   * @param maxCellSize the most nodes in one cell
+   * @return the cell of every node, indexed by node id; cells are numbered from 0 so that cells
+   *     close in number are close in the graph
+   */
+  public static int[] partition(CsrGraph graph, int maxCellSize) {
+    if (maxCellSize < 1) {
+      throw new IllegalArgumentException("A cell must hold at least one node.");
+    }
+    InertialFlow flow = new InertialFlow(graph);
+    int[] cells = new int[graph.nodeCount()];
+    int[] all = new int[graph.nodeCount()];
+    for (int i = 0; i < all.length; i++) {
+      all[i] = i;
+    }
+
+    int cellCount = 0;
+    Deque<int[]> parts = new ArrayDeque<>();
+    parts.push(all);
+    while (!parts.isEmpty()) {
+      int[] members = parts.pop();
+      if (members.length <= maxCellSize) {
+        for (int node : members) {
+          cells[node] = cellCount;
+        }
+        cellCount++;
+        continue;
+      }
+      int[][] halves = flow.bisect(members);
+      parts.push(halves[1]);
+      parts.push(halves[0]);
+    }
+    return cells;
+  }
+
+  /**
+   * @param graph       the graph
+   * @param maxCellSize the most nodes in one cell
+   * @return the cell of every node, indexed by the node ids of the graph
+   */
+  public static int[] partition(Graph graph, int maxCellSize) {
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    int[] csrCells = partition(csr, maxCellSize);
+    int[] cells = new int[csrCells.length];
+    for (int i = 0; i < csrCells.length; i++) {
+      cells[graph.indexOf(csr.getNode(i))] = csrCells[i];
+    }
+    return cells;
+  }
+
+  /**
+   * Split the members into two parts along the smallest cut over all orders.
+   */
+  private int[][] bisect(int[] members) {
+    int size = members.length;
+    for (int i = 0; i < size; i++) {
+      position[members[i]] = i;
+    }
+    Network network = new Network(graph, members, position);
+    int seeds = Math.max(1, (int) (size * SEED_RATIO));
+
+    boolean[] best = null;
+    int bestCut = Integer.MAX_VALUE;
+    int bestBalance = Integer.MAX_VALUE;
+    for (int[] order : orders(network, members)) {
+      byte[] side = new byte[size];
+      for (int i = 0; i < seeds; i++) {
+        side[order[i]] = Network.SOURCE;
+        side[order[size - 1 - i]] = Network.SINK;
+      }
+      int cut = network.maxFlow(side);
+      boolean[] sourceSide = network.sourceSide(side);
+      int count = 0;
+      for (boolean inSource : sourceSide) {
+        count += inSource ? 1 : 0;
+      }
+      int balance = Math.abs(2 * count - size);
+      if (cut < bestCut || (cut == bestCut && balance < bestBalance)) {
+        best = sourceSide;
+        bestCut = cut;
+        bestBalance = balance;
+      }
+    }
+
+    int count = 0;
+    for (boolean inSource : best) {
+      count += inSource ? 1 : 0;
+    }
+    int[][] halves = {new int[count], new int[size - count]};
+    int[] next = new int[2];
+    for (int i = 0; i < size; i++) {
+      int half = best[i] ? 0 : 1;
+      halves[half][next[half]++] = members[i];
+      position[members[i]] = -1;
+    }
+    return halves;
+  }
+
+  /**
+   * @return the orders to cut along, as local ids
+   */
+  private int[][] orders(Network network, int[] members) {
+    int size = members.length;
+    if (xs == null) {
+      // a breadth first sweep from the node farthest from an arbitrary one
+      int far = network.breadthFirst(0)[size - 1];
+      return new int[][] {network.breadthFirst(far)};
+    }
+    int[][] orders = new int[DIRECTIONS.length][];
+    long[] keyed = new long[size];
+    for (int d = 0; d < DIRECTIONS.length; d++) {
+      double[] keys = new double[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = DIRECTIONS[d][0] * xs[members[i]] + DIRECTIONS[d][1] * ys[members[i]];
+      }
+      // sort the local ids by rank of their key; ranks fit in the high bits next to the id
+      double[] sorted = keys.clone();
+      Arrays.sort(sorted);
+      for (int i = 0; i < size; i++) {
+        keyed[i] = ((long) Arrays.binarySearch(sorted, keys[i]) << 32) | i;
+      }
+      Arrays.sort(keyed);
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = (int) keyed[i];
+      }
+      orders[d] = order;
+    }
+    return orders;
+  }
+
+  /**
+   * The links between the members of one part as a residual network with unit capacities. Every
+   * link is a pair of arcs, each the reverse of the other, so pushing flow over one arc frees
+   * capacity on its pair.
+   */
+  private static final class Network {
+    static final byte SOURCE = 1;
+    static final byte SINK = 2;
+
+    private final int size;
+    private final int[] firstArc;
+    private final int[] heads;
+    private final int[] pairs;
+    private final byte[] capacities;
+    private final int[] levels;
+    private final int[] current;
+    private final int[] queue;
+
+    Network(CsrGraph graph, int[] members, int[] position) {
+      size = members.length;
+      firstArc = new int[size + 1];
+      for (int i = 0; i < size; i++) {
+        int u = members[i];
+        for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+          int j = position[graph.target(e)];
+          if (j >= 0 && j != i) {
+            firstArc[i + 1]++;
+            firstArc[j + 1]++;
+          }
+        }
+      }
+      for (int i = 0; i < size; i++) {
+        firstArc[i + 1] += firstArc[i];
+      }
+      int arcs = firstArc[size];
+      heads = new int[arcs];
+      pairs = new int[arcs];
+      capacities = new byte[arcs];
+      int[] next = Arrays.copyOf(firstArc, size);
+      for (int i = 0; i < size; i++) {
+        int u = members[i];
+        for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+          int j = position[graph.target(e)];
+          if (j >= 0 && j != i) {
+            int forward = next[i]++;
+            int backward = next[j]++;
+            heads[forward] = j;
+            heads[backward] = i;
+            pairs[forward] = backward;
+            pairs[backward] = forward;
+          }
+        }
+      }
+      levels = new int[size];
+      current = new int[size];
+      queue = new int[size];
+    }
+
+    /**
+     * Nodes in breadth first order from the start, followed by the nodes it cannot reach.
+     */
+    int[] breadthFirst(int start) {
+      int[] order = new int[size];
+      boolean[] seen = new boolean[size];
+      int tail = 0;
+      for (int root = start, scan = 0; tail < size; root = scan++) {
+        if (seen[root]) {
+          continue;
+        }
+        seen[root] = true;
+        int head = tail;
+        order[tail++] = root;
+        while (head < tail) {
+          int u = order[head++];
+          for (int a = firstArc[u]; a < firstArc[u + 1]; a++) {
+            if (!seen[heads[a]]) {
+              seen[heads[a]] = true;
+              order[tail++] = heads[a];
+            }
+          }
+        }
+      }
+      return order;
+    }
+
+    /**
+     * Dinic's algorithm from all source nodes to all sink nodes at once.
+     * @return the flow, which is the number of links in the smallest cut
+     */
+    int maxFlow(byte[] side) {
+      Arrays.fill(capacities, (byte) 1);
+      int flow = 0;
+      int[] pathArcs = new int[size];
+      while (level(side)) {
+        System.arraycopy(firstArc, 0, current, 0, size);
+        for (int s = 0; s < size; s++) {
+          if (side[s] == SOURCE) {
+            while (augment(s, side, pathArcs)) {
+              flow++;
+            }
+          }
+        }
+      }
+      return flow;
+    }
+
+    /**
+     * @return the nodes still reachable from the sources once the flow is maximal
+     */
+    boolean[] sourceSide(byte[] side) {
+      boolean[] reached = new boolean[size];
+      int tail = 0;
+      for (int s = 0; s < size; s++) {
+        if (side[s] == SOURCE) {
+          reached[s] = true;
+          queue[tail++] = s;
+        }
+      }
+      for (int head = 0; head < tail; head++) {
+        int u = queue[head];
+        for (int a = firstArc[u]; a < firstArc[u + 1]; a++) {
+          if (capacities[a] > 0 && !reached[heads[a]]) {
+            reached[heads[a]] = true;
+            queue[tail++] = heads[a];
+          }
+        }
+      }
+      return reached;
+    }
+
+    /**
+     * Breadth first levels over the arcs with capacity left, from all sources.
+     * @return whether a sink can still be reached
+     */
+    private boolean level(byte[] side) {
+      Arrays.fill(levels, -1);
+      int tail = 0;
+      for (int s = 0; s < size; s++) {
+        if (side[s] == SOURCE) {
+          levels[s] = 0;
+          queue[tail++] = s;
+        }
+      }
+      boolean reached = false;
+      for (int head = 0; head < tail; head++) {
+        int u = queue[head];
+        if (side[u] == SINK) {
+          reached = true;
+          continue;
+        }
+        for (int a = firstArc[u]; a < firstArc[u + 1]; a++) {
+          int v = heads[a];
+          if (capacities[a] > 0 && levels[v] < 0) {
+            levels[v] = levels[u] + 1;
+            queue[tail++] = v;
+          }
+        }
+      }
+      return reached;
+    }
+
+    /**
+     * Push one unit along a shortest path of the level graph, depth first without recursion. Arcs
+     * that lead nowhere are skipped for the rest of the phase.
+     * @return whether a sink was reached
+     */
+    private boolean augment(int source, byte[] side, int[] pathArcs) {
+      int depth = 0;
+      int u = source;
+      while (true) {
+        if (side[u] == SINK) {
+          for (int i = 0; i < depth; i++) {
+            capacities[pathArcs[i]]--;
+            capacities[pairs[pathArcs[i]]]++;
+          }
+          return true;
+        }
+        int a = current[u];
+        int end = firstArc[u + 1];
+        while (a < end && (capacities[a] == 0 || levels[heads[a]] != levels[u] + 1)) {
+          a++;
+        }
+        current[u] = a;
+        if (a < end) {
+          pathArcs[depth++] = a;
+          u = heads[a];
+          continue;
+        }
+        // a dead end: retreat and skip the arc that led here
+        levels[u] = -1;
+        if (depth == 0) {
+          return false;
+        }
+        int back = pathArcs[--depth];
+        u = heads[pairs[back]];
+        current[u]++;
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * KShortestPaths finds the k cheapest loopless paths between two nodes with Yen's algorithm. Each
+ * new path is searched from every spur node of the previous one: the root path up to the spur node
+ * is kept, the root nodes are masked out, and so are the edges leaving the spur node along every
+ * accepted path with the same root. Masks leave the graph untouched, so the spur searches of one
+ * round run in parallel.
+ *
+ * <p>Candidates wait in a heap ordered by cost. A candidate that is already accepted or queued is
+ * dropped, so the same path is never generated twice.
+ */
+public class KShortestPaths {
+  private static final Comparator<Candidate> BY_COST =
+          Comparator.comparingDouble((Candidate c) -> c.cost).thenComparingInt(c -> c.ids.length);
+  private static final ThreadLocal<SearchWorkspace> WORKSPACES = ThreadLocal.withInitial(SearchWorkspace::new);
+
+  /**
+   * Find the paths on workspaces kept per thread across calls.
+   * @param graph the graph; weights must not be negative
+   * @param start the start node
+   * @param end   the end node
+   * @param k     the number of paths
+   * @return up to k paths, cheapest first
+   */
+  public static List<SmartGraph> find(Graph graph, Node start, Node end, int k) {
+    return find(graph, start, end, k, WORKSPACES::get, null);
+  }
+
+  /**
+   * @param graph      the graph; weights must not be negative
+   * @param start      the start node
+   * @param end        the end node
+   * @param k          the number of paths
+   * @param workspaces the workspace of the calling thread, e.g. from the ThreadLocal of a service;
+   *                   the spur searches ask for it from fork-join workers
+   * @param work       told the work of every search, from several threads at once, or null
+   * @return up to k paths, cheapest first
+   */
+  public static List<SmartGraph> find(Graph graph, Node start, Node end, int k,
+                                      Supplier<SearchWorkspace> workspaces, Consumer<SearchCounts> work) {
+    int source = graph.indexOf(start);
+    int target = graph.indexOf(end);
+    List<SmartGraph> result = new ArrayList<>();
+    if (source < 0 || target < 0 || k <= 0) {
+      return result;
+    }
+
+    SearchWorkspace workspace = workspaces.get();
+    double cost = search(graph, workspace, source, target, null, work);
+    if (cost == Double.MAX_VALUE) {
+      return result;
+    }
+    List<int[]> accepted = new ArrayList<>();
+    accepted.add(workspace.pathIds(target));
+    result.add(toSmartGraph(graph, accepted.get(0), cost));
+
+    PriorityQueue<Candidate> candidates = new PriorityQueue<>(BY_COST);
+    Set<List<Integer>> seen = new HashSet<>();
+    seen.add(asList(accepted.get(0)));
+
+    while (accepted.size() < k) {
+      int[] previous = accepted.get(accepted.size() - 1);
+      double[] rootCosts = prefixCosts(graph, previous);
+      List<Candidate> spurs = IntStream.range(0, previous.length - 1).parallel()
+              .mapToObj(j -> spur(graph, workspaces.get(), work, accepted, previous, rootCosts, j, target))
+              .filter(candidate -> candidate != null)
+              .collect(Collectors.toList());
+      for (Candidate candidate : spurs) {
+        if (seen.add(asList(candidate.ids))) {
+          candidates.add(candidate);
+        }
+      }
+      if (candidates.isEmpty()) {
+        break;
+      }
+      Candidate next = candidates.poll();
+      accepted.add(next.ids);
+      result.add(toSmartGraph(graph, next.ids, next.cost));
+    }
+    return result;
+  }
+
+  /**
+   * Search the cheapest path that follows previous up to its j-th node and then leaves it.
+   * @return the path, or null if there is none
+   */
+  private static Candidate spur(Graph graph, SearchWorkspace workspace, Consumer<SearchCounts> work,
+                                List<int[]> accepted, int[] previous, double[] rootCosts, int j, int target) {
+    int spurNode = previous[j];
+    SearchMask mask = new SearchMask();
+    for (int i = 0; i < j; i++) {
+      mask.blockNode(previous[i]);
+    }
+    for (int[] path : accepted) {
+      if (path.length > j + 1 && sharesRoot(path, previous, j)) {
+        Edge edge = edge(graph, path[j], path[j + 1]);
+        if (edge != null) {
+          mask.blockEdge(edge);
+        }
+      }
+    }
+
+    double spurCost = search(graph, workspace, spurNode, target, mask, work);
+    if (spurCost == Double.MAX_VALUE) {
+      return null;
+    }
+    int[] spurPath = workspace.pathIds(target);
+    int[] ids = Arrays.copyOf(previous, j + spurPath.length);
+    System.arraycopy(spurPath, 0, ids, j, spurPath.length);
+    return new Candidate(ids, rootCosts[j] + spurCost);
+  }
+
+  private static double search(Graph graph, SearchWorkspace workspace, int source, int target, SearchMask mask,
+                               Consumer<SearchCounts> work) {
+    SearchCounts before = work == null ? null : workspace.counts();
+    double cost = workspace.search(graph, source, target, mask);
+    if (work != null) {
+      work.accept(workspace.counts().minus(before));
+    }
+    return cost;
+  }
+
+  private static boolean sharesRoot(int[] path, int[] root, int j) {
+    for (int i = 0; i <= j; i++) {
+      if (path[i] != root[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the cost of the path up to each of its nodes
+   */
+  private static double[] prefixCosts(Graph graph, int[] path) {
+    double[] costs = new double[path.length];
+    for (int i = 1; i < path.length; i++) {
+      costs[i] = costs[i - 1] + edge(graph, path[i - 1], path[i]).getWeight();
+    }
+    return costs;
+  }
+
+  private static Edge edge(Graph graph, int from, int to) {
+    Node dest = graph.getNode(to);
+    Edge best = null;
+    for (Edge edge : graph.getNode(from).getEdges()) {
+      if (edge.getDestNode() == dest && (best == null || edge.getWeight() < best.getWeight())) {
+        best = edge;
+      }
+    }
+    return best;
+  }
+
+  private static List<Integer> asList(int[] ids) {
+    return Arrays.stream(ids).boxed().collect(Collectors.toList());
+  }
+
+  private static SmartGraph toSmartGraph(Graph graph, int[] ids, double cost) {
+    List<Node> path = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      path.add(graph.getNode(id));
+    }
+    return new SmartGraph(graph, path, cost);
+  }
+
+  private static class Candidate {
+    final int[] ids;
+    final double cost;
+
+    Candidate(int[] ids, double cost) {
+      this.ids = ids;
+      this.cost = cost;
+    }
+  }
+}
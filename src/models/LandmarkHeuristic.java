@@ -0,0 +1,113 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * LandmarkHeuristic is the ALT heuristic: exact distances from and to a few landmark nodes are
+ * precomputed, and the triangle inequality turns them into lower bounds for any pair of nodes.
+ * For a landmark L, d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L).
+ *
+ * <p>Landmarks are chosen by farthest point selection: each new landmark is the node farthest away
+ * from the landmarks picked so far. The heuristic belongs to the graph it was built for and must be
+ * rebuilt when edge weights change.
+ */
+public class LandmarkHeuristic implements Heuristic {
+  private final int[] landmarks;
+  private final double[][] fromLandmark;
+  private final double[][] toLandmark;
+
+  private LandmarkHeuristic(int[] landmarks, double[][] fromLandmark, double[][] toLandmark) {
+    this.landmarks = landmarks;
+    this.fromLandmark = fromLandmark;
+    this.toLandmark = toLandmark;
+  }
+
+  /**
+   * Choose up to k landmarks and precompute their distances.
+   * @param graph the graph
+   * @param k the number of landmarks
+   * @return the heuristic
+   */
+  public static LandmarkHeuristic build(Graph graph, int k) {
+    int n = graph.nodeCount();
+    SearchWorkspace workspace = new SearchWorkspace(n);
+
+    int first = -1;
+    for (int id = 0; id < n && first < 0; id++) {
+      if (graph.getNode(id) != null) {
+        first = id;
+      }
+    }
+    if (first < 0) {
+      return new LandmarkHeuristic(new int[0], new double[0][], new double[0][]);
+    }
+
+    // the first landmark is the node farthest from an arbitrary node
+    double[] closest = distances(graph, first, false, workspace);
+    int[] chosen = new int[k];
+    double[][] from = new double[k][];
+    double[][] to = new double[k][];
+    int count = 0;
+    int next = farthest(closest, first);
+    Arrays.fill(closest, Double.MAX_VALUE);
+
+    while (count < k && next >= 0) {
+      chosen[count] = next;
+      from[count] = distances(graph, next, false, workspace);
+      to[count] = distances(graph, next, true, workspace);
+      for (int id = 0; id < n; id++) {
+        closest[id] = Math.min(closest[id], from[count][id]);
+      }
+      closest[next] = 0;
+      count++;
+      next = farthest(closest, -1);
+    }
+
+    return new LandmarkHeuristic(Arrays.copyOf(chosen, count), Arrays.copyOf(from, count),
+            Arrays.copyOf(to, count));
+  }
+
+  public int[] getLandmarks() {
+    return landmarks.clone();
+  }
+
+  @Override
+  public double estimate(Graph graph, int node, int target) {
+    double best = 0;
+    for (int i = 0; i < landmarks.length; i++) {
+      double[] from = fromLandmark[i];
+      double[] to = toLandmark[i];
+      if (from[target] < Double.MAX_VALUE && from[node] < Double.MAX_VALUE) {
+        best = Math.max(best, from[target] - from[node]);
+      }
+      if (to[node] < Double.MAX_VALUE && to[target] < Double.MAX_VALUE) {
+        best = Math.max(best, to[node] - to[target]);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return the id of the reachable node with the largest finite distance that is not yet a
+   *     landmark, or -1
+   */
+  private static int farthest(double[] distances, int exclude) {
+    int best = -1;
+    for (int id = 0; id < distances.length; id++) {
+      if (id != exclude && distances[id] > 0 && distances[id] < Double.MAX_VALUE
+              && (best < 0 || distances[id] > distances[best])) {
+        best = id;
+      }
+    }
+    return best;
+  }
+
+  private static double[] distances(Graph graph, int source, boolean reverse, SearchWorkspace workspace) {
+    workspace.settleAll(graph, source, reverse);
+    double[] distances = new double[graph.nodeCount()];
+    for (int id = 0; id < distances.length; id++) {
+      distances[id] = workspace.getDistance(id);
+    }
+    return distances;
+  }
+}
@@ -0,0 +1,91 @@
+package models;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations in nanoseconds into log-linear buckets, in the manner of
+ * HdrHistogram: values below 256 get a bucket each, and every power of two above is split into
+ * 128 equal buckets, so a reported percentile is within 1% of the recorded value. Recording is
+ * lock free and allocation free, and the histogram is safe to record into from many threads.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 7;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * @param nanos the duration; negative values count as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucket(value));
+    total.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return total.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @return the mean duration, or 0 if nothing was recorded
+   */
+  public double getMean() {
+    long count = total.sum();
+    return count == 0 ? 0 : (double) sum.sum() / count;
+  }
+
+  /**
+   * @param percentile the percentile, from 0 to 100
+   * @return the largest value in the bucket that holds the percentile, or 0 if nothing was
+   *     recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = total.sum();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts.get(b);
+      if (seen >= rank) {
+        return Math.min(highest(b), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Values below 2 * SUB_COUNT map to themselves; above, the top SUB_BITS + 1 bits of the value
+   * pick the bucket within its power of two.
+   */
+  private static int bucket(long value) {
+    if (value < 2 * SUB_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return ((shift + 1) << SUB_BITS) + (int) (value >>> shift) - SUB_COUNT;
+  }
+
+  private static long highest(int bucket) {
+    if (bucket < 2 * SUB_COUNT) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BITS) - 1;
+    long low = (long) (SUB_COUNT + (bucket & (SUB_COUNT - 1))) << shift;
+    return low + (1L << shift) - 1;
+  }
+}
@@ -10,7 +10,10 @@ public class Node {
   private String name;
   private List<Edge> edges;
   private List<Edge> intoEdges;
-  private boolean visited;
+  private int id = -1;
+  private double x;
+  private double y;
+  private boolean located;
 
   public Node(String name) {
     this.name = name;
@@ -18,6 +21,15 @@ public class Node {
     intoEdges = new ArrayList<>();
   }
 
+  /**
+   * Create a node with coordinates, used by goal directed search. For geographic graphs x is the
+   * longitude and y the latitude, in degrees.
+   */
+  public Node(String name, double x, double y) {
+    this(name);
+    setCoordinates(x, y);
+  }
+
   public String getName() {
     return name;
   }
@@ -30,15 +42,38 @@ public class Node {
     return intoEdges;
   }
 
+  public boolean hasCoordinates() {
+    return located;
+  }
+
+  public double getX() {
+    return x;
+  }
+
+  public double getY() {
+    return y;
+  }
+
+  public void setCoordinates(double x, double y) {
+    this.x = x;
+    this.y = y;
+    this.located = true;
+  }
+
   public void setEdges(List<Edge> edges) {
     this.edges = edges;
   }
 
-  public boolean isVisited() {
-    return visited;
+  /**
+   * The dense id assigned by the graph this node was last added to. Use Graph.indexOf to look up
+   * the id of a node in a specific graph.
+   * @return the id, or -1 if the node was never added to a graph
+   */
+  public int getId() {
+    return id;
   }
 
-  public void setVisited(boolean visited) {
-    this.visited = visited;
+  void setId(int id) {
+    this.id = id;
   }
 }
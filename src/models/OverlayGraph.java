@@ -0,0 +1,348 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * OverlayGraph is the top level of a partitioned graph, as in customizable route planning (CRP).
+ * Its nodes are the boundary nodes of all cells, grouped by cell and in ascending id order within
+ * a cell. Its edges are the edges of the whole graph that cross from one cell to another, plus a
+ * clique per cell with the cost of the shortest path inside the cell between each pair of its
+ * boundary nodes. The overlay is small next to the graph, so one process can hold it while the
+ * cells are spread over others.
+ *
+ * <p>A query searches the source cell, the overlay and the target cell only. Any path that leaves
+ * the source cell does so through one of its boundary nodes, and moves from cell to cell over
+ * crossing edges, so its cost is found on the overlay; the legs of the path are then unpacked by
+ * the cells they run through.
+ *
+ * <p>The overlay is saved to one file, little endian and each section padded to 8 bytes: a header
+ * (magic, version, node count n, cell count c, boundary count b, edge count m), the cell of every
+ * node (n ints), the first overlay id of every cell (c + 1 ints), the node id of every overlay id
+ * (b ints), then the sources and targets (m ints each) and weights (m doubles) of the edges.
+ */
+public class OverlayGraph {
+  private static final int MAGIC = 0x594C5256;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+
+  private final int[] cells;
+  private final int[] cellStart;
+  private final int[] boundaryNodes;
+  private final CsrGraph overlay;
+
+  private OverlayGraph(int[] cells, int[] cellStart, int[] boundaryNodes, int[] sources, int[] targets,
+                       double[] weights) {
+    this.cells = cells;
+    this.cellStart = cellStart;
+    this.boundaryNodes = boundaryNodes;
+    this.overlay = CsrGraph.fromEdges(boundaryNodes.length, sources, targets, weights);
+  }
+
+  /**
+   * Build the overlay of a partitioned graph. The cliques are computed in parallel on the common
+   * fork-join pool, one search per boundary node inside its cell.
+   * @param graph  the whole graph
+   * @param cells  the cell of every node
+   * @param shards the cells, e.g. from Cell.split, or shards in other processes
+   * @return the overlay
+   */
+  public static OverlayGraph build(CsrGraph graph, int[] cells, IntFunction<? extends CellShard> shards) {
+    int n = graph.nodeCount();
+    int cellCount = 0;
+    for (int cell : cells) {
+      cellCount = Math.max(cellCount, cell + 1);
+    }
+
+    boolean[] border = new boolean[n];
+    int crossing = 0;
+    for (int u = 0; u < n; u++) {
+      for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+        int v = graph.target(e);
+        if (cells[u] != cells[v]) {
+          border[u] = true;
+          border[v] = true;
+          crossing++;
+        }
+      }
+    }
+
+    int[] cellStart = new int[cellCount + 1];
+    for (int u = 0; u < n; u++) {
+      if (border[u]) {
+        cellStart[cells[u] + 1]++;
+      }
+    }
+    for (int c = 0; c < cellCount; c++) {
+      cellStart[c + 1] += cellStart[c];
+    }
+    int[] boundaryNodes = new int[cellStart[cellCount]];
+    int[] overlayIds = new int[n];
+    int[] next = Arrays.copyOf(cellStart, cellCount);
+    for (int u = 0; u < n; u++) {
+      if (border[u]) {
+        overlayIds[u] = next[cells[u]]++;
+        boundaryNodes[overlayIds[u]] = u;
+      }
+    }
+
+    double[][] cliques = new double[cellCount][];
+    IntStream.range(0, cellCount).parallel().forEach(c -> {
+      int b = cellStart[c + 1] - cellStart[c];
+      if (b == 0) {
+        return;
+      }
+      CellShard shard = shards.apply(c);
+      double[] clique = new double[b * b];
+      for (int i = 0; i < b; i++) {
+        System.arraycopy(shard.distancesFrom(boundaryNodes[cellStart[c] + i]), 0, clique, i * b, b);
+      }
+      cliques[c] = clique;
+    });
+
+    int m = crossing;
+    for (int c = 0; c < cellCount; c++) {
+      int b = cellStart[c + 1] - cellStart[c];
+      for (int i = 0; i < b * b; i++) {
+        m += i % (b + 1) != 0 && cliques[c][i] < Double.MAX_VALUE ? 1 : 0;
+      }
+    }
+    int[] sources = new int[m];
+    int[] targets = new int[m];
+    double[] weights = new double[m];
+    m = 0;
+    for (int c = 0; c < cellCount; c++) {
+      int b = cellStart[c + 1] - cellStart[c];
+      for (int i = 0; i < b; i++) {
+        for (int j = 0; j < b; j++) {
+          double distance = cliques[c][i * b + j];
+          if (i != j && distance < Double.MAX_VALUE) {
+            sources[m] = cellStart[c] + i;
+            targets[m] = cellStart[c] + j;
+            weights[m] = distance;
+            m++;
+          }
+        }
+      }
+    }
+    for (int u = 0; u < n; u++) {
+      for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+        int v = graph.target(e);
+        if (cells[u] != cells[v]) {
+          sources[m] = overlayIds[u];
+          targets[m] = overlayIds[v];
+          weights[m] = graph.weight(e);
+          m++;
+        }
+      }
+    }
+    return new OverlayGraph(cells.clone(), cellStart, boundaryNodes, sources, targets, weights);
+  }
+
+  /**
+   * Write the overlay to a file in the format described above, replacing the file.
+   * @param file the file
+   */
+  public void save(Path file) throws IOException {
+    int n = cells.length;
+    int b = boundaryNodes.length;
+    int m = overlay.edgeCount();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(cellCount()).putInt(b).putInt(m);
+      header.clear();
+      channel.write(header, 0);
+
+      long position = HEADER_BYTES;
+      CsrGraph.section(channel, position, (long) n * Integer.BYTES, true).asIntBuffer().put(cells);
+      position = CsrGraph.align(position + (long) n * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) cellStart.length * Integer.BYTES, true).asIntBuffer().put(cellStart);
+      position = CsrGraph.align(position + (long) cellStart.length * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) b * Integer.BYTES, true).asIntBuffer().put(boundaryNodes);
+      position = CsrGraph.align(position + (long) b * Integer.BYTES);
+
+      int[] sources = new int[m];
+      int[] targets = new int[m];
+      double[] weights = new double[m];
+      for (int u = 0; u < b; u++) {
+        for (int e = overlay.firstEdge(u); e < overlay.endEdge(u); e++) {
+          sources[e] = u;
+          targets[e] = overlay.target(e);
+          weights[e] = overlay.weight(e);
+        }
+      }
+      CsrGraph.section(channel, position, (long) m * Integer.BYTES, true).asIntBuffer().put(sources);
+      position = CsrGraph.align(position + (long) m * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) m * Integer.BYTES, true).asIntBuffer().put(targets);
+      position = CsrGraph.align(position + (long) m * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) m * Double.BYTES, true).asDoubleBuffer().put(weights);
+    }
+  }
+
+  /**
+   * Read an overlay written by save.
+   * @param file the file
+   * @return the overlay
+   */
+  public static OverlayGraph load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      channel.read(header, 0);
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException(String.format("%s is not an overlay file.", file));
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(String.format("%s has format version %d, expected %d.", file, version, VERSION));
+      }
+      int[] cells = new int[header.getInt()];
+      int[] cellStart = new int[header.getInt() + 1];
+      int[] boundaryNodes = new int[header.getInt()];
+      int m = header.getInt();
+      int[] sources = new int[m];
+      int[] targets = new int[m];
+      double[] weights = new double[m];
+
+      long position = HEADER_BYTES;
+      CsrGraph.section(channel, position, (long) cells.length * Integer.BYTES, false).asIntBuffer().get(cells);
+      position = CsrGraph.align(position + (long) cells.length * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) cellStart.length * Integer.BYTES, false).asIntBuffer().get(cellStart);
+      position = CsrGraph.align(position + (long) cellStart.length * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) boundaryNodes.length * Integer.BYTES, false).asIntBuffer()
+              .get(boundaryNodes);
+      position = CsrGraph.align(position + (long) boundaryNodes.length * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) m * Integer.BYTES, false).asIntBuffer().get(sources);
+      position = CsrGraph.align(position + (long) m * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) m * Integer.BYTES, false).asIntBuffer().get(targets);
+      position = CsrGraph.align(position + (long) m * Integer.BYTES);
+      CsrGraph.section(channel, position, (long) m * Double.BYTES, false).asDoubleBuffer().get(weights);
+      return new OverlayGraph(cells, cellStart, boundaryNodes, sources, targets, weights);
+    }
+  }
+
+  /**
+   * @return the number of nodes of the whole graph
+   */
+  public int nodeCount() {
+    return cells.length;
+  }
+
+  public int cellCount() {
+    return cellStart.length - 1;
+  }
+
+  /**
+   * @return the number of boundary nodes, which are the nodes of the overlay
+   */
+  public int boundaryCount() {
+    return boundaryNodes.length;
+  }
+
+  /**
+   * @return the number of overlay edges, crossing edges and clique edges together
+   */
+  public int edgeCount() {
+    return overlay.edgeCount();
+  }
+
+  /**
+   * @param node a node of the whole graph
+   * @return its cell
+   */
+  public int cellOf(int node) {
+    return cells[node];
+  }
+
+  /**
+   * Shortest path between two nodes of the whole graph. The source cell and the target cell are
+   * searched by their shards, the overlay on the given workspace, and every leg of the overlay path
+   * inside a cell is unpacked by the shard of that cell.
+   * @param source    the id of the start node
+   * @param target    the id of the end node
+   * @param shards    the shard of every cell
+   * @param workspace the search state for the overlay
+   * @return the path and its cost; the result has no graph, since no single process holds it
+   */
+  public SmartGraph route(int source, int target, IntFunction<? extends CellShard> shards, SearchWorkspace workspace) {
+    int sourceCell = cells[source];
+    int targetCell = cells[target];
+    CellShard sourceShard = shards.apply(sourceCell);
+    CellShard targetShard = shards.apply(targetCell);
+
+    // a path that never leaves the cell
+    SmartGraph inside = sourceCell == targetCell ? sourceShard.path(source, target) : null;
+    double best = inside != null && inside.getPath() != null ? inside.getCost() : Double.MAX_VALUE;
+
+    double[] fromSource = sourceShard.distancesFrom(source);
+    double[] toTarget = targetShard.distancesTo(target);
+    workspace.reset(boundaryNodes.length);
+    for (int i = 0; i < fromSource.length; i++) {
+      if (fromSource[i] < Double.MAX_VALUE) {
+        workspace.relax(cellStart[sourceCell] + i, fromSource[i], -1);
+      }
+    }
+    int exit = -1;
+    while (!workspace.isEmpty() && workspace.peekDistance() < best) {
+      int u = workspace.pop();
+      double distance = workspace.getDistance(u);
+      if (cells[boundaryNodes[u]] == targetCell) {
+        double rest = toTarget[u - cellStart[targetCell]];
+        if (rest < Double.MAX_VALUE && distance + rest < best) {
+          best = distance + rest;
+          exit = u;
+        }
+      }
+      for (int e = overlay.firstEdge(u); e < overlay.endEdge(u); e++) {
+        workspace.relax(overlay.target(e), distance + overlay.weight(e), u);
+      }
+    }
+
+    if (exit < 0) {
+      return inside != null && inside.getPath() != null ? inside : new SmartGraph(null, null);
+    }
+
+    // unpack: the leg into the overlay, a leg per clique edge, the leg out of it; a crossing edge
+    // adds no nodes of its own, its head starts the next leg
+    int[] chain = workspace.pathIds(exit);
+    List<Node> path = new ArrayList<>();
+    boolean joined = append(path, sourceShard.path(source, boundaryNodes[chain[0]]), false);
+    for (int i = 0; i + 1 < chain.length; i++) {
+      int u = boundaryNodes[chain[i]];
+      int v = boundaryNodes[chain[i + 1]];
+      if (cells[u] == cells[v]) {
+        joined = append(path, shards.apply(cells[u]).path(u, v), joined);
+      } else {
+        if (!joined) {
+          append(path, shards.apply(cells[u]).path(u, u), false);
+        }
+        joined = false;
+      }
+    }
+    append(path, targetShard.path(boundaryNodes[exit], target), joined);
+    return new SmartGraph(null, path, best);
+  }
+
+  /**
+   * @param joined whether the path already ends with the first node of the leg
+   * @return true, as the path now ends with the last node of the leg
+   */
+  private static boolean append(List<Node> path, SmartGraph leg, boolean joined) {
+    if (leg.getPath() == null) {
+      throw new IllegalStateException("A shard has no path for a leg of the overlay.");
+    }
+    List<Node> nodes = leg.getPath();
+    path.addAll(joined ? nodes.subList(1, nodes.size()) : nodes);
+    return true;
+  }
+}
@@ -0,0 +1,65 @@
+package models;
+
+/**
+ * SearchCounts is a snapshot of the work done by searches: nodes settled, edges relaxed and heap
+ * operations. SearchWorkspace and IndexedMinHeap count from the moment they are created, so the
+ * work of one query is the difference of the snapshots taken before and after it.
+ */
+public final class SearchCounts {
+  public static final SearchCounts ZERO = new SearchCounts(0, 0, 0, 0, 0);
+
+  private final long settled;
+  private final long relaxations;
+  private final long pushes;
+  private final long pops;
+  private final long decreaseKeys;
+
+  public SearchCounts(long settled, long relaxations, long pushes, long pops, long decreaseKeys) {
+    this.settled = settled;
+    this.relaxations = relaxations;
+    this.pushes = pushes;
+    this.pops = pops;
+    this.decreaseKeys = decreaseKeys;
+  }
+
+  /**
+   * @param settled     the nodes settled
+   * @param relaxations the edges relaxed
+   * @param heap        the heap the search used, counted from its creation
+   * @return the counts
+   */
+  public static SearchCounts of(long settled, long relaxations, IndexedMinHeap heap) {
+    return new SearchCounts(settled, relaxations, heap.getPushCount(), heap.getPopCount(),
+            heap.getDecreaseKeyCount());
+  }
+
+  public long getSettled() {
+    return settled;
+  }
+
+  public long getRelaxations() {
+    return relaxations;
+  }
+
+  public long getPushes() {
+    return pushes;
+  }
+
+  public long getPops() {
+    return pops;
+  }
+
+  public long getDecreaseKeys() {
+    return decreaseKeys;
+  }
+
+  public SearchCounts plus(SearchCounts that) {
+    return new SearchCounts(settled + that.settled, relaxations + that.relaxations, pushes + that.pushes,
+            pops + that.pops, decreaseKeys + that.decreaseKeys);
+  }
+
+  public SearchCounts minus(SearchCounts that) {
+    return new SearchCounts(settled - that.settled, relaxations - that.relaxations, pushes - that.pushes,
+            pops - that.pops, decreaseKeys - that.decreaseKeys);
+  }
+}
@@ -0,0 +1,62 @@
+package models;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * SearchMask marks nodes and edges a search must not use. A search consults the mask while it
+ * relaxes edges, so bypassing never changes the graph, and many masks can be used against one
+ * shared graph at the same time. Nodes are masked by their id in the searched graph; edges by
+ * identity for a Graph, or by edge index for a CsrGraph.
+ *
+ * <p>A mask is not thread safe while it is being built, but may be read by any number of searches
+ * once it is complete.
+ */
+public class SearchMask {
+  private final BitSet nodes;
+  private final BitSet csrEdges;
+  private final Set<Edge> edges;
+
+  public SearchMask() {
+    nodes = new BitSet();
+    csrEdges = new BitSet();
+    edges = Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  public SearchMask blockNode(int id) {
+    nodes.set(id);
+    return this;
+  }
+
+  public SearchMask blockEdge(Edge edge) {
+    edges.add(edge);
+    return this;
+  }
+
+  /**
+   * @param edge the index of an edge in the forward rows of a CsrGraph
+   * @return this mask
+   */
+  public SearchMask blockEdge(int edge) {
+    csrEdges.set(edge);
+    return this;
+  }
+
+  public boolean isNodeBlocked(int id) {
+    return nodes.get(id);
+  }
+
+  public boolean isEdgeBlocked(Edge edge) {
+    return !edges.isEmpty() && edges.contains(edge);
+  }
+
+  public boolean isEdgeBlocked(int edge) {
+    return csrEdges.get(edge);
+  }
+
+  public boolean isEmpty() {
+    return nodes.isEmpty() && csrEdges.isEmpty() && edges.isEmpty();
+  }
+}
@@ -0,0 +1,404 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SearchWorkspace holds the state of one dijkstra search in flat arrays indexed by node id:
+ * distances in a double[], parents in an int[] and the frontier in an IndexedMinHeap.
+ *
+ * <p>The arrays are epoch stamped. Starting a new search only bumps the epoch, so a workspace can
+ * be reused for back to back queries without clearing or allocating anything. A workspace must
+ * not be shared by two searches at the same time.
+ */
+public class SearchWorkspace {
+  private double[] distances;
+  private int[] parents;
+  private int[] touchedAt;
+  private int[] settledAt;
+  private int[] targetAt;
+  private int[] settledOrder;
+  private int epoch;
+  private int settledCount;
+  private long settledTotal;
+  private long relaxTotal;
+  private IndexedMinHeap heap;
+
+  public SearchWorkspace() {
+    this(16);
+  }
+
+  public SearchWorkspace(int capacity) {
+    distances = new double[capacity];
+    parents = new int[capacity];
+    touchedAt = new int[capacity];
+    settledAt = new int[capacity];
+    targetAt = new int[capacity];
+    settledOrder = new int[capacity];
+    heap = new IndexedMinHeap(capacity);
+  }
+
+  /**
+   * Forget the previous search and make room for ids up to capacity - 1.
+   * @param capacity the number of ids
+   */
+  public void reset(int capacity) {
+    if (capacity > touchedAt.length) {
+      int size = Math.max(capacity, touchedAt.length + (touchedAt.length >> 1));
+      distances = new double[size];
+      parents = new int[size];
+      touchedAt = new int[size];
+      settledAt = new int[size];
+      targetAt = new int[size];
+      settledOrder = new int[size];
+      // grow the heap in place so its operation counts carry on
+      heap.ensureCapacity(size);
+      epoch = 0;
+    }
+    heap.clear();
+    settledCount = 0;
+    epoch++;
+    if (epoch == Integer.MAX_VALUE) {
+      Arrays.fill(touchedAt, 0);
+      Arrays.fill(settledAt, 0);
+      Arrays.fill(targetAt, 0);
+      epoch = 1;
+    }
+  }
+
+  /**
+   * @param id the node id
+   * @return the tentative distance of the node, or Double.MAX_VALUE if it was not reached yet
+   */
+  public double getDistance(int id) {
+    return touchedAt[id] == epoch ? distances[id] : Double.MAX_VALUE;
+  }
+
+  /**
+   * @param id the node id
+   * @return the id of the node the best known path comes from, or -1
+   */
+  public int getParent(int id) {
+    return touchedAt[id] == epoch ? parents[id] : -1;
+  }
+
+  public boolean isSettled(int id) {
+    return settledAt[id] == epoch;
+  }
+
+  public boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  /**
+   * @return the number of nodes settled since the search started
+   */
+  public int getSettledCount() {
+    return settledCount;
+  }
+
+  /**
+   * The work done by every search on this workspace so far. Take the difference of two snapshots
+   * for the work of the searches in between.
+   * @return the counts
+   */
+  public SearchCounts counts() {
+    return SearchCounts.of(settledTotal, relaxTotal, heap);
+  }
+
+  /**
+   * @return the ids of the nodes settled since the search started, in the order they were settled
+   */
+  public int[] settledIds() {
+    return Arrays.copyOf(settledOrder, settledCount);
+  }
+
+  /**
+   * @return the smallest key on the frontier, which is the tentative distance unless the search
+   *     queues nodes by another key
+   */
+  public double peekDistance() {
+    return heap.peekKey();
+  }
+
+  /**
+   * Record a path of the given length to the node if it is shorter than the known one.
+   * @return true if the distance improved
+   */
+  public boolean relax(int id, double distance, int parent) {
+    return relax(id, distance, parent, distance);
+  }
+
+  /**
+   * Record a path of the given length to the node if it is shorter than the known one, queueing
+   * the node by a separate key such as distance plus an A* estimate.
+   * @return true if the distance improved
+   */
+  public boolean relax(int id, double distance, int parent, double key) {
+    relaxTotal++;
+    if (distance >= getDistance(id)) {
+      return false;
+    }
+    touchedAt[id] = epoch;
+    distances[id] = distance;
+    parents[id] = parent;
+    heap.push(id, key);
+    return true;
+  }
+
+  /**
+   * Remove the closest node from the frontier and mark it settled, without relaxing its edges.
+   * This lets a caller relax the edges itself, e.g. the into edges of a backward search.
+   * @return the id of the settled node
+   */
+  public int pop() {
+    int current = heap.pop();
+    if (settledAt[current] != epoch) {
+      settledAt[current] = epoch;
+      settledOrder[settledCount++] = current;
+      settledTotal++;
+    }
+    return current;
+  }
+
+  /**
+   * Start a search from the source node of the given graph.
+   */
+  public void start(Graph graph, int source) {
+    reset(graph.nodeCount());
+    relax(source, 0.0, -1);
+  }
+
+  /**
+   * Settle the closest node on the frontier and relax its out edges, skipping masked nodes and
+   * edges.
+   * @param mask the nodes and edges to skip, or null
+   * @return the id of the settled node
+   */
+  public int settleNext(Graph graph, SearchMask mask) {
+    int current = pop();
+    double currentDistance = distances[current];
+    List<Edge> edges = graph.getNode(current).getEdges();
+    for (int i = 0; i < edges.size(); i++) {
+      Edge edge = edges.get(i);
+      int dest = graph.indexOf(edge.getDestNode());
+      if (dest < 0 || settledAt[dest] == epoch) {
+        continue;
+      }
+      if (mask != null && (mask.isNodeBlocked(dest) || mask.isEdgeBlocked(edge))) {
+        continue;
+      }
+      relax(dest, currentDistance + edge.getWeight(), current);
+    }
+    return current;
+  }
+
+  /**
+   * Run dijkstra from source until target is settled.
+   * @param mask the nodes and edges to skip, or null
+   * @return the distance to target, or Double.MAX_VALUE if it cannot be reached
+   */
+  public double search(Graph graph, int source, int target, SearchMask mask) {
+    start(graph, source);
+    while (!heap.isEmpty()) {
+      if (settleNext(graph, mask) == target) {
+        return distances[target];
+      }
+    }
+    return Double.MAX_VALUE;
+  }
+
+  /**
+   * Run dijkstra from source until every reachable node is settled.
+   * @param reverse follow into edges instead of out edges, giving distances to the source
+   */
+  public void settleAll(Graph graph, int source, boolean reverse) {
+    start(graph, source);
+    while (!heap.isEmpty()) {
+      if (!reverse) {
+        settleNext(graph, null);
+        continue;
+      }
+      int current = pop();
+      double currentDistance = distances[current];
+      List<Edge> edges = graph.getNode(current).getIntoEdges();
+      for (int i = 0; i < edges.size(); i++) {
+        Edge edge = edges.get(i);
+        int next = graph.indexOf(edge.getSourceNode());
+        if (next >= 0 && settledAt[next] != epoch) {
+          relax(next, currentDistance + edge.getWeight(), current);
+        }
+      }
+    }
+  }
+
+  /**
+   * Run A* from source until target is settled. Nodes are queued by distance plus the heuristic
+   * estimate of the rest of the way, so the search leans towards the target.
+   * @param mask the nodes and edges to skip, or null
+   * @return the distance to target, or Double.MAX_VALUE if it cannot be reached
+   */
+  public double searchAStar(Graph graph, int source, int target, Heuristic heuristic, SearchMask mask) {
+    start(graph, source);
+    while (!heap.isEmpty()) {
+      int current = pop();
+      if (current == target) {
+        return distances[target];
+      }
+      double currentDistance = distances[current];
+      List<Edge> edges = graph.getNode(current).getEdges();
+      for (int i = 0; i < edges.size(); i++) {
+        Edge edge = edges.get(i);
+        int dest = graph.indexOf(edge.getDestNode());
+        if (dest < 0 || settledAt[dest] == epoch) {
+          continue;
+        }
+        if (mask != null && (mask.isNodeBlocked(dest) || mask.isEdgeBlocked(edge))) {
+          continue;
+        }
+        double distance = currentDistance + edge.getWeight();
+        if (distance < getDistance(dest)) {
+          relax(dest, distance, current, distance + heuristic.estimate(graph, dest, target));
+        }
+      }
+    }
+    return Double.MAX_VALUE;
+  }
+
+  /**
+   * Run dijkstra from source until every target is settled, or nothing else can be reached.
+   * @param mask the nodes and edges to skip, or null
+   * @return the number of distinct targets reached
+   */
+  public int searchAll(Graph graph, int source, int[] targets, SearchMask mask) {
+    start(graph, source);
+    int remaining = markTargets(targets);
+    int reached = remaining;
+    while (remaining > 0 && !heap.isEmpty()) {
+      if (targetAt[settleNext(graph, mask)] == epoch) {
+        remaining--;
+      }
+    }
+    return reached - remaining;
+  }
+
+  private int markTargets(int[] targets) {
+    int count = 0;
+    for (int target : targets) {
+      if (targetAt[target] != epoch) {
+        targetAt[target] = epoch;
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Start a search from the source node of the given compact graph.
+   */
+  public void start(CsrGraph graph, int source) {
+    reset(graph.nodeCount());
+    relax(source, 0.0, -1);
+  }
+
+  /**
+   * Settle the closest node on the frontier and relax its out edges, skipping masked nodes and
+   * edges.
+   * @param mask the nodes and edges to skip, or null
+   * @return the id of the settled node
+   */
+  public int settleNext(CsrGraph graph, SearchMask mask) {
+    int current = pop();
+    double currentDistance = distances[current];
+    for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+      int dest = graph.target(e);
+      if (settledAt[dest] == epoch) {
+        continue;
+      }
+      if (mask != null && (mask.isNodeBlocked(dest) || mask.isEdgeBlocked(e))) {
+        continue;
+      }
+      relax(dest, currentDistance + graph.weight(e), current);
+    }
+    return current;
+  }
+
+  /**
+   * Run dijkstra on the compact graph from source until target is settled.
+   * @param mask the nodes and edges to skip, or null
+   * @return the distance to target, or Double.MAX_VALUE if it cannot be reached
+   */
+  public double search(CsrGraph graph, int source, int target, SearchMask mask) {
+    start(graph, source);
+    while (!heap.isEmpty()) {
+      if (settleNext(graph, mask) == target) {
+        return distances[target];
+      }
+    }
+    return Double.MAX_VALUE;
+  }
+
+  /**
+   * Run dijkstra on the compact graph from source until every target is settled, or nothing else
+   * can be reached.
+   * @param mask the nodes and edges to skip, or null
+   * @return the number of distinct targets reached
+   */
+  public int searchAll(CsrGraph graph, int source, int[] targets, SearchMask mask) {
+    start(graph, source);
+    int remaining = markTargets(targets);
+    int reached = remaining;
+    while (remaining > 0 && !heap.isEmpty()) {
+      if (targetAt[settleNext(graph, mask)] == epoch) {
+        remaining--;
+      }
+    }
+    return reached - remaining;
+  }
+
+  /**
+   * @return the ids on the best known path from the source to target, or null if target was not
+   *     reached
+   */
+  public int[] pathIds(int target) {
+    if (getDistance(target) == Double.MAX_VALUE) {
+      return null;
+    }
+    int length = 0;
+    for (int id = target; id >= 0; id = parents[id]) {
+      length++;
+    }
+    int[] path = new int[length];
+    for (int id = target; id >= 0; id = parents[id]) {
+      path[--length] = id;
+    }
+    return path;
+  }
+
+  /**
+   * @return the nodes on the best known path from the source to target, or null if target was not
+   *     reached
+   */
+  public List<Node> path(Graph graph, int target) {
+    if (getDistance(target) == Double.MAX_VALUE) {
+      return null;
+    }
+    List<Node> path = new ArrayList<>();
+    for (int id = target; id >= 0; id = parents[id]) {
+      path.add(graph.getNode(id));
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * @return the nodes on the best known path from the source to target, or null if target was not
+   *     reached
+   */
+  public List<Node> path(CsrGraph graph, int target) {
+    int[] ids = pathIds(target);
+    return ids == null ? null : graph.toNodes(ids);
+  }
+}
@@ -0,0 +1,96 @@
+package models;
+
+import java.util.List;
+
+/**
+ * ShortestPathTree answers many queries from one source node with a single resumable dijkstra.
+ * The search only runs as far as the queried node; its settled nodes, parents and frontier are
+ * kept, so a later query for a node already settled costs nothing and a query for a farther node
+ * continues from where the last one stopped.
+ *
+ * <p>If the graph changes, the next query starts the search over, or fails if the source node
+ * itself was removed. Queries are synchronized, so a tree can be shared by several threads.
+ */
+public class ShortestPathTree {
+  private final Graph graph;
+  private final Node source;
+  private final SearchWorkspace workspace;
+  private long version;
+
+  /**
+   * @param graph  the graph
+   * @param source the source node
+   */
+  public ShortestPathTree(Graph graph, Node source) {
+    if (graph.indexOf(source) < 0) {
+      throw new IllegalArgumentException(String.format("The node <%s> is not in the graph.", source.getName()));
+    }
+    this.graph = graph;
+    this.source = source;
+    this.workspace = new SearchWorkspace(graph.nodeCount());
+    restart();
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  public Node getSource() {
+    return source;
+  }
+
+  /**
+   * @param target the target node
+   * @return the shortest distance from the source, or Double.MAX_VALUE if it cannot be reached
+   * @throws IllegalStateException if the source was removed from the graph
+   */
+  public synchronized double distanceTo(Node target) {
+    int id = settle(target);
+    return id < 0 ? Double.MAX_VALUE : workspace.getDistance(id);
+  }
+
+  /**
+   * @param target the target node
+   * @return the nodes on the shortest path from the source, or null if there is none
+   * @throws IllegalStateException if the source was removed from the graph
+   */
+  public synchronized List<Node> pathTo(Node target) {
+    int id = settle(target);
+    return id < 0 ? null : workspace.path(graph, id);
+  }
+
+  /**
+   * @return the number of nodes settled so far
+   */
+  public synchronized int getSettledCount() {
+    return workspace.getSettledCount();
+  }
+
+  /**
+   * Run the search on until target is settled.
+   * @return the id of target, or -1 if it cannot be reached
+   */
+  private int settle(Node target) {
+    if (graph.getVersion() != version) {
+      restart();
+    }
+    int id = graph.indexOf(target);
+    if (id < 0) {
+      return -1;
+    }
+    while (!workspace.isSettled(id) && !workspace.isEmpty()) {
+      workspace.settleNext(graph, null);
+    }
+    return workspace.isSettled(id) ? id : -1;
+  }
+
+  private void restart() {
+    long current = graph.getVersion();
+    int id = graph.indexOf(source);
+    if (id < 0) {
+      throw new IllegalStateException(String.format("The source <%s> was removed from the graph.", source.getName()));
+    }
+    workspace.start(graph, id);
+    version = current;
+  }
+}
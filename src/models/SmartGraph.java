@@ -1,29 +1,72 @@
 package models;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
- * Smartgraph represents a digraph with its shortest path for the specific problem.
+ * Smartgraph represents a digraph with its shortest path for the specific problem. It is
+ * immutable: the path is an unmodifiable view, so a result can be cached and shared freely.
+ *
+ * <p>Results of the searches on a CsrGraph carry no graph, only the path, so a query never builds
+ * Node and Edge objects for the whole graph. withGraph attaches one that is built on first use.
  */
 public class SmartGraph {
-  private Graph graph;
-  private List<Node> path;
+  private final Supplier<Graph> source;
+  private volatile Graph graph;
+  private final List<Node> path;
+  private final double cost;
 
   public SmartGraph(Graph graph, List<Node> path) {
+    this(graph, path, Double.MAX_VALUE);
+  }
+
+  public SmartGraph(Graph graph, List<Node> path, double cost) {
+    this.source = null;
     this.graph = graph;
+    this.path = path == null ? null : Collections.unmodifiableList(path);
+    this.cost = cost;
+  }
+
+  private SmartGraph(Supplier<Graph> source, List<Node> path, double cost) {
+    this.source = source;
     this.path = path;
+    this.cost = cost;
   }
 
-  public Graph getGraph() {
-    return graph;
+  /**
+   * @param graph builds the graph, on the first call of getGraph
+   * @return this result with a graph attached, e.g. for visualization
+   */
+  public SmartGraph withGraph(Supplier<Graph> graph) {
+    return new SmartGraph(graph, path, cost);
   }
 
-  public void setGraph(Graph g) {
-    this.graph = g;
+  /**
+   * @return the graph, or null if the result carries none
+   */
+  public Graph getGraph() {
+    Graph result = graph;
+    if (result == null && source != null) {
+      synchronized (this) {
+        if (graph == null) {
+          graph = source.get();
+        }
+        result = graph;
+      }
+    }
+    return result;
   }
 
   public List<Node> getPath() {
     return path;
   }
+
+  /**
+   * @return the cost of the path, or Double.MAX_VALUE if there is no path
+   */
+  public double getCost() {
+    return cost;
+  }
 }
@@ -0,0 +1,196 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * WaypointSolver picks the order in which to visit must go nodes. It works on a distance matrix
+ * where index 0 is the start, 1 to k are the waypoints and k + 1 is the end. Small sets are
+ * solved exactly with Held-Karp dynamic programming; larger ones start from a nearest neighbour
+ * order that is improved with 2-opt and Or-opt moves until no move helps.
+ */
+public class WaypointSolver {
+  /**
+   * The largest number of waypoints solved exactly. Held-Karp needs O(2^k * k) memory and
+   * O(2^k * k^2) time.
+   */
+  public static final int HELD_KARP_LIMIT = 13;
+
+  private static final double EPSILON = 1e-9;
+
+  /**
+   * Find the cheapest order to visit all waypoints on the way from start to end.
+   * @param distances the (k + 2) x (k + 2) distance matrix
+   * @return the waypoint indexes, 1 to k, in visiting order
+   */
+  public static int[] solve(double[][] distances) {
+    int k = distances.length - 2;
+    if (k <= 0) {
+      return new int[0];
+    }
+    if (k <= HELD_KARP_LIMIT) {
+      return heldKarp(distances, k);
+    }
+    int[] order = nearestNeighbour(distances, k);
+    boolean improved = true;
+    while (improved) {
+      improved = twoOpt(distances, order) | orOpt(distances, order);
+    }
+    return order;
+  }
+
+  /**
+   * @return the total distance of visiting the waypoints in the given order
+   */
+  public static double cost(double[][] distances, int[] order) {
+    int end = distances.length - 1;
+    double total = 0;
+    int prev = 0;
+    for (int waypoint : order) {
+      total += distances[prev][waypoint];
+      prev = waypoint;
+    }
+    return total + distances[prev][end];
+  }
+
+  private static int[] heldKarp(double[][] d, int k) {
+    int full = (1 << k) - 1;
+    double[][] best = new double[1 << k][k];
+    int[][] previous = new int[1 << k][k];
+    for (double[] row : best) {
+      Arrays.fill(row, Double.POSITIVE_INFINITY);
+    }
+    for (int j = 0; j < k; j++) {
+      best[1 << j][j] = d[0][j + 1];
+      previous[1 << j][j] = -1;
+    }
+
+    for (int set = 1; set <= full; set++) {
+      for (int j = 0; j < k; j++) {
+        double cost = best[set][j];
+        if ((set & (1 << j)) == 0 || cost == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        for (int next = 0; next < k; next++) {
+          if ((set & (1 << next)) != 0) {
+            continue;
+          }
+          int nextSet = set | (1 << next);
+          double candidate = cost + d[j + 1][next + 1];
+          if (candidate < best[nextSet][next]) {
+            best[nextSet][next] = candidate;
+            previous[nextSet][next] = j;
+          }
+        }
+      }
+    }
+
+    int last = 0;
+    double bestCost = Double.POSITIVE_INFINITY;
+    for (int j = 0; j < k; j++) {
+      double cost = best[full][j] + d[j + 1][k + 1];
+      if (cost < bestCost) {
+        bestCost = cost;
+        last = j;
+      }
+    }
+
+    int[] order = new int[k];
+    int set = full;
+    for (int i = k - 1; i >= 0; i--) {
+      order[i] = last + 1;
+      int prev = previous[set][last];
+      set &= ~(1 << last);
+      last = prev;
+    }
+    return order;
+  }
+
+  private static int[] nearestNeighbour(double[][] d, int k) {
+    int[] order = new int[k];
+    boolean[] used = new boolean[k + 1];
+    int prev = 0;
+    for (int i = 0; i < k; i++) {
+      int next = -1;
+      for (int j = 1; j <= k; j++) {
+        if (!used[j] && (next < 0 || d[prev][j] < d[prev][next])) {
+          next = j;
+        }
+      }
+      used[next] = true;
+      order[i] = next;
+      prev = next;
+    }
+    return order;
+  }
+
+  /**
+   * Reverse a segment of the order when that makes it cheaper. Distances may be asymmetric, so
+   * every candidate is priced in full.
+   */
+  private static boolean twoOpt(double[][] d, int[] order) {
+    boolean improved = false;
+    double current = cost(d, order);
+    for (int i = 0; i < order.length - 1; i++) {
+      for (int j = i + 1; j < order.length; j++) {
+        reverse(order, i, j);
+        double candidate = cost(d, order);
+        if (candidate < current - EPSILON) {
+          current = candidate;
+          improved = true;
+        } else {
+          reverse(order, i, j);
+        }
+      }
+    }
+    return improved;
+  }
+
+  /**
+   * Move a run of one to three waypoints to another position when that makes the order cheaper.
+   */
+  private static boolean orOpt(double[][] d, int[] order) {
+    boolean improved = false;
+    double current = cost(d, order);
+    int[] candidate = new int[order.length];
+    for (int length = 1; length <= 3 && length < order.length; length++) {
+      for (int from = 0; from + length <= order.length; from++) {
+        for (int to = 0; to <= order.length - length; to++) {
+          if (to == from) {
+            continue;
+          }
+          move(order, candidate, from, length, to);
+          double cost = cost(d, candidate);
+          if (cost < current - EPSILON) {
+            System.arraycopy(candidate, 0, order, 0, order.length);
+            current = cost;
+            improved = true;
+          }
+        }
+      }
+    }
+    return improved;
+  }
+
+  private static void reverse(int[] order, int i, int j) {
+    while (i < j) {
+      int temp = order[i];
+      order[i++] = order[j];
+      order[j--] = temp;
+    }
+  }
+
+  /**
+   * Copy order into result with the run [from, from + length) taken out and inserted so that it
+   * starts at index to.
+   */
+  private static void move(int[] order, int[] result, int from, int length, int to) {
+    int n = 0;
+    for (int i = 0; i < order.length; i++) {
+      if (i < from || i >= from + length) {
+        result[n++] = order[i];
+      }
+    }
+    System.arraycopy(result, to, result, to + length, order.length - length - to);
+    System.arraycopy(order, from, result, to, length);
+  }
+}
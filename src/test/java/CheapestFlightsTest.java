@@ -0,0 +1,75 @@
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import models.CsrGraph;
+import models.Edge;
+import models.Graph;
+import models.Node;
+import models.RandomGraphs;
+import models.SmartGraph;
+
+/**
+ * The cheapest flights engines against a Bellman-Ford reference limited to X + 1 flights.
+ */
+class CheapestFlightsTest {
+  private static final int CITIES = 200;
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 2, 5, CITIES, Integer.MAX_VALUE})
+  void bothEnginesMatchTheReference(int stops) {
+    Graph graph = RandomGraphs.graph(91, CITIES, 3 * CITIES, 50, 0.05, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    DijkstraAppsService service = new DijkstraAppsService();
+    for (int source = 0; source < CITIES; source += 37) {
+      double[] expected = limited(graph, graph.getNode(source), stops);
+      for (int target = 0; target < CITIES; target += 11) {
+        Node start = graph.getNode(source);
+        Node end = graph.getNode(target);
+        for (SmartGraph route : new SmartGraph[] {
+                service.findCheapestPriceByStates(csr, csr.indexOf(start), csr.indexOf(end), stops),
+                service.findCheapestPrice(csr, csr.indexOf(start), csr.indexOf(end), stops)}) {
+          assertRoute(graph, expected[target], start, end, route.getCost(), route.getPath());
+          assertTrue(route.getPath() == null || route.getPath().size() - 2 <= stops, "too many stops");
+        }
+      }
+    }
+  }
+
+  @Test
+  void negativeStopsAreRejected() {
+    CsrGraph csr = CsrGraph.fromGraph(RandomGraphs.graph(92, 20, 60, 9, 0, false));
+    DijkstraAppsService service = new DijkstraAppsService();
+    assertNull(service.findCheapestPriceByStates(csr, 0, 1, -1).getPath());
+    assertNull(service.findCheapestPrice(csr, 0, 1, -1).getPath());
+  }
+
+  /**
+   * Bellman-Ford rounds that each take one more flight, from the costs of the round before.
+   */
+  private static double[] limited(Graph graph, Node source, int stops) {
+    double[] cost = new double[graph.nodeCount()];
+    Arrays.fill(cost, Double.MAX_VALUE);
+    cost[graph.indexOf(source)] = 0;
+    for (int round = 0; round <= Math.min(stops, graph.nodeCount()); round++) {
+      double[] prev = cost.clone();
+      for (Node node : graph.getNodes()) {
+        double price = prev[graph.indexOf(node)];
+        if (price == Double.MAX_VALUE) {
+          continue;
+        }
+        for (Edge edge : node.getEdges()) {
+          int v = graph.indexOf(edge.getDestNode());
+          cost[v] = Math.min(cost[v], price + edge.getWeight());
+        }
+      }
+    }
+    return cost;
+  }
+}
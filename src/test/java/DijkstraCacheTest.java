@@ -0,0 +1,126 @@
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import models.Edge;
+import models.Graph;
+import models.Node;
+import models.RandomGraphs;
+import models.SmartGraph;
+
+class DijkstraCacheTest {
+  private static final int NODES = 200;
+
+  @Test
+  void repeatedQueriesHitTheSameResult() {
+    Graph graph = RandomGraphs.graph(111, NODES, 4 * NODES, 9, 0, false);
+    DijkstraCache cache = new DijkstraCache(new DijkstraService(), 10);
+    Node start = graph.getNode(0);
+    Node end = graph.getNode(1);
+
+    SmartGraph first = cache.dijkstraBase(graph, start, end);
+    assertSame(first, cache.dijkstraBase(graph, start, end));
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+
+    // bypass and must go sets are keyed as sets
+    Node a = graph.getNode(2);
+    Node b = graph.getNode(3);
+    SmartGraph bypass = cache.dijkstraBypass(graph, start, end, List.of(a, b));
+    assertSame(bypass, cache.dijkstraBypass(graph, start, end, List.of(b, a)));
+    SmartGraph mustGo = cache.dijkstraMustGo(graph, start, end, List.of(a, b));
+    assertSame(mustGo, cache.dijkstraMustGo(graph, start, end, List.of(b, a)));
+    assertNotSame(bypass, mustGo);
+    assertEquals(3, cache.getMisses());
+    assertEquals(3, cache.getHits());
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  void theLeastRecentlyUsedEntryIsEvicted() {
+    Graph graph = RandomGraphs.graph(112, NODES, 4 * NODES, 9, 0, false);
+    DijkstraCache cache = new DijkstraCache(new DijkstraService(), 2);
+    Node start = graph.getNode(0);
+    SmartGraph a = cache.dijkstraBase(graph, start, graph.getNode(1));
+    cache.dijkstraBase(graph, start, graph.getNode(2));
+    assertSame(a, cache.dijkstraBase(graph, start, graph.getNode(1)));
+    cache.dijkstraBase(graph, start, graph.getNode(3));
+
+    assertEquals(1, cache.getEvictions());
+    assertEquals(2, cache.size());
+    assertSame(a, cache.dijkstraBase(graph, start, graph.getNode(1)));
+    long misses = cache.getMisses();
+    cache.dijkstraBase(graph, start, graph.getNode(2));
+    assertEquals(misses + 1, cache.getMisses());
+    assertEquals(2, cache.getEvictions());
+  }
+
+  @Test
+  void weightChangesInvalidate() {
+    checkInvalidation(graph -> {
+      Edge edge = firstEdgeOfRoute(graph);
+      edge.setWeight(edge.getWeight() + 100);
+    });
+  }
+
+  @Test
+  void addedEdgesInvalidate() {
+    checkInvalidation(graph -> graph.addEdges(new Edge(graph.getNode(0), graph.getNode(1), 0)));
+  }
+
+  @Test
+  void removedEdgesInvalidate() {
+    checkInvalidation(graph -> graph.removeEdges(secondNodeOfRoute(graph)));
+  }
+
+  @Test
+  void removedNodesInvalidate() {
+    checkInvalidation(graph -> graph.removeNode(secondNodeOfRoute(graph)));
+  }
+
+  /**
+   * Query node 0 to node 1, change the graph so that the route changes, and query again: the
+   * second answer must be a miss that matches the changed graph.
+   */
+  private static void checkInvalidation(Consumer<Graph> change) {
+    Graph graph = RandomGraphs.graph(113, NODES, 4 * NODES, 9, 0, false);
+    DijkstraCache cache = new DijkstraCache(new DijkstraService(), 10);
+    Node start = graph.getNode(0);
+    Node end = graph.getNode(1);
+    SmartGraph before = cache.dijkstraBase(graph, start, end);
+    assertSame(before, cache.dijkstraBase(graph, start, end));
+
+    change.accept(graph);
+    SmartGraph after = cache.dijkstraBase(graph, start, end);
+    assertNotSame(before, after);
+    assertEquals(2, cache.getMisses());
+    double expected = RandomGraphs.distances(graph, start)[graph.indexOf(end)];
+    assertRoute(graph, expected, start, end, after.getCost(), after.getPath());
+  }
+
+  private static Edge firstEdgeOfRoute(Graph graph) {
+    Node second = secondNodeOfRoute(graph);
+    for (Edge edge : graph.getNode(0).getEdges()) {
+      if (edge.getDestNode() == second) {
+        return edge;
+      }
+    }
+    throw new AssertionError("the route does not start with an edge");
+  }
+
+  /**
+   * The seed is picked so that node 1 is at least two edges from node 0.
+   */
+  private static Node secondNodeOfRoute(Graph graph) {
+    List<Node> path = new DijkstraService().dijkstraBase(graph, graph.getNode(0), graph.getNode(1)).getPath();
+    assertTrue(path.size() > 2, "the route is too short");
+    return path.get(1);
+  }
+}
@@ -0,0 +1,192 @@
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import models.CsrGraph;
+import models.Graph;
+import models.RandomGraphs;
+import models.SmartGraph;
+
+/**
+ * Batches POSTed to a DijkstraServer on the loopback interface.
+ */
+class DijkstraServerTest {
+  private static final int NODES = 200;
+
+  @Test
+  void answersEveryQueryOfAMixedBatch() throws IOException {
+    Graph graph = RandomGraphs.graph(91, NODES, 4 * NODES, 9, 0.1, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    DijkstraServer server = new DijkstraServer(csr, 0, 2, 3);
+    server.start();
+    try {
+      Random random = new Random(92);
+      List<String> queries = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        queries.add(query("base" + i, "DIJKSTRA_BASE", random.nextInt(NODES), random.nextInt(NODES), ""));
+      }
+      queries.add(query("must", "MUST_GO", 0, 1, ",\"nodes\":[\"2\",\"3\",\"4\"]"));
+      queries.add(query("must-end", "MUST_GO", 0, 1, ",\"nodes\":[\"2\",\"1\"]"));
+      queries.add(query("bypass", "BYPASSING", 0, 1, ",\"nodes\":[\"2\"]"));
+      queries.add(query("bypass-start", "BYPASSING", 0, 1, ",\"nodes\":[\"0\"]"));
+      queries.add(query("stops-huge", "CHEAPEST_FLIGHTS", 0, 1, ",\"stops\":1e9"));
+      queries.add(query("stops-negative", "CHEAPEST_FLIGHTS", 0, 1, ",\"stops\":-1"));
+      queries.add(query("stops-fraction", "CHEAPEST_FLIGHTS", 0, 1, ",\"stops\":1.5"));
+      queries.add(query("stops-missing", "CHEAPEST_FLIGHTS", 0, 1, ""));
+      queries.add("{\"id\":\"unknown-node\",\"type\":\"DIJKSTRA_BASE\",\"start\":\"nowhere\",\"end\":\"1\"}");
+      queries.add("{\"id\":\"unknown-type\",\"type\":\"TELEPORT\",\"start\":\"0\",\"end\":\"1\"}");
+      queries.add("{\"id\":\"delay\",\"type\":\"NETWORK_DELAY\",\"start\":\"0\"}");
+      Map<String, Map<?, ?>> lines = post(server.getPort(), "[" + String.join(",", queries) + "]");
+      assertEquals(queries.size(), lines.size());
+
+      for (int i = 0; i < 30; i++) {
+        Map<?, ?> query = (Map<?, ?>) DijkstraServer.Json.parse(queries.get(i));
+        int start = Integer.parseInt((String) query.get("start"));
+        int end = Integer.parseInt((String) query.get("end"));
+        assertAnswer(graph, RandomGraphs.distances(graph, graph.getNode(start))[end], start, end,
+                lines.get("base" + i));
+      }
+      // the CSR copy numbers the nodes its own way
+      int start = csr.indexOf("0");
+      int end = csr.indexOf("1");
+      DijkstraService service = new DijkstraService();
+      SmartGraph mustGo = service.dijkstraMustGo(csr, start, end,
+              new int[] {csr.indexOf("2"), csr.indexOf("3"), csr.indexOf("4")});
+      assertAnswer(graph, mustGo.getPath() == null ? Double.MAX_VALUE : mustGo.getCost(), 0, 1, lines.get("must"));
+      SmartGraph bypass = service.dijkstraBypass(csr, start, end, new int[] {csr.indexOf("2")});
+      assertAnswer(graph, bypass.getPath() == null ? Double.MAX_VALUE : bypass.getCost(), 0, 1, lines.get("bypass"));
+      SmartGraph flights = new DijkstraAppsService().findCheapestPrice(csr, start, end, NODES - 1);
+      assertAnswer(graph, flights.getPath() == null ? Double.MAX_VALUE : flights.getCost(), 0, 1,
+              lines.get("stops-huge"));
+      assertFalse(lines.get("delay").containsKey("error"));
+
+      for (String id : List.of("must-end", "bypass-start", "stops-negative", "stops-fraction", "stops-missing",
+              "unknown-node", "unknown-type")) {
+        Map<?, ?> line = lines.get(id);
+        assertTrue(line.get("error") instanceof String, id + " was answered with " + line);
+        assertFalse(line.containsKey("path"), id);
+      }
+      assertEquals(1, server.getMetrics().get(ProblemType.MUST_GO).getRejected());
+      assertEquals(1, server.getMetrics().get(ProblemType.BYPASSING).getRejected());
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * With room for one query at a time, concurrent batches wait for admission and still get a
+   * line for every query.
+   */
+  @Test
+  void fullAdmissionDelaysButAnswersEveryQuery() throws Exception {
+    Graph graph = RandomGraphs.graph(93, NODES, 4 * NODES, 9, 0, false);
+    DijkstraServer server = new DijkstraServer(CsrGraph.fromGraph(graph), 0, 1, 1);
+    server.start();
+    ExecutorService clients = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<Map<String, Map<?, ?>>>> batches = new ArrayList<>();
+      for (int client = 0; client < 3; client++) {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+          queries.add(query(client + "-" + i, "DIJKSTRA_BASE", i, (7 * i + client) % NODES, ""));
+        }
+        String batch = "[" + String.join(",", queries) + "]";
+        batches.add(clients.submit(() -> post(server.getPort(), batch)));
+      }
+      for (int client = 0; client < 3; client++) {
+        Map<String, Map<?, ?>> lines = batches.get(client).get();
+        assertEquals(40, lines.size());
+        for (int i = 0; i < 40; i++) {
+          int end = (7 * i + client) % NODES;
+          assertAnswer(graph, RandomGraphs.distances(graph, graph.getNode(i))[end], i, end,
+                  lines.get(client + "-" + i));
+        }
+      }
+      assertEquals(120, server.getMetrics().get(ProblemType.DIJKSTRA_BASE).getQueries());
+    } finally {
+      clients.shutdown();
+      server.stop();
+    }
+  }
+
+  @Test
+  void rejectsABatchThatIsNotAnArray() throws IOException {
+    DijkstraServer server = new DijkstraServer(CsrGraph.fromGraph(RandomGraphs.graph(94, 10, 20, 9, 0, false)),
+            0, 1, 1);
+    server.start();
+    try {
+      HttpURLConnection connection = send(server.getPort(), "{\"id\":\"a\"}");
+      assertEquals(400, connection.getResponseCode());
+      connection.disconnect();
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static String query(String id, String type, int start, int end, String extra) {
+    return String.format("{\"id\":\"%s\",\"type\":\"%s\",\"start\":\"%d\",\"end\":\"%d\"%s}", id, type, start, end,
+            extra);
+  }
+
+  private static void assertAnswer(Graph graph, double expected, int start, int end, Map<?, ?> line) {
+    assertNull(line.get("error"), String.valueOf(line.get("error")));
+    List<?> names = (List<?>) line.get("path");
+    int[] ids = null;
+    if (names != null) {
+      ids = new int[names.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = Integer.parseInt((String) names.get(i));
+      }
+    }
+    Object cost = line.get("cost");
+    assertRoute(graph, expected, start, end, cost == null ? Double.MAX_VALUE : (Double) cost, ids);
+  }
+
+  /**
+   * POST a batch and read the result lines by id, failing on an id answered twice.
+   */
+  private static Map<String, Map<?, ?>> post(int port, String batch) throws IOException {
+    HttpURLConnection connection = send(port, batch);
+    assertEquals(200, connection.getResponseCode());
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (InputStream in = connection.getInputStream()) {
+      in.transferTo(body);
+    }
+    Map<String, Map<?, ?>> lines = new HashMap<>();
+    for (String line : body.toString(StandardCharsets.UTF_8).split("\n")) {
+      Map<?, ?> result = (Map<?, ?>) DijkstraServer.Json.parse(line);
+      assertNull(lines.put((String) result.get("id"), result), "two lines for " + result.get("id"));
+    }
+    return lines;
+  }
+
+  private static HttpURLConnection send(int port, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/batch").openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return connection;
+  }
+}
@@ -0,0 +1,116 @@
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import models.CsrGraph;
+import models.Graph;
+import models.Node;
+import models.RandomGraphs;
+import models.SmartGraph;
+
+/**
+ * Must go routes on both graph types against the best order found by trying every permutation.
+ */
+class DijkstraServiceMustGoTest {
+  private static final int NODES = 300;
+  private static final int WAYPOINTS = 5;
+
+  @Test
+  void bothGraphTypesFindTheCheapestOrder() {
+    Graph graph = RandomGraphs.graph(81, NODES, 4 * NODES, 20, 0.1, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    DijkstraService service = new DijkstraService();
+    Random random = new Random(82);
+    for (int query = 0; query < 20; query++) {
+      List<Integer> points = new ArrayList<>();
+      while (points.size() < WAYPOINTS + 2) {
+        int id = random.nextInt(NODES);
+        if (!points.contains(id)) {
+          points.add(id);
+        }
+      }
+      Node start = graph.getNode(points.get(0));
+      Node end = graph.getNode(points.get(1));
+      List<Node> mustGo = new ArrayList<>();
+      int[] mustGoIds = new int[WAYPOINTS];
+      for (int i = 0; i < WAYPOINTS; i++) {
+        mustGo.add(graph.getNode(points.get(i + 2)));
+        mustGoIds[i] = csr.indexOf(mustGo.get(i));
+      }
+      double expected = bestOrder(graph, start, end, mustGo);
+
+      SmartGraph route = service.dijkstraMustGo(graph, start, end, mustGo);
+      assertRoute(graph, expected, start, end, route.getCost(), route.getPath());
+      assertVisits(mustGo, route.getPath());
+
+      SmartGraph compact = service.dijkstraMustGo(csr, csr.indexOf(start), csr.indexOf(end), mustGoIds);
+      assertRoute(graph, expected, start, end, compact.getCost(), compact.getPath());
+      assertVisits(mustGo, compact.getPath());
+    }
+  }
+
+  @Test
+  void rejectsTheEndpointsAsWaypoints() {
+    Graph graph = RandomGraphs.graph(83, 50, 200, 9, 0, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    DijkstraService service = new DijkstraService();
+    int start = csr.indexOf(graph.getNode(0));
+    int end = csr.indexOf(graph.getNode(1));
+    assertNull(service.dijkstraMustGo(csr, start, end, new int[] {csr.indexOf(graph.getNode(2)), end}).getPath());
+    assertNull(service.dijkstraMustGo(csr, start, end, new int[] {start}).getPath());
+    assertNull(service.dijkstraMustGo(csr, start, end, new int[] {csr.nodeCount()}).getPath());
+  }
+
+  private static void assertVisits(List<Node> mustGo, List<Node> path) {
+    if (path == null) {
+      return;
+    }
+    Set<String> names = new HashSet<>();
+    for (Node node : path) {
+      names.add(node.getName());
+    }
+    for (Node node : mustGo) {
+      assertTrue(names.contains(node.getName()), "the route skips " + node.getName());
+    }
+  }
+
+  /**
+   * Try every order of the waypoints on distances from the reference.
+   */
+  private static double bestOrder(Graph graph, Node start, Node end, List<Node> mustGo) {
+    List<Node> points = new ArrayList<>(mustGo);
+    points.add(0, start);
+    double[][] distances = new double[points.size()][];
+    for (int i = 0; i < points.size(); i++) {
+      distances[i] = RandomGraphs.distances(graph, points.get(i));
+    }
+    return permute(graph, distances, points, end, new boolean[points.size()], 0, 1, 0);
+  }
+
+  private static double permute(Graph graph, double[][] distances, List<Node> points, Node end,
+                                boolean[] used, int at, int depth, double cost) {
+    if (depth == points.size()) {
+      double last = distances[at][graph.indexOf(end)];
+      return last == Double.MAX_VALUE ? Double.MAX_VALUE : cost + last;
+    }
+    double best = Double.MAX_VALUE;
+    for (int next = 1; next < points.size(); next++) {
+      double leg = distances[at][graph.indexOf(points.get(next))];
+      if (used[next] || leg == Double.MAX_VALUE) {
+        continue;
+      }
+      used[next] = true;
+      best = Math.min(best, permute(graph, distances, points, end, used, next, depth + 1, cost + leg));
+      used[next] = false;
+    }
+    return best;
+  }
+}
@@ -0,0 +1,71 @@
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import models.Graph;
+import models.Node;
+import models.RandomGraphs;
+import models.SmartGraph;
+
+/**
+ * Many threads query one Graph through one DijkstraService at once, and every answer must match
+ * the answer of the same query run alone.
+ */
+class DijkstraServiceStressTest {
+  private static final int NODES = 3000;
+  private static final int QUERIES = 300;
+  private static final int ROUNDS = 4;
+  private static final int THREADS = 8;
+
+  @Test
+  void concurrentQueriesMatchSerialAnswers() throws Exception {
+    Graph graph = RandomGraphs.graph(4, NODES, 4 * NODES, 20, 0.1, false);
+    DijkstraService service = new DijkstraService();
+    Random random = new Random(5);
+    Node[] starts = new Node[QUERIES];
+    Node[] ends = new Node[QUERIES];
+    SmartGraph[] serial = new SmartGraph[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      starts[i] = graph.getNode(random.nextInt(NODES));
+      ends[i] = graph.getNode(random.nextInt(NODES));
+      serial[i] = service.dijkstraBase(graph, starts[i], ends[i]);
+      double expected = RandomGraphs.distances(graph, starts[i])[graph.indexOf(ends[i])];
+      assertRoute(graph, expected, starts[i], ends[i], serial[i].getCost(), serial[i].getPath());
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch go = new CountDownLatch(1);
+      List<Future<SmartGraph>> answers = new ArrayList<>();
+      for (int round = 0; round < ROUNDS; round++) {
+        for (int i = 0; i < QUERIES; i++) {
+          Node start = starts[i];
+          Node end = ends[i];
+          answers.add(pool.submit(() -> {
+            go.await();
+            return service.dijkstraBase(graph, start, end);
+          }));
+        }
+      }
+      go.countDown();
+      for (int j = 0; j < answers.size(); j++) {
+        SmartGraph answer = answers.get(j).get(1, TimeUnit.MINUTES);
+        SmartGraph expected = serial[j % QUERIES];
+        assertEquals(expected.getCost(), answer.getCost(), "cost of query " + j);
+        assertEquals(expected.getPath(), answer.getPath(), "path of query " + j);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
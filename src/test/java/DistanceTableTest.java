@@ -0,0 +1,45 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import models.ContractionHierarchy;
+import models.Graph;
+import models.Node;
+import models.RandomGraphs;
+
+/**
+ * Both distance table APIs of DijkstraService against one Bellman-Ford run per source.
+ */
+class DistanceTableTest {
+  private static final int NODES = 300;
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0, 0.5})
+  void tablesMatchTheReference(double zeroShare) {
+    Graph graph = RandomGraphs.graph(12, NODES, 1000, 9, zeroShare, false);
+    DijkstraService service = new DijkstraService();
+    List<Node> sources = new ArrayList<>();
+    List<Node> targets = new ArrayList<>();
+    for (int i = 0; i < NODES; i += 13) {
+      sources.add(graph.getNode(i));
+      targets.add(graph.getNode(NODES - 1 - i));
+    }
+    // a repeated target gets its own column
+    targets.add(targets.get(0));
+
+    double[][] searched = service.distanceTable(graph, sources, targets);
+    double[][] bucketed = service.distanceTable(ContractionHierarchy.build(graph), sources, targets);
+    for (int i = 0; i < sources.size(); i++) {
+      double[] expected = RandomGraphs.distances(graph, sources.get(i));
+      for (int j = 0; j < targets.size(); j++) {
+        String pair = sources.get(i).getName() + " -> " + targets.get(j).getName();
+        assertEquals(expected[graph.indexOf(targets.get(j))], searched[i][j], pair);
+        assertEquals(expected[graph.indexOf(targets.get(j))], bucketed[i][j], pair);
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import models.Node;
+import models.SearchCounts;
+import models.SmartGraph;
+
+class QueryMetricsTest {
+  private static final Pattern HELP = Pattern.compile("# HELP ([a-z_]+) \\S.*");
+  private static final Pattern TYPE = Pattern.compile("# TYPE ([a-z_]+) (counter|summary)");
+  private static final Pattern SAMPLE =
+          Pattern.compile("([a-z_]+)\\{problem=\"([A-Z_]+)\"(,quantile=\"([0-9.]+)\")?\\} (-?[0-9]+(\\.[0-9]+)?)");
+
+  @Test
+  void countsQueriesPerProblem() {
+    QueryMetrics metrics = new QueryMetrics();
+    SmartGraph found = new SmartGraph(null, List.of(new Node("a"), new Node("b")), 3);
+    metrics.queryFinished(new QueryEvent(ProblemType.DIJKSTRA_BASE, List.of(found),
+            new SearchCounts(10, 20, 11, 10, 2), 2_000_000));
+    metrics.queryFinished(new QueryEvent(ProblemType.DIJKSTRA_BASE, List.of(new SmartGraph(null, null)),
+            new SearchCounts(5, 7, 5, 5, 0), 4_000_000));
+    metrics.queryRejected(ProblemType.MUST_GO, "no");
+
+    QueryMetrics.ProblemMetricsMXBean base = metrics.get(ProblemType.DIJKSTRA_BASE);
+    assertEquals(2, base.getQueries());
+    assertEquals(1, base.getNotFound());
+    assertEquals(15, base.getSettled());
+    assertEquals(27, base.getRelaxations());
+    assertEquals(16, base.getHeapPushes());
+    assertEquals(15, base.getHeapPops());
+    assertEquals(2, base.getHeapDecreaseKeys());
+    assertEquals(3000, base.getMeanLatencyMicros(), 1e-9);
+    assertEquals(4000, base.getMaxLatencyMicros(), 1e-9);
+    assertEquals(1, metrics.get(ProblemType.MUST_GO).getRejected());
+    assertEquals(0, metrics.get(ProblemType.MUST_GO).getQueries());
+  }
+
+  /**
+   * Every family has its HELP and TYPE lines before its samples, every sample line is well formed
+   * and labelled with a problem, and every problem appears in every family.
+   */
+  @Test
+  void toTextIsPrometheusText() {
+    QueryMetrics metrics = new QueryMetrics();
+    metrics.queryFinished(new QueryEvent(ProblemType.WIDEST_PATH, List.of(new SmartGraph(null, null)),
+            new SearchCounts(4, 9, 4, 4, 1), 1_500_000));
+    metrics.queryRejected(ProblemType.BYPASSING, "no");
+
+    String text = metrics.toText();
+    assertTrue(text.endsWith("\n"));
+    Map<String, String> types = new HashMap<>();
+    Map<String, String> samples = new HashMap<>();
+    String help = null;
+    for (String line : text.split("\n")) {
+      Matcher m;
+      if ((m = HELP.matcher(line)).matches()) {
+        help = m.group(1);
+      } else if ((m = TYPE.matcher(line)).matches()) {
+        assertEquals(help, m.group(1), "TYPE without HELP: " + line);
+        types.put(m.group(1), m.group(2));
+      } else if ((m = SAMPLE.matcher(line)).matches()) {
+        String family = m.group(1).replaceAll("_(sum|count)$", "");
+        assertTrue(types.containsKey(family), "sample before its TYPE: " + line);
+        assertEquals("summary".equals(types.get(family)), m.group(3) != null || !m.group(1).equals(family),
+                "only summaries have quantiles, sums and counts: " + line);
+        samples.put(m.group(1) + "/" + m.group(2) + "/" + m.group(4), m.group(5));
+      } else {
+        throw new AssertionError("not a Prometheus text line: " + line);
+      }
+    }
+
+    assertEquals("counter", types.get("queries_total"));
+    assertEquals("summary", types.get("query_latency_seconds"));
+    for (String family : types.keySet()) {
+      for (ProblemType type : ProblemType.values()) {
+        String name = "summary".equals(types.get(family)) ? family + "_count" : family;
+        String key = name + "/" + type + "/null";
+        assertTrue(samples.containsKey(key), "no " + key);
+      }
+    }
+    assertEquals("1", samples.get("queries_total/WIDEST_PATH/null"));
+    assertEquals("1", samples.get("queries_not_found_total/WIDEST_PATH/null"));
+    assertEquals("9", samples.get("edges_relaxed_total/WIDEST_PATH/null"));
+    assertEquals("1", samples.get("queries_rejected_total/BYPASSING/null"));
+    assertEquals("0", samples.get("queries_total/BYPASSING/null"));
+    assertEquals("1", samples.get("query_latency_seconds_count/WIDEST_PATH/null"));
+    assertEquals(0.0015, Double.parseDouble(samples.get("query_latency_seconds_sum/WIDEST_PATH/null")), 1e-12);
+    double median = Double.parseDouble(samples.get("query_latency_seconds/WIDEST_PATH/0.5"));
+    assertTrue(median >= 0.0015 && median <= 0.0015 * 1.01, "median " + median);
+  }
+}
@@ -0,0 +1,83 @@
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import models.Cell;
+import models.CsrGraph;
+import models.Graph;
+import models.InertialFlow;
+import models.OverlayGraph;
+import models.RandomGraphs;
+import models.SmartGraph;
+
+/**
+ * Partitioned routing through DijkstraService, with the cells in process and behind shard servers
+ * on the loopback interface.
+ */
+class ShardServerTest {
+  private static final int NODES = 600;
+  private static final int CELL_SIZE = 80;
+
+  @Test
+  void partitionedRoutesMatchPlainDijkstra() {
+    Graph graph = RandomGraphs.graph(71, NODES, 3 * NODES, 9, 0.2, true);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    int[] cells = InertialFlow.partition(csr, CELL_SIZE);
+    Cell[] split = Cell.split(csr, cells);
+    OverlayGraph overlay = OverlayGraph.build(csr, cells, i -> split[i]);
+    DijkstraService service = new DijkstraService();
+    for (int start = 0; start < NODES; start += 47) {
+      for (int end = 0; end < NODES; end += 13) {
+        SmartGraph expected = service.dijkstraBase(csr, start, end);
+        SmartGraph route = service.dijkstraPartitioned(overlay, i -> split[i], start, end);
+        check(graph, csr, expected, route, start, end);
+      }
+    }
+  }
+
+  @Test
+  void remoteShardsRouteLikeLocalCells() throws Exception {
+    Graph graph = RandomGraphs.graph(72, NODES, 3 * NODES, 9, 0.2, true);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    int[] cells = InertialFlow.partition(csr, CELL_SIZE);
+    Cell[] split = Cell.split(csr, cells);
+    List<ShardServer> servers = new ArrayList<>();
+    try {
+      RemoteShard[] remotes = new RemoteShard[split.length];
+      for (int i = 0; i < split.length; i++) {
+        ShardServer server = new ShardServer(split[i], 0, 2);
+        server.start();
+        servers.add(server);
+        remotes[i] = new RemoteShard("localhost", server.getPort());
+      }
+      OverlayGraph local = OverlayGraph.build(csr, cells, i -> split[i]);
+      OverlayGraph remote = OverlayGraph.build(csr, cells, i -> remotes[i]);
+      assertEquals(local.edgeCount(), remote.edgeCount());
+
+      DijkstraService service = new DijkstraService();
+      for (int start = 0; start < NODES; start += 71) {
+        for (int end = 0; end < NODES; end += 37) {
+          SmartGraph expected = service.dijkstraPartitioned(local, i -> split[i], start, end);
+          SmartGraph route = service.dijkstraPartitioned(remote, i -> remotes[i], start, end);
+          check(graph, csr, expected, route, start, end);
+        }
+      }
+    } finally {
+      for (ShardServer server : servers) {
+        server.stop();
+      }
+    }
+  }
+
+  /**
+   * Equal costs, and a path of that cost; with zero weight edges the paths themselves may differ.
+   */
+  private static void check(Graph graph, CsrGraph csr, SmartGraph expected, SmartGraph route, int start, int end) {
+    double cost = expected.getPath() == null ? Double.MAX_VALUE : expected.getCost();
+    assertRoute(graph, cost, csr.getNode(start), csr.getNode(end), route.getCost(), route.getPath());
+  }
+}
@@ -0,0 +1,60 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class AllPairsSolverTest {
+  // more than two tiles, and not a multiple of the tile size
+  private static final int NODES = 150;
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0, 0.4})
+  void floydWarshallMatchesTheReference(double zeroShare) {
+    Graph graph = RandomGraphs.graph(31, NODES, 4 * NODES, 9, zeroShare, false);
+    DistanceMatrix matrix = DistanceMatrix.inMemory(graph.nodeCount(), true);
+    AllPairsSolver.floydWarshall(graph, matrix);
+    assertTimeoutPreemptively(Duration.ofMinutes(1), () -> check(graph, matrix));
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0, 0.4})
+  void dijkstraMatchesTheReference(double zeroShare) {
+    Graph graph = RandomGraphs.graph(32, NODES, 4 * NODES, 9, zeroShare, false);
+    DistanceMatrix matrix = DistanceMatrix.inMemory(graph.nodeCount(), true);
+    AllPairsSolver.dijkstra(graph, matrix);
+    assertTimeoutPreemptively(Duration.ofMinutes(1), () -> check(graph, matrix));
+  }
+
+  @Test
+  void fillsAMappedMatrix(@TempDir Path directory) throws IOException {
+    Graph graph = RandomGraphs.graph(33, NODES, 20 * NODES, 9, 0.1, false);
+    DistanceMatrix matrix = DistanceMatrix.mapped(directory.resolve("matrix.bin"), graph.nodeCount(), true);
+    AllPairsSolver.solve(graph, matrix);
+    matrix.force();
+    assertTimeoutPreemptively(Duration.ofMinutes(1), () -> check(graph, matrix));
+  }
+
+  /**
+   * Compare every cell with the reference and walk every path. The callers time this out, as a
+   * successor table with a cycle would walk forever.
+   */
+  private static void check(Graph graph, DistanceMatrix matrix) {
+    for (int i = 0; i < graph.nodeCount(); i++) {
+      double[] expected = RandomGraphs.distances(graph, graph.getNode(i));
+      for (int j = 0; j < graph.nodeCount(); j++) {
+        assertEquals(expected[j], matrix.get(i, j), i + " -> " + j);
+        assertRoute(graph, expected[j], i, j, matrix.get(i, j), matrix.pathIds(i, j));
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ContractionHierarchyTest {
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0, 0.3, 0.9})
+  void routesMatchTheReference(double zeroShare) throws IOException {
+    Graph graph = RandomGraphs.graph(11, 400, 1400, 9, zeroShare, false);
+    ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    hierarchy.writeTo(bytes);
+    ContractionHierarchy loaded = ContractionHierarchy.readFrom(new ByteArrayInputStream(bytes.toByteArray()), graph);
+
+    SearchWorkspace forward = new SearchWorkspace();
+    SearchWorkspace backward = new SearchWorkspace();
+    for (int source = 0; source < 400; source += 23) {
+      Node start = graph.getNode(source);
+      double[] expected = RandomGraphs.distances(graph, start);
+      for (int target = 0; target < 400; target += 7) {
+        Node end = graph.getNode(target);
+        for (ContractionHierarchy ch : new ContractionHierarchy[] {hierarchy, loaded}) {
+          SmartGraph route = ch.route(start, end, forward, backward);
+          assertRoute(graph, expected[target], start, end, route.getCost(), route.getPath());
+        }
+      }
+    }
+  }
+}
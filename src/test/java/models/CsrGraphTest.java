@@ -0,0 +1,144 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsrGraphTest {
+
+  @Test
+  void keepsEveryEdgeOfTheGraph() {
+    Graph graph = RandomGraphs.graph(1, 200, 800, 9, 0.1, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    assertEquals(graph.getNodes().size(), csr.nodeCount());
+    int edges = 0;
+    for (Node node : graph.getNodes()) {
+      int u = csr.indexOf(node);
+      List<String> expected = new ArrayList<>();
+      for (Edge edge : node.getEdges()) {
+        expected.add(edge.getDestNode().getName() + ":" + edge.getWeight());
+      }
+      List<String> actual = new ArrayList<>();
+      for (int e = csr.firstEdge(u); e < csr.endEdge(u); e++) {
+        actual.add(csr.getNode(csr.target(e)).getName() + ":" + csr.weight(e));
+        assertEquals(u, intoSource(csr, e), "the reverse rows list edge " + e);
+      }
+      expected.sort(null);
+      actual.sort(null);
+      assertEquals(expected, actual);
+      edges += actual.size();
+    }
+    assertEquals(edges, csr.edgeCount());
+  }
+
+  @Test
+  void searchesMatchTheReference() {
+    Graph graph = RandomGraphs.graph(2, 500, 2000, 9, 0.2, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    SearchWorkspace workspace = new SearchWorkspace(csr.nodeCount());
+    for (int source = 0; source < 500; source += 37) {
+      double[] expected = RandomGraphs.distances(graph, graph.getNode(source));
+      int start = csr.indexOf(graph.getNode(source));
+      for (int target = 0; target < 500; target += 11) {
+        int end = csr.indexOf(graph.getNode(target));
+        double cost = workspace.search(csr, start, end, null);
+        assertRoute(csr, expected[target], start, end, cost, cost < Double.MAX_VALUE ? workspace.pathIds(end) : null);
+      }
+    }
+  }
+
+  @Test
+  void mapsWhatItSaves(@TempDir Path directory) throws IOException {
+    Graph graph = RandomGraphs.graph(3, 300, 1200, 9, 0.1, true);
+    graph.addNodes(new Node("unlocated"));
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    Path file = directory.resolve("graph.csr");
+    csr.save(file);
+    CsrGraph mapped = CsrGraph.map(file);
+
+    assertTrue(mapped.isMapped());
+    assertEquals(csr.nodeCount(), mapped.nodeCount());
+    assertEquals(csr.edgeCount(), mapped.edgeCount());
+    for (int u = 0; u < csr.nodeCount(); u++) {
+      Node node = csr.getNode(u);
+      Node copy = mapped.getNode(u);
+      assertEquals(node.getName(), copy.getName());
+      assertEquals(node.hasCoordinates(), copy.hasCoordinates());
+      if (node.hasCoordinates()) {
+        assertEquals(node.getX(), copy.getX());
+        assertEquals(node.getY(), copy.getY());
+      }
+      assertEquals(u, mapped.indexOf(node.getName()));
+      assertEquals(csr.firstEdge(u), mapped.firstEdge(u));
+      assertEquals(csr.endEdge(u), mapped.endEdge(u));
+      assertEquals(csr.firstIntoEdge(u), mapped.firstIntoEdge(u));
+    }
+    for (int e = 0; e < csr.edgeCount(); e++) {
+      assertEquals(csr.target(e), mapped.target(e));
+      assertEquals(csr.weight(e), mapped.weight(e));
+      assertEquals(csr.source(e), mapped.source(e));
+      assertEquals(csr.forwardEdge(e), mapped.forwardEdge(e));
+    }
+    assertEquals(-1, mapped.indexOf("missing"));
+  }
+
+  /**
+   * More nodes than a mapped graph keeps: a node held across the eviction of its id still maps
+   * back to that id, next to the new Node handed out for it.
+   */
+  @Test
+  void evictedNodesKeepTheirIds(@TempDir Path directory) throws IOException {
+    Graph graph = RandomGraphs.graph(4, 10_000, 20_000, 9, 0, false);
+    Path file = directory.resolve("graph.csr");
+    CsrGraph.fromGraph(graph).save(file);
+    CsrGraph mapped = CsrGraph.map(file);
+
+    Node first = mapped.getNode(0);
+    assertSame(first, mapped.getNode(0));
+    for (int u = 1; u < mapped.nodeCount(); u++) {
+      assertEquals(u, mapped.indexOf(mapped.getNode(u)));
+    }
+    Node again = mapped.getNode(0);
+    assertNotSame(first, again);
+    assertEquals(0, mapped.indexOf(first));
+    assertEquals(0, mapped.indexOf(again));
+    assertEquals(-1, mapped.indexOf(new Node("0")));
+  }
+
+  @Test
+  void leavesTheIdsOfSharedNodesAlone() {
+    Node a = new Node("a");
+    Node b = new Node("b");
+    Node c = new Node("c");
+    Graph graph = new Graph(true);
+    graph.addNodes(c, b, a);
+    int before = a.getId();
+
+    CsrGraph csr = CsrGraph.fromEdges(new HashSet<>(Arrays.asList(a, b)), List.of(new Edge(a, b, 1)));
+    assertEquals(1, csr.edgeCount());
+    assertEquals(before, a.getId());
+    assertEquals(2, graph.indexOf(a));
+  }
+
+  private static int intoSource(CsrGraph csr, int edge) {
+    int v = csr.target(edge);
+    for (int i = csr.firstIntoEdge(v); i < csr.endIntoEdge(v); i++) {
+      if (csr.forwardEdge(i) == edge) {
+        return csr.source(i);
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,68 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class DeltaSteppingTest {
+
+  @ParameterizedTest
+  @CsvSource({"1e-6, 1, 0", "1, 1, 0.3", "1, 3, 0.3", "5, 3, 0", "5, 3, 0.3", "1e9, 2, 0.3"})
+  void distancesAndPathsMatchTheReference(double delta, int threads, double zeroShare) {
+    Graph graph = RandomGraphs.graph(41, 1500, 6000, 20, zeroShare, false);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      DeltaStepping engine = new DeltaStepping(csr, delta, pool);
+      for (int source = 0; source < 1500; source += 301) {
+        engine.run(csr.indexOf(graph.getNode(source)));
+        double[] expected = RandomGraphs.distances(graph, graph.getNode(source));
+        assertTimeoutPreemptively(Duration.ofMinutes(1), () -> check(graph, csr, engine, expected));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * s -> c costs 1, then c -> a, a -> b and b -> a are free. b is listed before c among the into
+   * edges of a, so taking the first tight one makes a and b each other's parent.
+   */
+  @ParameterizedTest
+  @CsvSource({"1e-6, 1", "1, 1", "1, 2", "1e9, 2"})
+  void zeroWeightCyclesLeaveTheParentsAcyclic(double delta, int threads) {
+    int s = 0;
+    int b = 1;
+    int c = 2;
+    int a = 3;
+    CsrGraph csr = CsrGraph.fromEdges(4, new int[] {s, b, c, a}, new int[] {c, a, a, b}, new double[] {1, 0, 0, 0});
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      DeltaStepping engine = new DeltaStepping(csr, delta, pool);
+      engine.run(s);
+      assertEquals(1, engine.getDistance(a));
+      assertEquals(1, engine.getDistance(b));
+      assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+        assertArrayEquals(new int[] {s, c, a}, engine.pathIds(a));
+        assertArrayEquals(new int[] {s, c, a, b}, engine.pathIds(b));
+      });
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static void check(Graph graph, CsrGraph csr, DeltaStepping engine, double[] expected) {
+    for (int v = 0; v < csr.nodeCount(); v++) {
+      double distance = expected[graph.indexOf(csr.getNode(v))];
+      assertEquals(distance, engine.getDistance(v));
+      assertRoute(csr, distance, engine.getSource(), v, engine.getDistance(v), engine.pathIds(v));
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DynamicShortestPathTreeTest {
+  private static final int NODES = 300;
+  private static final int CHANGES = 400;
+
+  /**
+   * Random edge insertions, removals, weight increases and decreases, new nodes, and removals of
+   * nodes on the tree; after every change each distance and path must match a fresh reference.
+   */
+  @ParameterizedTest
+  @ValueSource(longs = {101, 102, 103})
+  void repairsMatchAFreshSearch(long seed) {
+    Graph graph = RandomGraphs.graph(seed, NODES, 4 * NODES, 9, 0.1, false);
+    Node source = graph.getNode(0);
+    DynamicShortestPathTree tree = new DynamicShortestPathTree(graph, source);
+    Random random = new Random(seed);
+    check(graph, tree, source, "the initial tree");
+
+    for (int change = 0; change < CHANGES; change++) {
+      List<Edge> edges = edges(graph);
+      Edge edge = edges.get(random.nextInt(edges.size()));
+      String description;
+      switch (random.nextInt(7)) {
+        case 0:
+          Node from = randomNode(graph, random);
+          Node to = randomNode(graph, random);
+          graph.addEdges(new Edge(from, to, random.nextInt(10)));
+          description = "add " + from.getName() + " -> " + to.getName();
+          break;
+        case 1:
+          graph.removeEdge(edge);
+          description = "remove " + name(edge);
+          break;
+        case 2:
+          edge.setWeight(edge.getWeight() + 1 + random.nextInt(20));
+          description = "raise " + name(edge);
+          break;
+        case 3:
+          edge.setWeight(random.nextInt((int) edge.getWeight() + 1));
+          description = "lower " + name(edge);
+          break;
+        case 4:
+          Node added = new Node(String.valueOf(graph.nodeCount()));
+          graph.addEdges(new Edge(randomNode(graph, random), added, random.nextInt(10)),
+                  new Edge(added, randomNode(graph, random), random.nextInt(10)));
+          description = "add node " + added.getName();
+          break;
+        default:
+          Node removed = treeNode(graph, tree, source, random);
+          if (removed == null) {
+            continue;
+          }
+          graph.removeNode(removed);
+          assertEquals(Double.MAX_VALUE, tree.getDistance(removed));
+          description = "remove node " + removed.getName();
+          break;
+      }
+      check(graph, tree, source, "after change " + change + ", " + description);
+    }
+  }
+
+  @Test
+  void removeNodeTakesItsEdgesAlong() {
+    Graph graph = RandomGraphs.graph(104, 50, 200, 9, 0, false);
+    Node node = graph.getNode(7);
+    List<Edge> removed = new ArrayList<>();
+    graph.addListener(new GraphListener() {
+      @Override
+      public void edgeAdded(Edge edge) {
+      }
+
+      @Override
+      public void edgeRemoved(Edge edge) {
+        removed.add(edge);
+      }
+
+      @Override
+      public void weightChanged(Edge edge, double oldWeight) {
+      }
+    });
+    int expected = node.getEdges().size();
+    for (Edge edge : node.getIntoEdges()) {
+      if (edge.getSourceNode() != node) {
+        expected++;
+      }
+    }
+
+    graph.removeNode(node);
+    assertEquals(expected, removed.size());
+    assertFalse(graph.hasNode(node));
+    for (Node other : graph.getNodes()) {
+      for (Edge edge : other.getEdges()) {
+        assertTrue(edge.getDestNode() != node, "an edge still leads to the removed node");
+      }
+    }
+  }
+
+  private static void check(Graph graph, DynamicShortestPathTree tree, Node source, String when) {
+    double[] expected = RandomGraphs.distances(graph, source);
+    for (Node node : graph.getNodes()) {
+      double distance = expected[graph.indexOf(node)];
+      assertEquals(distance, tree.getDistance(node), when + ": distance to " + node.getName());
+      assertRoute(graph, distance, source, node, tree.getDistance(node), tree.getPath(node));
+    }
+  }
+
+  private static List<Edge> edges(Graph graph) {
+    List<Edge> edges = new ArrayList<>();
+    for (Node node : graph.getNodes()) {
+      edges.addAll(node.getEdges());
+    }
+    return edges;
+  }
+
+  private static Node randomNode(Graph graph, Random random) {
+    while (true) {
+      Node node = graph.getNode(random.nextInt(graph.nodeCount()));
+      if (node != null) {
+        return node;
+      }
+    }
+  }
+
+  /**
+   * @return a node other than the source with a parent on the tree, or null if there is none
+   */
+  private static Node treeNode(Graph graph, DynamicShortestPathTree tree, Node source, Random random) {
+    for (int attempt = 0; attempt < 20; attempt++) {
+      Node node = randomNode(graph, random);
+      if (node != source && tree.getDistance(node) < Double.MAX_VALUE) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  private static String name(Edge edge) {
+    return edge.getSourceNode().getName() + " -> " + edge.getDestNode().getName();
+  }
+}
@@ -0,0 +1,259 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class GraphImporterTest {
+  private static final int LINE_BYTES = 32;
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Lines of 32 bytes after a leading line of the given length, so that the first chunk boundary
+   * falls on the start of a line, on its \n, on its \r, and just before it. Every line is a distinct
+   * edge, so a line lost or cut at a boundary shows.
+   */
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 2, 3})
+  void everyLineIsReadOnceAcrossChunks(int lead) throws IOException {
+    int lines = GraphImporter.CHUNK_BYTES / LINE_BYTES + 10_000;
+    int nodes = lines / 11 + 1;
+    StringBuilder text = new StringBuilder(lead + lines * LINE_BYTES);
+    if (lead > 0) {
+      text.append("#".repeat(lead - 1)).append('\n');
+    }
+    Random random = new Random(lead);
+    List<String[]> edges = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      int source = i / 11;
+      int target = (source + 1 + 13 * (i % 11)) % nodes;
+      long micros = (long) (random.nextDouble() * 1e10);
+      String[] edge = {"n" + digits(source, 7), "n" + digits(target, 7),
+          digits(micros / 1_000_000, 5) + "." + digits(micros % 1_000_000, 6)};
+      int length = text.length();
+      text.append(edge[0]).append('\t').append(edge[1]).append('\t').append(edge[2]).append("\r\n");
+      assertEquals(LINE_BYTES, text.length() - length);
+      edges.add(edge);
+    }
+    Path file = write("fixed.tsv", text.toString());
+
+    GraphImporter imported = GraphImporter.read(file, false);
+    assertEquals(lines, imported.edgeCount());
+    assertEquals(edges(naive(edges, false)), edges(imported.toGraph()));
+  }
+
+  /**
+   * Lines of any length, \n and \r\n endings, comments, and weights both on the direct decimal path
+   * and beyond it: up to 18 digits, exponents and a leading +. Every weight must come out exactly
+   * as Double.parseDouble reads it.
+   */
+  @Test
+  void weightsMatchDoubleParseDouble() throws IOException {
+    Random random = new Random(7);
+    StringBuilder text = new StringBuilder();
+    List<String[]> edges = new ArrayList<>();
+    while (text.length() < GraphImporter.CHUNK_BYTES + 200_000) {
+      if (random.nextInt(50) == 0) {
+        text.append(random.nextBoolean() ? "# " : "% ").append(random.nextInt()).append('\n');
+        continue;
+      }
+      String[] edge = {"v" + random.nextInt(20_000), "v" + random.nextInt(20_000), weight(random)};
+      edges.add(edge);
+      text.append(edge[0]).append(random.nextBoolean() ? "\t" : "  ").append(edge[1]).append(' ').append(edge[2])
+              .append(random.nextBoolean() ? "\n" : "\r\n");
+    }
+    Path file = write("variable.tsv", text.toString());
+
+    assertEquals(edges(naive(edges, false)), edges(GraphImporter.read(file, false).toGraph()));
+  }
+
+  @Test
+  void parallelEdgesKeepTheCheapestWeight() throws IOException {
+    List<String[]> edges = new ArrayList<>();
+    Random random = new Random(11);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5_000; i++) {
+      String[] edge = {"n" + random.nextInt(40), "n" + random.nextInt(40), String.valueOf(random.nextInt(100))};
+      edges.add(edge);
+      text.append(String.join(" ", edge)).append('\n');
+    }
+    Path file = write("parallel.tsv", text.toString());
+
+    GraphImporter directed = GraphImporter.read(file, false);
+    Map<String, Map<String, Double>> expected = edges(naive(edges, false));
+    assertEquals(expected, edges(directed.toGraph()));
+    assertEquals(expected, edges(directed.toCsrGraph()));
+    GraphImporter undirected = GraphImporter.read(file, true);
+    assertEquals(edges(naive(edges, true)), edges(undirected.toGraph()));
+  }
+
+  @Test
+  void csvFieldsMayBeQuoted() throws IOException {
+    Path file = write("quoted.csv", "\"weight\",to,\"from\"\n"
+            + "1.5,\"b, the second\",\"a \"\"quoted\"\"\"\n"
+            + "2,plain,\"b, the second\"\r\n"
+            + "\"\",plain,\"\"\"\"\n");
+    Map<String, Map<String, Double>> edges = edges(GraphImporter.read(file, false).toGraph());
+
+    assertEquals(Map.of("b, the second", 1.5), edges.get("a \"quoted\""));
+    assertEquals(Map.of("plain", 2.0), edges.get("b, the second"));
+    // an empty weight counts as 1
+    assertEquals(Map.of("plain", 1.0), edges.get("\""));
+  }
+
+  @Test
+  void headersAreDetected() throws IOException {
+    // named columns in any order, a known name among unknown ones, and unknown names alone
+    assertEquals(Map.of("a", Map.of("b", 3.0)), read("named.csv", "id,travel_time,v,u\n7,3,b,a\n"));
+    assertEquals(Map.of("a", Map.of("b", 1.0)), read("short.csv", "source,target\na,b\n"));
+    assertEquals(Map.of("a", Map.of("b", 3.0)), read("unknown.csv", "x,y,z\na,b,3\n"));
+    // a third field that is a number makes the first line data
+    assertEquals(Map.of("x", Map.of("y", 2.0), "a", Map.of("b", 3.0)), read("data.csv", "x,y,2\na,b,3\n"));
+    assertEquals(Map.of("x", Map.of("y", 1.0)), read("pair.tsv", "x y\n"));
+    // comments are never headers
+    assertEquals(Map.of("a", Map.of("b", 3.0)), read("comment.tsv", "# source target weight\na b 3\n"));
+    assertEquals(Map.of("b", Map.of("a", 4.0)), read("spaced.tsv", "to from cost\na b 4\n"));
+  }
+
+  @Test
+  void dimacsCoordinatesAreScaledToDegrees() throws IOException {
+    Path graphFile = write("city.gr", "c a comment\np sp 4 3\na 1 2 7\na 2 3 5\na 3 1 2\n");
+    Path coordinatesFile = write("city.co", "c coordinates\np aux sp co 4\nv 1 -73987654 40748817\n"
+            + "v 2 2352222 48856614\nv 4 0 -1\n");
+    GraphImporter imported = GraphImporter.readDimacs(graphFile, coordinatesFile);
+    assertEquals(4, imported.nodeCount());
+    CsrGraph graph = imported.toCsrGraph();
+
+    Node first = graph.getNode(graph.indexOf("1"));
+    assertEquals(Double.parseDouble("-73.987654"), first.getX());
+    assertEquals(Double.parseDouble("40.748817"), first.getY());
+    Node second = graph.getNode(graph.indexOf("2"));
+    assertEquals(Double.parseDouble("2.352222"), second.getX());
+    assertEquals(Double.parseDouble("48.856614"), second.getY());
+    assertFalse(graph.getNode(graph.indexOf("3")).hasCoordinates());
+    assertEquals(-0.000001, graph.getNode(graph.indexOf("4")).getY());
+    assertEquals(Map.of("1", Map.of("2", 7.0), "2", Map.of("3", 5.0), "3", Map.of("1", 2.0)), edges(graph));
+  }
+
+  @Test
+  void rejectsNegativeWeights() throws IOException {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> GraphImporter.read(write("negative.tsv", "a b 1\nb c -2\n"), false));
+    assertTrue(e.getMessage().contains("b c -2"), e.getMessage());
+    assertThrows(IllegalArgumentException.class,
+        () -> GraphImporter.read(write("negative.csv", "from,to,weight\na,b,-1e-9\n"), false));
+    assertThrows(IllegalArgumentException.class,
+        () -> GraphImporter.read(write("nan.csv", "a,b,NaN\n"), false));
+    assertThrows(IllegalArgumentException.class,
+        () -> GraphImporter.readDimacs(write("negative.gr", "p sp 2 1\na 1 2 -3\n"), null));
+  }
+
+  private static String weight(Random random) {
+    switch (random.nextInt(5)) {
+      case 0:
+        return String.valueOf(random.nextInt(1000));
+      case 1:
+        return random.nextInt(100) + "e" + (random.nextInt(7) - 3);
+      case 2:
+        return "+" + random.nextInt(1000) + "." + random.nextInt(1000);
+      default:
+        // 1 to 18 digits with the point anywhere, so some fit in 15 digits and some do not
+        StringBuilder digits = new StringBuilder();
+        int length = 1 + random.nextInt(18);
+        for (int i = 0; i < length; i++) {
+          digits.append((char) ('0' + random.nextInt(10)));
+        }
+        digits.insert(random.nextInt(length + 1), '.');
+        return digits.charAt(0) == '.' ? "0" + digits : digits.charAt(digits.length() - 1) == '.' ? digits + "0"
+                : digits.toString();
+    }
+  }
+
+  /**
+   * @return the value in decimal, padded with zeros to the width
+   */
+  private static String digits(long value, int width) {
+    String digits = Long.toString(value);
+    return "0".repeat(Math.max(0, width - digits.length())) + digits;
+  }
+
+  /**
+   * The reference: every edge added one by one with Graph.addEdges, the most expensive first so
+   * that its overwrite of parallel edges ends on the cheapest weight.
+   */
+  private static Graph naive(List<String[]> edges, boolean undirected) {
+    double[] weights = new double[edges.size()];
+    List<Integer> order = new ArrayList<>(edges.size());
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = Double.parseDouble(edges.get(i)[2]);
+      order.add(i);
+    }
+    order.sort((a, b) -> Double.compare(weights[b], weights[a]));
+    Map<String, Node> nodes = new HashMap<>();
+    Graph graph = new Graph(true);
+    for (int i : order) {
+      String[] edge = edges.get(i);
+      Node source = nodes.computeIfAbsent(edge[0], Node::new);
+      Node target = nodes.computeIfAbsent(edge[1], Node::new);
+      double weight = weights[i];
+      graph.addEdges(new Edge(source, target, weight));
+      if (undirected) {
+        graph.addEdges(new Edge(target, source, weight));
+      }
+    }
+    return graph;
+  }
+
+  private Map<String, Map<String, Double>> read(String name, String text) throws IOException {
+    return edges(GraphImporter.read(write(name, text), false).toGraph());
+  }
+
+  /**
+   * @return the weight of every edge by source and target name
+   */
+  private static Map<String, Map<String, Double>> edges(Graph graph) {
+    Map<String, Map<String, Double>> edges = new HashMap<>();
+    for (Node node : graph.getNodes()) {
+      for (Edge edge : node.getEdges()) {
+        Double previous = edges.computeIfAbsent(node.getName(), key -> new HashMap<>())
+                .put(edge.getDestNode().getName(), edge.getWeight());
+        assertEquals(null, previous, "parallel edges were kept");
+      }
+    }
+    return edges;
+  }
+
+  private static Map<String, Map<String, Double>> edges(CsrGraph graph) {
+    Map<String, Map<String, Double>> edges = new HashMap<>();
+    for (int u = 0; u < graph.nodeCount(); u++) {
+      for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+        Double previous = edges.computeIfAbsent(graph.getNode(u).getName(), key -> new HashMap<>())
+                .put(graph.getNode(graph.target(e)).getName(), graph.weight(e));
+        assertEquals(null, previous, "parallel edges were kept");
+      }
+    }
+    return edges;
+  }
+
+  private Path write(String name, String text) throws IOException {
+    return Files.write(directory.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+  }
+}
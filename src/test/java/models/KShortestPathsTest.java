@@ -0,0 +1,89 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class KShortestPathsTest {
+  private static final int K = 12;
+
+  /**
+   * Small graphs, so every loopless path can be listed and the k cheapest compared by cost.
+   */
+  @ParameterizedTest
+  @ValueSource(longs = {51, 52, 53, 54, 55})
+  void findsTheCheapestLooplessPaths(long seed) {
+    Graph graph = RandomGraphs.graph(seed, 9, 30, 5, 0.2, false);
+    for (int source = 0; source < 9; source += 2) {
+      for (int target = 0; target < 9; target += 3) {
+        if (source == target) {
+          continue;
+        }
+        Node start = graph.getNode(source);
+        Node end = graph.getNode(target);
+        List<Double> all = new ArrayList<>();
+        enumerate(start, end, new HashSet<>(), 0, all);
+        all.sort(null);
+
+        List<SmartGraph> paths = KShortestPaths.find(graph, start, end, K);
+        assertEquals(Math.min(K, all.size()), paths.size(), source + " -> " + target);
+        Set<List<Node>> distinct = new HashSet<>();
+        for (int i = 0; i < paths.size(); i++) {
+          List<Node> path = paths.get(i).getPath();
+          assertRoute(graph, all.get(i), start, end, paths.get(i).getCost(), path);
+          assertEquals(path.size(), new HashSet<>(path).size(), "a path repeats a node");
+          assertTrue(distinct.add(path), "a path is listed twice");
+        }
+      }
+    }
+  }
+
+  /**
+   * Every search, the first and each spur, reports its work, so probes see more than zero.
+   */
+  @Test
+  void everySearchReportsItsWork() {
+    Graph graph = RandomGraphs.graph(56, 200, 800, 9, 0, false);
+    ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+    AtomicInteger searches = new AtomicInteger();
+    AtomicReference<SearchCounts> total = new AtomicReference<>(SearchCounts.ZERO);
+    List<SmartGraph> paths = KShortestPaths.find(graph, graph.getNode(0), graph.getNode(1), K, workspaces::get,
+            counts -> {
+              searches.incrementAndGet();
+              total.accumulateAndGet(counts, SearchCounts::plus);
+            });
+
+    assertEquals(K, paths.size());
+    assertTrue(searches.get() > K, "only " + searches.get() + " searches were reported");
+    assertTrue(total.get().getSettled() > 0);
+    assertTrue(total.get().getRelaxations() > 0);
+  }
+
+  /**
+   * Depth first over simple paths; parallel edges were merged by the graph, so one cost per path.
+   */
+  private static void enumerate(Node node, Node end, Set<Node> visited, double cost, List<Double> costs) {
+    if (node == end) {
+      costs.add(cost);
+      return;
+    }
+    visited.add(node);
+    for (Edge edge : node.getEdges()) {
+      if (!visited.contains(edge.getDestNode())) {
+        enumerate(edge.getDestNode(), end, visited, cost + edge.getWeight(), costs);
+      }
+    }
+    visited.remove(node);
+  }
+}
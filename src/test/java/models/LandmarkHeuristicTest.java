@@ -0,0 +1,75 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class LandmarkHeuristicTest {
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0, 0.3})
+  void aStarWithLandmarksMatchesTheReference(double zeroShare) {
+    Graph graph = RandomGraphs.graph(21, 600, 2400, 9, zeroShare, true);
+    LandmarkHeuristic landmarks = LandmarkHeuristic.build(graph, 8);
+    SearchWorkspace workspace = new SearchWorkspace();
+    for (int source = 0; source < 600; source += 41) {
+      double[] expected = RandomGraphs.distances(graph, graph.getNode(source));
+      for (int target = 0; target < 600; target += 17) {
+        double estimate = landmarks.estimate(graph, source, target);
+        assertTrue(estimate <= expected[target], "the estimate " + source + " -> " + target + " is too high");
+
+        double cost = workspace.searchAStar(graph, source, target, landmarks, null);
+        assertRoute(graph, expected[target], graph.getNode(source), graph.getNode(target), cost,
+                cost < Double.MAX_VALUE ? workspace.path(graph, target) : null);
+      }
+    }
+  }
+
+  /**
+   * A* never reopens a node, so the estimate has to be consistent over every edge, not just low.
+   * Edges into nodes that cannot reach the target are left out: their estimate might as well be
+   * infinite.
+   */
+  @Test
+  void landmarkEstimatesAreConsistent() {
+    Graph graph = RandomGraphs.graph(22, 400, 1600, 9, 0.3, true);
+    LandmarkHeuristic landmarks = LandmarkHeuristic.build(graph, 6);
+    for (int target = 0; target < 400; target += 31) {
+      Set<Node> reaching = reaching(graph.getNode(target));
+      for (Node node : graph.getNodes()) {
+        int u = graph.indexOf(node);
+        for (Edge edge : node.getEdges()) {
+          int v = graph.indexOf(edge.getDestNode());
+          if (!reaching.contains(edge.getDestNode())) {
+            continue;
+          }
+          assertTrue(landmarks.estimate(graph, u, target) <= edge.getWeight() + landmarks.estimate(graph, v, target),
+                  "the estimate drops by more than the edge " + u + " -> " + v);
+        }
+      }
+    }
+  }
+
+  private static Set<Node> reaching(Node target) {
+    Set<Node> reached = new HashSet<>();
+    Deque<Node> queue = new ArrayDeque<>();
+    reached.add(target);
+    queue.add(target);
+    while (!queue.isEmpty()) {
+      for (Edge edge : queue.poll().getIntoEdges()) {
+        if (reached.add(edge.getSourceNode())) {
+          queue.add(edge.getSourceNode());
+        }
+      }
+    }
+    return reached;
+  }
+}
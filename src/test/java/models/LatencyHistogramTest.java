@@ -0,0 +1,98 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  /**
+   * Values below 256 are exact. Above, every value lands in a bucket at most 1/128 of the value
+   * wide, the buckets follow each other without gaps, and the top of a bucket is in that bucket.
+   */
+  @Test
+  void bucketsTileTheValues() {
+    List<Long> values = new ArrayList<>();
+    for (long v = 0; v < 1024; v++) {
+      values.add(v);
+    }
+    for (int bit = 8; bit < 63; bit++) {
+      for (long offset = -2; offset <= 2; offset++) {
+        values.add((1L << bit) + offset);
+      }
+    }
+    values.add(Long.MAX_VALUE - 1);
+    values.add(Long.MAX_VALUE);
+
+    for (long value : values) {
+      long top = top(value);
+      assertTrue(top >= value, value + " is above the top of its bucket, " + top);
+      if (value < 256) {
+        assertEquals(value, top);
+      } else {
+        assertTrue(top - value <= value / 128, value + " is in a bucket up to " + top);
+      }
+      assertEquals(top, top(top), "the top of the bucket of " + value + " is in another bucket");
+      if (top < Long.MAX_VALUE) {
+        assertTrue(top(top + 1) > top, "the bucket after " + top + " overlaps it");
+      }
+    }
+  }
+
+  /**
+   * Percentiles of log-uniform values, from 1 microsecond to 10 seconds, against the exact ones:
+   * never below, and above by at most 1%.
+   */
+  @Test
+  void percentilesAreWithinOnePercent() {
+    Random random = new Random(31);
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] values = new long[100_000];
+    long sum = 0;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.pow(10, 3 + 7 * random.nextDouble());
+      histogram.record(values[i]);
+      sum += values[i];
+    }
+    Arrays.sort(values);
+
+    for (double percentile : new double[] {0, 1, 25, 50, 90, 99, 99.9, 99.99, 100}) {
+      long exact = values[(int) Math.max(0, Math.ceil(percentile / 100 * values.length) - 1)];
+      long reported = histogram.getValueAtPercentile(percentile);
+      assertTrue(reported >= exact && reported <= exact * 1.01,
+              String.format("p%s is %d, exactly %d", percentile, reported, exact));
+    }
+    assertEquals(values.length, histogram.getCount());
+    assertEquals(values[values.length - 1], histogram.getMax());
+    assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+    assertEquals((double) sum / values.length, histogram.getMean(), 1e-6);
+  }
+
+  @Test
+  void emptyAndNegative() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(0, histogram.getMean());
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    assertEquals(0, histogram.getMax());
+  }
+
+  /**
+   * @return the top of the bucket of the value, as the lowest percentile reports it when a larger
+   *     value keeps the maximum out of the way
+   */
+  private static long top(long value) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(value);
+    histogram.record(Long.MAX_VALUE);
+    return histogram.getValueAtPercentile(50);
+  }
+}
@@ -0,0 +1,97 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class OverlayGraphTest {
+  private static final int NODES = 800;
+  private static final int CELL_SIZE = 60;
+
+  @Test
+  void cellsHoldAtMostTheCellSize() {
+    CsrGraph csr = CsrGraph.fromGraph(RandomGraphs.graph(61, NODES, 3 * NODES, 9, 0, true));
+    int[] cells = InertialFlow.partition(csr, CELL_SIZE);
+    int count = 0;
+    for (int cell : cells) {
+      count = Math.max(count, cell + 1);
+    }
+    int[] sizes = new int[count];
+    for (int cell : cells) {
+      sizes[cell]++;
+    }
+    for (int size : sizes) {
+      assertTrue(size >= 1 && size <= CELL_SIZE, "a cell holds " + size + " nodes");
+    }
+
+    Cell[] split = Cell.split(csr, cells);
+    assertEquals(count, split.length);
+    for (Cell cell : split) {
+      assertEquals(sizes[cell.getIndex()], cell.nodeCount());
+      for (int local = 0; local < cell.nodeCount(); local++) {
+        assertEquals(cell.getIndex(), cells[cell.globalId(local)]);
+        assertEquals(local, cell.localId(cell.globalId(local)));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0, 0.3})
+  void routesMatchTheReference(double zeroShare) {
+    Graph graph = RandomGraphs.graph(62, NODES, 3 * NODES, 9, zeroShare, true);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    int[] cells = InertialFlow.partition(csr, CELL_SIZE);
+    Cell[] split = Cell.split(csr, cells);
+    OverlayGraph overlay = OverlayGraph.build(csr, cells, i -> split[i]);
+    check(graph, csr, overlay, split);
+  }
+
+  @Test
+  void savedCellsAndOverlayRouteTheSame(@TempDir Path directory) throws IOException {
+    Graph graph = RandomGraphs.graph(63, NODES, 3 * NODES, 9, 0.2, true);
+    CsrGraph csr = CsrGraph.fromGraph(graph);
+    int[] cells = InertialFlow.partition(csr, CELL_SIZE);
+    Cell[] split = Cell.split(csr, cells);
+    OverlayGraph overlay = OverlayGraph.build(csr, cells, i -> split[i]);
+    for (Cell cell : split) {
+      cell.save(directory);
+    }
+    overlay.save(directory.resolve("overlay.bin"));
+
+    Cell[] loaded = new Cell[split.length];
+    for (int i = 0; i < split.length; i++) {
+      loaded[i] = Cell.load(directory, i);
+      assertEquals(split[i].nodeCount(), loaded[i].nodeCount());
+      assertArrayEquals(split[i].getBoundary(), loaded[i].getBoundary());
+    }
+    OverlayGraph copy = OverlayGraph.load(directory.resolve("overlay.bin"));
+    assertEquals(overlay.nodeCount(), copy.nodeCount());
+    assertEquals(overlay.cellCount(), copy.cellCount());
+    assertEquals(overlay.boundaryCount(), copy.boundaryCount());
+    assertEquals(overlay.edgeCount(), copy.edgeCount());
+    check(graph, csr, copy, loaded);
+  }
+
+  private static void check(Graph graph, CsrGraph csr, OverlayGraph overlay, Cell[] cells) {
+    SearchWorkspace workspace = new SearchWorkspace();
+    for (int source = 0; source < NODES; source += 53) {
+      double[] expected = RandomGraphs.distances(graph, graph.getNode(source));
+      int start = csr.indexOf(graph.getNode(source));
+      for (int target = 0; target < NODES; target += 19) {
+        int end = csr.indexOf(graph.getNode(target));
+        SmartGraph route = overlay.route(start, end, i -> cells[i], workspace);
+        assertRoute(graph, expected[target], graph.getNode(source), graph.getNode(target), route.getCost(),
+                route.getPath());
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded random graphs for the tests, and a Bellman-Ford reference that shares no code with the
+ * engines under test. Weights are small integers, so path costs add up exactly and a share of the
+ * edges can weigh zero.
+ */
+public final class RandomGraphs {
+
+  private RandomGraphs() {
+  }
+
+  /**
+   * @param seed      the seed
+   * @param n         the number of nodes, named by their index
+   * @param m         the number of edges; parallel edges are merged by Graph.addEdges
+   * @param maxWeight the largest weight
+   * @param zeroShare the share of edges that weigh zero
+   * @param located   whether the nodes get coordinates, each edge then joining nearby nodes
+   * @return the graph, whose node ids are 0 to n - 1
+   */
+  public static Graph graph(long seed, int n, int m, int maxWeight, double zeroShare, boolean located) {
+    Random random = new Random(seed);
+    Node[] nodes = new Node[n];
+    for (int i = 0; i < n; i++) {
+      nodes[i] = located ? new Node(String.valueOf(i), random.nextDouble() * 100, random.nextDouble() * 100)
+              : new Node(String.valueOf(i));
+    }
+    Graph graph = new Graph(true);
+    graph.addNodes(nodes);
+    for (int e = 0; e < m; e++) {
+      int u = random.nextInt(n);
+      int v = located ? near(random, nodes, u) : random.nextInt(n);
+      double weight = random.nextDouble() < zeroShare ? 0 : 1 + random.nextInt(maxWeight);
+      graph.addEdges(new Edge(nodes[u], nodes[v], weight));
+    }
+    return graph;
+  }
+
+  /**
+   * The closest of a few random nodes, so located graphs look like road networks.
+   */
+  private static int near(Random random, Node[] nodes, int u) {
+    int best = random.nextInt(nodes.length);
+    for (int i = 0; i < 8; i++) {
+      int v = random.nextInt(nodes.length);
+      if (v != u && squaredDistance(nodes[u], nodes[v]) < squaredDistance(nodes[u], nodes[best])) {
+        best = v;
+      }
+    }
+    return best;
+  }
+
+  private static double squaredDistance(Node a, Node b) {
+    double dx = a.getX() - b.getX();
+    double dy = a.getY() - b.getY();
+    return dx * dx + dy * dy;
+  }
+
+  /**
+   * Bellman-Ford from one node.
+   * @return the distance to every node id, Double.MAX_VALUE if it cannot be reached
+   */
+  public static double[] distances(Graph graph, Node source) {
+    double[] distances = new double[graph.nodeCount()];
+    Arrays.fill(distances, Double.MAX_VALUE);
+    distances[graph.indexOf(source)] = 0;
+    for (boolean changed = true; changed; ) {
+      changed = false;
+      for (Node node : graph.getNodes()) {
+        double distance = distances[graph.indexOf(node)];
+        if (distance == Double.MAX_VALUE) {
+          continue;
+        }
+        for (Edge edge : node.getEdges()) {
+          int v = graph.indexOf(edge.getDestNode());
+          if (v >= 0 && distance + edge.getWeight() < distances[v]) {
+            distances[v] = distance + edge.getWeight();
+            changed = true;
+          }
+        }
+      }
+    }
+    return distances;
+  }
+
+  /**
+   * @return the cost of walking the path over the cheapest edge between each pair of nodes, or
+   *     Double.NaN if two consecutive nodes are not joined by an edge
+   */
+  public static double cost(List<Node> path) {
+    double cost = 0;
+    for (int i = 1; i < path.size(); i++) {
+      double best = Double.NaN;
+      for (Edge edge : path.get(i - 1).getEdges()) {
+        if (edge.getDestNode() == path.get(i) && !(edge.getWeight() >= best)) {
+          best = edge.getWeight();
+        }
+      }
+      cost += best;
+    }
+    return cost;
+  }
+
+  /**
+   * The cost of a path whose nodes may be copies, e.g. parsed from the answer of a remote shard,
+   * matched to the nodes of the graph by name.
+   * @return the cost as for cost(List), or Double.NaN if a name is not a node of the graph
+   */
+  public static double costByName(Graph graph, List<Node> path) {
+    List<Node> nodes = new ArrayList<>();
+    for (Node node : path) {
+      Node original = graph.getNode(Integer.parseInt(node.getName()));
+      if (original == null || !original.getName().equals(node.getName())) {
+        return Double.NaN;
+      }
+      nodes.add(original);
+    }
+    return cost(nodes);
+  }
+
+  /**
+   * @return the cost of walking the path of ids through the rows of a CSR graph, or Double.NaN if
+   *     two consecutive ids are not joined by an edge
+   */
+  public static double cost(CsrGraph graph, int[] path) {
+    double cost = 0;
+    for (int i = 1; i < path.length; i++) {
+      double best = Double.NaN;
+      for (int e = graph.firstEdge(path[i - 1]); e < graph.endEdge(path[i - 1]); e++) {
+        if (graph.target(e) == path[i] && !(graph.weight(e) >= best)) {
+          best = graph.weight(e);
+        }
+      }
+      cost += best;
+    }
+    return cost;
+  }
+}
@@ -0,0 +1,69 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+/**
+ * The check every engine test makes of an answer: it costs what the reference says, and its path
+ * runs from the start to the end over edges of the graph that add up to that cost. Unreachable
+ * targets, at Double.MAX_VALUE in the reference, must come back without a path.
+ */
+public final class RouteAssertions {
+
+  private RouteAssertions() {
+  }
+
+  /**
+   * Nodes are compared by name, so paths of copies, e.g. parsed from a remote shard, pass too.
+   * @param graph    a graph from RandomGraphs
+   * @param expected the reference distance
+   * @param cost     the cost the engine reported
+   * @param path     the path the engine reported
+   */
+  public static void assertRoute(Graph graph, double expected, Node start, Node end, double cost, List<Node> path) {
+    String query = start.getName() + " -> " + end.getName();
+    if (expected == Double.MAX_VALUE) {
+      assertNull(path, query);
+      return;
+    }
+    assertEquals(expected, cost, query);
+    assertNotNull(path, query);
+    assertEquals(start.getName(), path.get(0).getName(), query);
+    assertEquals(end.getName(), path.get(path.size() - 1).getName(), query);
+    assertEquals(expected, RandomGraphs.costByName(graph, path), query);
+  }
+
+  /**
+   * @param ids the path as node ids of the graph, e.g. from a DistanceMatrix
+   */
+  public static void assertRoute(Graph graph, double expected, int start, int end, double cost, int[] ids) {
+    List<Node> path = null;
+    if (ids != null) {
+      Node[] nodes = new Node[ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        nodes[i] = graph.getNode(ids[i]);
+      }
+      path = List.of(nodes);
+    }
+    assertRoute(graph, expected, graph.getNode(start), graph.getNode(end), cost, path);
+  }
+
+  /**
+   * @param path the path as ids of the CSR graph
+   */
+  public static void assertRoute(CsrGraph graph, double expected, int start, int end, double cost, int[] path) {
+    String query = start + " -> " + end;
+    if (expected == Double.MAX_VALUE) {
+      assertNull(path, query);
+      return;
+    }
+    assertEquals(expected, cost, query);
+    assertNotNull(path, query);
+    assertEquals(start, path[0], query);
+    assertEquals(end, path[path.length - 1], query);
+    assertEquals(expected, RandomGraphs.cost(graph, path), query);
+  }
+}
@@ -0,0 +1,78 @@
+package models;
+
+import static models.RouteAssertions.assertRoute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ShortestPathTreeTest {
+  private static final int NODES = 500;
+
+  @Test
+  void resumedQueriesMatchTheReference() {
+    Graph graph = RandomGraphs.graph(121, NODES, 4 * NODES, 9, 0.2, false);
+    Node source = graph.getNode(0);
+    ShortestPathTree tree = new ShortestPathTree(graph, source);
+    double[] expected = RandomGraphs.distances(graph, source);
+    Random random = new Random(122);
+    int settled = tree.getSettledCount();
+    for (int query = 0; query < 200; query++) {
+      Node target = graph.getNode(random.nextInt(NODES));
+      assertRoute(graph, expected[graph.indexOf(target)], source, target, tree.distanceTo(target), tree.pathTo(target));
+      assertTrue(tree.getSettledCount() >= settled, "the search started over");
+      settled = tree.getSettledCount();
+
+      // a settled target costs nothing more
+      tree.distanceTo(target);
+      assertEquals(settled, tree.getSettledCount());
+    }
+  }
+
+  @Test
+  void queriesAfterAChangeSeeTheChangedGraph() {
+    Graph graph = RandomGraphs.graph(123, NODES, 4 * NODES, 9, 0.2, false);
+    Node source = graph.getNode(0);
+    ShortestPathTree tree = new ShortestPathTree(graph, source);
+    Random random = new Random(124);
+    for (int change = 0; change < 30; change++) {
+      Node target = graph.getNode(1 + random.nextInt(NODES - 1));
+      if (target == null) {
+        continue;
+      }
+      tree.distanceTo(target);
+      switch (change % 3) {
+        case 0:
+          graph.addEdges(new Edge(source, target, random.nextInt(3)));
+          break;
+        case 1:
+          for (Edge edge : source.getEdges()) {
+            edge.setWeight(edge.getWeight() + random.nextInt(5));
+          }
+          break;
+        default:
+          graph.removeNode(target);
+          break;
+      }
+      double[] expected = RandomGraphs.distances(graph, source);
+      for (Node node : graph.getNodes()) {
+        double distance = expected[graph.indexOf(node)];
+        assertRoute(graph, distance, source, node, tree.distanceTo(node), tree.pathTo(node));
+      }
+    }
+  }
+
+  @Test
+  void removingTheSourceFailsClearly() {
+    Graph graph = RandomGraphs.graph(125, 50, 200, 9, 0, false);
+    Node source = graph.getNode(0);
+    ShortestPathTree tree = new ShortestPathTree(graph, source);
+    tree.distanceTo(graph.getNode(1));
+    graph.removeNode(source);
+    assertThrows(IllegalStateException.class, () -> tree.distanceTo(graph.getNode(1)));
+    assertThrows(IllegalStateException.class, () -> tree.pathTo(graph.getNode(1)));
+  }
+}